@@ -0,0 +1,100 @@
+import java.util.Random;
+
+import benchmark.EnrollmentOperations;
+
+/**
+ * EnrollmentFixture - A populated Student Enrollment System and the operations benchmarked against it.
+ * <p>
+ * Lives in the default package alongside the system so that it can populate it without journalling or printing,
+ * and so that the headless operations are measured rather than their console wrappers. The access order of
+ * students is random but repeatable, and precomputed so the generator is not part of the measurement.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentFixture implements EnrollmentOperations {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final int UNIT_COUNT = 100;
+    private final StudentEnrollmentSystem SES = new StudentEnrollmentSystem(new Administrator("Benchmark"));
+    private final String[] UNIT_CODES = new String[UNIT_COUNT];
+    private String[] studentIds;
+    private int[] order;
+    private int mask;
+    private long created;
+
+    @Override
+    public void populate(int size) {
+        for (int i = 0; i < UNIT_COUNT; i++) {
+            UNIT_CODES[i] = "FIT" + (1000 + i);
+            SES.insertUnit(new Unit(UNIT_CODES[i], "Unit " + i, 6), false);
+        }
+        studentIds = new String[size];
+        for (int i = 0; i < size; i++) {
+            studentIds[i] = "S" + i;
+            SES.insertStudent(new FullTimeStudent(studentIds[i], "Student " + i, "Address", "Phone", "Email"), false);
+        }
+        order = new Random(42).ints(1 << 16, 0, size).toArray();
+        mask = order.length - 1;
+    }
+
+    @Override
+    public long createStudent(long i) {
+        return SES.createStudent(new FullTimeStudent("N" + created++, "New", "A", "P", "E")).ordinal();
+    }
+
+    @Override
+    public long studentExists(long i) {
+        return SES.studentExists(student(i)) ? 1 : 0;
+    }
+
+    @Override
+    public long enrollDrop(long i) {
+        String studentId = student(i);
+        String unitCode = unit(i);
+        return SES.enroll(studentId, unitCode).ordinal() + SES.drop(studentId, unitCode).ordinal();
+    }
+
+    @Override
+    public long dropViaStudent(long i) {
+        Student student = SES.getStudent(student(i));
+        Unit unit = SES.getUnit(unit(i));
+        long result = SES.enrol(student, unit, true).ordinal();
+        student.removeUnit(unit.getCode());
+        return result + student.getUnitCount();
+    }
+
+    @Override
+    public long getUnit(long i) {
+        return SES.getUnit(unit(i)).getCreditPoints();
+    }
+
+    @Override
+    public long listStudents() {
+        long total = 0;
+        for (Student student : SES.getStudents().values()) {
+            total += student.getId().length();
+        }
+        return total;
+    }
+
+    @Override
+    public long listUnits() {
+        long total = 0;
+        for (Unit unit : SES.getUnits()) {
+            total += unit.getCreditPoints();
+        }
+        return total;
+    }
+
+    private String student(long i) {
+        return studentIds[order[(int) i & mask]];
+    }
+
+    private String unit(long i) {
+        return UNIT_CODES[(int) (i % UNIT_COUNT)];
+    }
+}
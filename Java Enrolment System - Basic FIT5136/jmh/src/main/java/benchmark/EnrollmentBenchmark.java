@@ -0,0 +1,227 @@
+package benchmark;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * EnrollmentBenchmark - JMH micro-benchmarks of the enrollment core across dataset sizes, with a regression gate.
+ * <p>
+ * Every benchmark runs against a system freshly populated with {@link #size} students, in its own forked JVM, with
+ * warm-up iterations before the measured ones; JMH reports the average time per operation. The headless operations
+ * are measured rather than their console wrappers, whose prompts and printing would dominate the numbers.
+ * </p>
+ *
+ * <p>
+ * Benchmarks: createStudent, studentExists, enrollDrop (enroll in a unit and drop it again), dropViaStudent
+ * (an enrollment, then Student.removeUnit, with its confirmation printed to a discarded stream), getUnit,
+ * listStudents and listUnits (a full listing per operation).
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java -jar jmh/target/benchmarks.jar [--sizes 1000,10000,100000] [--forks 1] [--warmup 3]
+ * [--iterations 5] [--save results.properties] [--baseline results.properties] [--tolerance 0.20]}
+ * <br>
+ * With {@code --baseline}, the run fails (exit code 1) if any benchmark is more than the tolerance slower than in
+ * the baseline file, which is a previous run written with {@code --save}. The full JMH command line is still
+ * available through {@code java -cp jmh/target/benchmarks.jar org.openjdk.jmh.Main}.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EnrollmentBenchmark {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final String FIXTURE = "EnrollmentFixture";
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+    private EnrollmentOperations operations;
+    private long count;
+
+    /**
+     * Populates a fresh system once per fork and dataset size.
+     *
+     * @throws ReflectiveOperationException If the fixture cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void populate() throws ReflectiveOperationException {
+        operations = (EnrollmentOperations) Class.forName(FIXTURE).getDeclaredConstructor().newInstance();
+        operations.populate(size);
+    }
+
+    /**
+     * Discards what is printed during each iteration, for the benchmarks that go through methods which print.
+     */
+    @State(Scope.Thread)
+    public static class QuietConsole {
+        private PrintStream console;
+
+        @Setup(Level.Iteration)
+        public void silence() {
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        @TearDown(Level.Iteration)
+        public void restore() {
+            System.setOut(console);
+        }
+    }
+
+    @Benchmark
+    public long createStudent() {
+        return operations.createStudent(count++);
+    }
+
+    @Benchmark
+    public long studentExists() {
+        return operations.studentExists(count++);
+    }
+
+    @Benchmark
+    public long enrollDrop() {
+        return operations.enrollDrop(count++);
+    }
+
+    @Benchmark
+    public long dropViaStudent(QuietConsole console) {
+        return operations.dropViaStudent(count++);
+    }
+
+    @Benchmark
+    public long getUnit() {
+        return operations.getUnit(count++);
+    }
+
+    @Benchmark
+    public long listStudents() {
+        return operations.listStudents();
+    }
+
+    @Benchmark
+    public long listUnits() {
+        return operations.listUnits();
+    }
+
+    /**
+     * Runs the benchmarks, then saves the results and compares them against a baseline if asked to.
+     *
+     * @param args The options described in the class documentation.
+     * @throws IOException If the baseline or results file cannot be read or written.
+     * @throws RunnerException If JMH fails to run the benchmarks.
+     */
+    public static void main(String[] args) throws IOException, RunnerException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        double tolerance = Double.parseDouble(options.getOrDefault("--tolerance", "0.20"));
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .include("^" + Pattern.quote(EnrollmentBenchmark.class.getName()) + "\\.");
+        if (options.containsKey("--sizes")) {
+            builder.param("size", options.get("--sizes").split(","));
+        }
+        if (options.containsKey("--forks")) {
+            builder.forks(Integer.parseInt(options.get("--forks")));
+        }
+        if (options.containsKey("--warmup")) {
+            builder.warmupIterations(Integer.parseInt(options.get("--warmup")));
+        }
+        if (options.containsKey("--iterations")) {
+            builder.measurementIterations(Integer.parseInt(options.get("--iterations")));
+        }
+
+        Properties results = new Properties();
+        for (RunResult run : new Runner(builder.build()).run()) {
+            String benchmark = run.getParams().getBenchmark();
+            results.setProperty(benchmark.substring(benchmark.lastIndexOf('.') + 1) + "." + run.getParams().getParam("size"),
+                    String.format(Locale.ROOT, "%.1f", run.getPrimaryResult().getScore()));
+        }
+
+        if (options.containsKey("--save")) {
+            try (Writer out = new FileWriter(options.get("--save"))) {
+                results.store(out, "EnrollmentBenchmark results, ns/op");
+            }
+        }
+        if (options.containsKey("--baseline") && !withinBaseline(results, new File(options.get("--baseline")), tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares results against a baseline and prints every benchmark that regressed.
+     *
+     * @param results The results of this run.
+     * @param baselineFile The results of a previous run.
+     * @param tolerance The fraction by which a benchmark may be slower than its baseline.
+     * @return True if no benchmark regressed beyond the tolerance.
+     * @throws IOException If the baseline cannot be read.
+     */
+    private static boolean withinBaseline(Properties results, File baselineFile, double tolerance) throws IOException {
+        Properties baseline = new Properties();
+        try (Reader in = new FileReader(baselineFile)) {
+            baseline.load(in);
+        }
+        List<String> regressions = new ArrayList<>();
+        for (String key : results.stringPropertyNames()) {
+            String before = baseline.getProperty(key);
+            if (before == null) {
+                continue; // Not measured in the baseline
+            }
+            double ratio = Double.parseDouble(results.getProperty(key)) / Double.parseDouble(before);
+            if (ratio > 1 + tolerance) {
+                regressions.add(String.format("%s: %s -> %s ns/op (+%.0f%%)", key, before, results.getProperty(key),
+                        (ratio - 1) * 100));
+            }
+        }
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions beyond " + Math.round(tolerance * 100) + "% of " + baselineFile + ".");
+            return true;
+        }
+        System.out.println("Regressions beyond " + Math.round(tolerance * 100) + "% of " + baselineFile + ":");
+        regressions.forEach(regression -> System.out.println("  " + regression));
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package benchmark;
+
+/**
+ * EnrollmentOperations - The operations of the enrollment core measured by {@link EnrollmentBenchmark}.
+ * <p>
+ * The Student Enrollment System lives in the default package, which JMH benchmarks cannot (and no named package
+ * can) refer to, so the benchmarks reach it through this interface, implemented by {@code EnrollmentFixture} in the
+ * default package. Each operation is given a running operation count to pick its student and unit with, and returns
+ * a value for the benchmark to consume so that the work cannot be optimised away.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public interface EnrollmentOperations {
+    /**
+     * Populates a fresh system with the units and the given number of students.
+     *
+     * @param size The number of students.
+     */
+    void populate(int size);
+
+    /**
+     * Creates a new student.
+     *
+     * @param i The operation count.
+     * @return The ordinal of the result.
+     */
+    long createStudent(long i);
+
+    /**
+     * Checks whether an existing student exists.
+     *
+     * @param i The operation count.
+     * @return 1 if the student exists, otherwise 0.
+     */
+    long studentExists(long i);
+
+    /**
+     * Enrolls a student in a unit and drops it again.
+     *
+     * @param i The operation count.
+     * @return The sum of the ordinals of both results.
+     */
+    long enrollDrop(long i);
+
+    /**
+     * Enrolls a student in a unit, then drops it through {@code Student.removeUnit}, which prints a confirmation.
+     *
+     * @param i The operation count.
+     * @return The ordinal of the enrollment result plus the student's unit count afterwards.
+     */
+    long dropViaStudent(long i);
+
+    /**
+     * Looks up a unit.
+     *
+     * @param i The operation count.
+     * @return The unit's credit points.
+     */
+    long getUnit(long i);
+
+    /**
+     * Walks the full list of students.
+     *
+     * @return The total length of their IDs.
+     */
+    long listStudents();
+
+    /**
+     * Walks the full list of units.
+     *
+     * @return The total of their credit points.
+     */
+    long listUnits();
+}
@@ -29,10 +29,13 @@ public class Administrator {
      *
      * @param ses The Student Enrollment System instance.
      * @param student The student to be added.
+     * @return The outcome of the operation.
      */
-    public void addStudent(StudentEnrollmentSystem ses, Student student) {
-        ses.addStudent(student);
-        System.out.println("Student added successfully.");
+    public EnrollmentResult addStudent(StudentEnrollmentSystem ses, Student student) {
+        EnrollmentResult result = ses.createStudent(student);
+        System.out.println(result.isSuccess() ? "Student added successfully."
+                : StudentEnrollmentSystem.describe(result, student.getId(), null));
+        return result;
     }
 
     /**
@@ -41,15 +44,27 @@ public class Administrator {
      * @param ses The Student Enrollment System instance.
      * @param studentId The ID of the student.
      * @param unit The unit to be added.
+     * @return The outcome of the operation.
      */
-    public void addUnitToStudent(StudentEnrollmentSystem ses, String studentId, Unit unit) {
-        // Check if student exists and then add the unit to the student's list
-        if (ses.studentExists(studentId)) {
-            ses.addUnitToStudent(studentId, unit);
-            System.out.println("Unit added to student successfully.");
-        } else {
-            System.out.println("Student not found.");
-        }
+    public EnrollmentResult addUnitToStudent(StudentEnrollmentSystem ses, String studentId, Unit unit) {
+        // The system checks the student, the unit and the limits itself, without asking for confirmation
+        EnrollmentResult result = ses.enroll(studentId, unit.getCode());
+        System.out.println(result.isSuccess() ? "Unit added to student successfully."
+                : StudentEnrollmentSystem.describe(result, studentId, unit.getCode()));
+        return result;
+    }
+
+    /**
+     * Makes a batch of enrollments, such as a cohort into its units, all or none, without asking for confirmation.
+     *
+     * @param ses The Student Enrollment System instance.
+     * @param batch The enrollments to make. The outcome of each is recorded in it.
+     * @return SUCCESS if every enrollment was made, otherwise the reason the first refused one was refused.
+     */
+    public EnrollmentResult addUnitsToStudents(StudentEnrollmentSystem ses, EnrollmentBatch batch) {
+        EnrollmentResult result = ses.enrollAll(batch);
+        System.out.println(StudentEnrollmentSystem.describe(batch, result));
+        return result;
     }
 
     /**
@@ -58,24 +73,13 @@ public class Administrator {
      * @param ses The Student Enrollment System instance.
      * @param studentId The ID of the student.
      * @param unitName The name of the unit to be removed.
+     * @return The outcome of the operation.
      */
-    public void removeUnitFromStudent(StudentEnrollmentSystem ses, String studentId, String unitName) {
-        // Check if student exists
-        if (ses.studentExists(studentId)) {
-            Student student = ses.getStudents().get(studentId);
-            // List current units and check if the unit is enrolled
-            student.listUnits();
-            boolean unitFound = student.getUnits().stream()
-                    .anyMatch(unit -> unit.getCode().equalsIgnoreCase(unitName));
-            if (unitFound) {
-                student.removeUnit(unitName);
-                System.out.println("Unit removed successfully.");
-            } else {
-                System.out.println("Student isn't currently enrolled in that unit.");
-            }
-        } else {
-            System.out.println("Student not found.");
-        }
+    public EnrollmentResult removeUnitFromStudent(StudentEnrollmentSystem ses, String studentId, String unitName) {
+        EnrollmentResult result = ses.drop(studentId, unitName);
+        System.out.println(result.isSuccess() ? "Unit removed successfully."
+                : StudentEnrollmentSystem.describe(result, studentId, unitName));
+        return result;
     }
 
     /**
@@ -83,10 +87,13 @@ public class Administrator {
      *
      * @param ses The Student Enrollment System instance.
      * @param unit The unit to be added.
+     * @return The outcome of the operation.
      */
-    public void addUnit(StudentEnrollmentSystem ses, Unit unit) {
-        ses.addUnit(unit);
-        System.out.println("Unit added to the system successfully.");
+    public EnrollmentResult addUnit(StudentEnrollmentSystem ses, Unit unit) {
+        EnrollmentResult result = ses.createUnit(unit);
+        System.out.println(result.isSuccess() ? "Unit added to the system successfully."
+                : StudentEnrollmentSystem.describe(result, null, unit.getCode()));
+        return result;
     }
 
     /**
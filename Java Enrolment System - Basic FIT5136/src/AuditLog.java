@@ -0,0 +1,250 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AuditLog - An asynchronous audit trail of every change made to the Student Enrollment System.
+ * <p>
+ * Each event records when it happened, who made it (see {@link #setActor(String)}), the operation, the student and
+ * unit involved and the outcome. Events are published into a preallocated ring buffer: a thread claims the next
+ * slot with one compare-and-set, fills in the slot's fields and marks it published, without taking a lock,
+ * allocating or touching the console or disk. A background writer drains the published events in batches and
+ * appends them as JSON lines to the log file, so the latency of an enrollment no longer includes that I/O.
+ * </p>
+ *
+ * <p>
+ * Events are never dropped: if the writer falls a whole buffer behind, publishers wait for it to catch up, and
+ * closing the log stops new claims in the same atomic step that claims are made with, then drains every event
+ * already claimed before closing the file. The log
+ * file is rotated when it reaches its size limit ({@code audit.log} becomes {@code audit.log.1}, and so on), keeping
+ * a fixed number of old files.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class AuditLog implements AutoCloseable {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final ThreadLocal<String> ACTOR = new ThreadLocal<>();
+    private static final String DEFAULT_ACTOR = "system";
+    private static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    // Set in CLAIMED once the log is closed, so that a claim and the check that the log is open are one step
+    private static final long CLOSED = 1L << 62;
+    private final File FILE;
+    private final long MAX_FILE_BYTES;
+    private final int KEEP_FILES;
+    // The slots of the ring buffer, one array per field
+    private final long[] TIMES = new long[CAPACITY];
+    private final String[] ACTORS = new String[CAPACITY];
+    private final EnrollmentMetrics.Operation[] OPERATIONS = new EnrollmentMetrics.Operation[CAPACITY];
+    private final String[] STUDENT_IDS = new String[CAPACITY];
+    private final String[] UNIT_CODES = new String[CAPACITY];
+    private final EnrollmentResult[] RESULTS = new EnrollmentResult[CAPACITY];
+    // The sequence number of the event in each slot, set last to publish it
+    private final AtomicLongArray PUBLISHED = new AtomicLongArray(CAPACITY);
+    // The number of slots claimed, with the CLOSED bit
+    private final AtomicLong CLAIMED = new AtomicLong();
+    private final Thread WRITER;
+    private volatile long written;
+    private Writer out;
+    private long fileBytes;
+
+    /**
+     * Opens (or creates) an audit log file for appending and starts its background writer.
+     *
+     * @param file The log file.
+     * @param maxFileBytes The size at which the file is rotated.
+     * @param keepFiles The number of rotated files to keep.
+     * @throws IOException If the file cannot be opened.
+     */
+    public AuditLog(File file, long maxFileBytes, int keepFiles) throws IOException {
+        this.FILE = file;
+        this.MAX_FILE_BYTES = maxFileBytes;
+        this.KEEP_FILES = keepFiles;
+        for (int i = 0; i < CAPACITY; i++) {
+            PUBLISHED.set(i, -1);
+        }
+        open();
+        this.WRITER = new Thread(this::writeLoop, "audit-writer");
+        this.WRITER.setDaemon(true);
+        this.WRITER.start();
+    }
+
+    /**
+     * Sets who the current thread acts for, e.g. the administrator or student using the console, until changed.
+     *
+     * @param actor The actor recorded with the thread's events, or null for the default.
+     */
+    public static void setActor(String actor) {
+        if (actor == null) {
+            ACTOR.remove();
+        } else {
+            ACTOR.set(actor);
+        }
+    }
+
+    /**
+     * Returns who the current thread acts for.
+     *
+     * @return The actor, "system" if none was set.
+     */
+    public static String getActor() {
+        String actor = ACTOR.get();
+        return actor == null ? DEFAULT_ACTOR : actor;
+    }
+
+    /**
+     * Publishes an event made by the current thread's actor. Returns as soon as the event is in the buffer, unless
+     * the buffer is full. Events published after the log is closed are ignored.
+     *
+     * @param operation The operation.
+     * @param studentId The ID of the student involved, may be null.
+     * @param unitCode The code of the unit involved, may be null.
+     * @param result The outcome of the operation.
+     */
+    public void publish(EnrollmentMetrics.Operation operation, String studentId, String unitCode,
+                        EnrollmentResult result) {
+        long sequence;
+        do {
+            sequence = CLAIMED.get();
+            if ((sequence & CLOSED) != 0) {
+                return;
+            }
+        } while (!CLAIMED.compareAndSet(sequence, sequence + 1));
+        while (sequence - written >= CAPACITY) { // Wait for the writer to free the slot
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+        int slot = (int) sequence & MASK;
+        TIMES[slot] = System.currentTimeMillis();
+        ACTORS[slot] = getActor();
+        OPERATIONS[slot] = operation;
+        STUDENT_IDS[slot] = studentId;
+        UNIT_CODES[slot] = unitCode;
+        RESULTS[slot] = result;
+        PUBLISHED.set(slot, sequence); // Volatile write, so the writer sees the fields above once it sees this
+    }
+
+    /**
+     * Returns the number of events written to the log file so far.
+     *
+     * @return The number of events.
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Stops accepting events, waits for every published event to be written, and closes the file.
+     */
+    @Override
+    public void close() {
+        if ((CLAIMED.getAndUpdate(claimed -> claimed | CLOSED) & CLOSED) != 0) {
+            return;
+        }
+        try {
+            WRITER.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes published events in order until the log is closed and every claimed slot has been written.
+     */
+    private void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        long next = 0;
+        while (true) {
+            int slot = (int) next & MASK;
+            if (PUBLISHED.get(slot) == next) {
+                line.setLength(0);
+                line.append("{\"time\":\"").append(Instant.ofEpochMilli(TIMES[slot]))
+                        .append("\",\"actor\":").append(Json.quote(ACTORS[slot]))
+                        .append(",\"operation\":\"").append(OPERATIONS[slot])
+                        .append("\",\"studentId\":").append(Json.quote(STUDENT_IDS[slot]))
+                        .append(",\"unitCode\":").append(Json.quote(UNIT_CODES[slot]))
+                        .append(",\"result\":\"").append(RESULTS[slot]).append("\"}\n");
+                ACTORS[slot] = STUDENT_IDS[slot] = UNIT_CODES[slot] = null; // Lets the strings be collected
+                write(line);
+                next++;
+                if ((next & 1023) == 0) {
+                    written = next; // Frees slots for waiting publishers without a volatile write per event
+                }
+                continue;
+            }
+            flush();
+            written = next;
+            long claimed = CLAIMED.get();
+            if (claimed == (next | CLOSED)) { // Closed, and every event claimed before it is written
+                break;
+            }
+            if (next < (claimed & ~CLOSED)) {
+                Thread.onSpinWait(); // A slot is claimed but not yet published
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Error: Unable to close the audit log - " + e.getMessage());
+        }
+    }
+
+    private void write(CharSequence line) {
+        try {
+            if (fileBytes + line.length() > MAX_FILE_BYTES && fileBytes > 0) {
+                rotate();
+            }
+            out.append(line);
+            fileBytes += line.length(); // Counts characters; close enough for deciding when to rotate
+        } catch (IOException e) {
+            // The event is lost, but publishers must not wait forever on a writer that cannot write
+            System.err.println("Error: Unable to write to the audit log - " + e.getMessage());
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error: Unable to write to the audit log - " + e.getMessage());
+        }
+    }
+
+    private void open() throws IOException {
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FILE, true), StandardCharsets.UTF_8),
+                1 << 16);
+        fileBytes = FILE.length();
+    }
+
+    /**
+     * Closes the current file, shifts every rotated file up by one (dropping the oldest) and opens a new file.
+     */
+    private void rotate() throws IOException {
+        out.close();
+        new File(FILE.getPath() + "." + KEEP_FILES).delete();
+        for (int i = KEEP_FILES - 1; i >= 1; i--) {
+            new File(FILE.getPath() + "." + i).renameTo(new File(FILE.getPath() + "." + (i + 1)));
+        }
+        if (KEEP_FILES > 0) {
+            FILE.renameTo(new File(FILE.getPath() + ".1"));
+        } else {
+            FILE.delete();
+        }
+        open();
+    }
+}
@@ -0,0 +1,351 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * BulkImporter - Streams large CSV or JSONL files of students, units, enrollments and completed units into the
+ * system.
+ * <p>
+ * The file is processed by three stages connected by bounded queues of row batches: a parser thread turns each
+ * line into a record, a validator thread checks each record's fields, and the calling thread applies each batch
+ * directly against the system's maps. Records are applied silently (without the per-record
+ * console output of {@link StudentEnrollmentSystem#addStudent(Student)}) and journaled without waiting for an
+ * fsync per record; the journal is synced once per batch.
+ * </p>
+ *
+ * <p>
+ * CSV rows (an optional header row starting with "type" is skipped):
+ * <pre>
+ * student,F|P,id,name,address,phone,email[,courseAdvisor]
+ * unit,code,title,creditPoints[,capacity[,sessions[,prerequisites[,corequisites[,prohibitions]]]]]
+ * enrolment,studentId,unitCode
+ * completion,studentId,unitCode
+ * </pre>
+ * JSONL rows are flat objects with a "type" of student, unit, enrolment or completion and the same fields, named
+ * studentType, id, name, address, phone, email, courseAdvisor, code, title, creditPoints, capacity, sessions,
+ * prerequisites, corequisites, prohibitions, studentId and unitCode. Sessions are written as in {@link Timetable},
+ * e.g. {@code MON 09:00-11:00; WED 14:00-15:00}, and requisites as unit codes separated by spaces. A completion
+ * must come after the unit completed.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class BulkImporter {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    // Queues hold batches of rows, so at most QUEUE_CAPACITY * BATCH_SIZE rows are in flight per stage
+    private static final int QUEUE_CAPACITY = 8;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final List<Row> END_OF_BATCHES = new ArrayList<>();
+    private final StudentEnrollmentSystem SES;
+
+    /**
+     * Constructs a BulkImporter for the given system.
+     *
+     * @param ses The Student Enrollment System instance to import into.
+     */
+    public BulkImporter(StudentEnrollmentSystem ses) {
+        this.SES = ses;
+    }
+
+    /**
+     * Imports a file, choosing JSONL for files ending in .jsonl or .json and CSV otherwise.
+     *
+     * @param file The file to import.
+     * @return The report of applied and rejected rows.
+     * @throws IOException If the file cannot be read.
+     */
+    public Report importFile(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        boolean jsonLines = name.endsWith(".jsonl") || name.endsWith(".json");
+        BlockingQueue<List<Row>> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<List<Row>> validated = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        IOException[] readFailure = new IOException[1];
+
+        Thread parser = new Thread(() -> {
+            List<Row> batch = new ArrayList<>(BATCH_SIZE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                String line;
+                long lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank() || (lineNumber == 1 && !jsonLines && line.startsWith("type"))) {
+                        continue;
+                    }
+                    try {
+                        batch.add(new Row(lineNumber, jsonLines ? parseJson(line) : parseCsv(line), null));
+                    } catch (IllegalArgumentException e) {
+                        batch.add(new Row(lineNumber, null, e.getMessage()));
+                    }
+                    if (batch.size() == BATCH_SIZE) {
+                        parsed.put(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    parsed.put(batch);
+                }
+            } catch (IOException e) {
+                readFailure[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                putQuietly(parsed, END_OF_BATCHES);
+            }
+        }, "import-parser");
+
+        Thread validator = new Thread(() -> {
+            try {
+                for (List<Row> batch = parsed.take(); batch != END_OF_BATCHES; batch = parsed.take()) {
+                    batch.replaceAll(row -> row.ERROR == null ? validate(row) : row);
+                    validated.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                putQuietly(validated, END_OF_BATCHES);
+            }
+        }, "import-validator");
+
+        parser.start();
+        validator.start();
+        Report report = new Report();
+        try {
+            List<Row> batch;
+            while ((batch = validated.take()) != END_OF_BATCHES) {
+                for (Row row : batch) {
+                    String error = row.ERROR != null ? row.ERROR : SES.importRecord(row.RECORD);
+                    report.record(row.LINE, error);
+                }
+                SES.syncImported();
+            }
+            parser.join();
+        } catch (InterruptedException e) {
+            parser.interrupt();
+            validator.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted.", e);
+        } finally {
+            SES.syncImported();
+        }
+        if (readFailure[0] != null) {
+            throw readFailure[0];
+        }
+        return report;
+    }
+
+    /**
+     * Checks the fields of a parsed record that do not depend on the state of the system.
+     *
+     * @param row The parsed row.
+     * @return The row, with an error set if the record is invalid.
+     */
+    private static Row validate(Row row) {
+        String[] record = row.RECORD;
+        for (int i = 1; i < record.length; i++) {
+            boolean optional = i == 7 && record[0].equals("ADD_STUDENT") // Course advisor
+                    || i >= 4 && record[0].equals("ADD_UNIT"); // Capacity, sessions and requisites
+            if (!optional && (record[i] == null || record[i].isBlank())) {
+                return new Row(row.LINE, null, record[0] + " is missing field " + i + ".");
+            }
+        }
+        if (record[0].equals("ADD_STUDENT") && !record[1].equals("F") && !record[1].equals("P")) {
+            return new Row(row.LINE, null, "Student type must be F or P, not '" + record[1] + "'.");
+        }
+        if (record[0].equals("ADD_UNIT")) {
+            try {
+                if (Integer.parseInt(record[3]) <= 0) {
+                    return new Row(row.LINE, null, "Credit points must be positive.");
+                }
+            } catch (NumberFormatException e) {
+                return new Row(row.LINE, null, "Invalid credit points '" + record[3] + "'.");
+            }
+            try {
+                if (record[4] != null && Integer.parseInt(record[4]) < 0) {
+                    return new Row(row.LINE, null, "Capacity must not be negative.");
+                }
+            } catch (NumberFormatException e) {
+                return new Row(row.LINE, null, "Invalid capacity '" + record[4] + "'.");
+            }
+            try {
+                Timetable.parse(record[5]);
+            } catch (IllegalArgumentException e) {
+                return new Row(row.LINE, null, e.getMessage());
+            }
+        }
+        return row;
+    }
+
+    private static String[] parseCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields.add(field.toString().trim());
+
+        String type = fields.get(0).toLowerCase();
+        switch (type) {
+            case "student":
+                requireFields(fields, 7, 8);
+                return new String[] {"ADD_STUDENT", fields.get(1).toUpperCase(), fields.get(2), fields.get(3),
+                        fields.get(4), fields.get(5), fields.get(6), fields.size() > 7 && !fields.get(7).isEmpty() ? fields.get(7) : null};
+            case "unit":
+                requireFields(fields, 4, 9);
+                String[] unit = new String[9];
+                unit[0] = "ADD_UNIT";
+                for (int i = 1; i < unit.length; i++) {
+                    unit[i] = fields.size() > i && (i < 4 || !fields.get(i).isEmpty()) ? fields.get(i) : null;
+                }
+                return unit;
+            case "enrolment":
+            case "enrollment":
+                requireFields(fields, 3, 3);
+                return new String[] {"ENROL", fields.get(1), fields.get(2)};
+            case "completion":
+                requireFields(fields, 3, 3);
+                return new String[] {"COMPLETE", fields.get(1), fields.get(2)};
+            default:
+                throw new IllegalArgumentException("Unknown row type '" + fields.get(0) + "'.");
+        }
+    }
+
+    private static String[] parseJson(String line) {
+        Map<String, String> object = Json.parseObject(line);
+        String type = String.valueOf(object.get("type")).toLowerCase();
+        switch (type) {
+            case "student":
+                String studentType = object.get("studentType");
+                return new String[] {"ADD_STUDENT", studentType == null ? null : studentType.toUpperCase(),
+                        object.get("id"), object.get("name"), object.get("address"), object.get("phone"),
+                        object.get("email"), object.get("courseAdvisor")};
+            case "unit":
+                return new String[] {"ADD_UNIT", object.get("code"), object.get("title"), object.get("creditPoints"),
+                        object.get("capacity"), object.get("sessions"), object.get("prerequisites"),
+                        object.get("corequisites"), object.get("prohibitions")};
+            case "enrolment":
+            case "enrollment":
+                return new String[] {"ENROL", object.get("studentId"), object.get("unitCode")};
+            case "completion":
+                return new String[] {"COMPLETE", object.get("studentId"), object.get("unitCode")};
+            default:
+                throw new IllegalArgumentException("Unknown row type '" + object.get("type") + "'.");
+        }
+    }
+
+    private static void requireFields(List<String> fields, int min, int max) {
+        if (fields.size() < min || fields.size() > max) {
+            throw new IllegalArgumentException("Expected " + (min == max ? min : min + "-" + max)
+                    + " columns for '" + fields.get(0) + "' but found " + fields.size() + ".");
+        }
+    }
+
+    private static <T> void putQuietly(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A single line of the import file, either a parsed record or the reason it was rejected.
+     */
+    private static class Row {
+        private final long LINE;
+        private final String[] RECORD;
+        private final String ERROR;
+
+        Row(long line, String[] record, String error) {
+            this.LINE = line;
+            this.RECORD = record;
+            this.ERROR = error;
+        }
+    }
+
+    /**
+     * Report - The outcome of an import: how many rows were applied and why the others were rejected.
+     */
+    public static class Report {
+        private long applied;
+        private long rejected;
+        private final List<String> ERRORS = new ArrayList<>();
+
+        private void record(long line, String error) {
+            if (error == null) {
+                applied++;
+                return;
+            }
+            rejected++;
+            if (ERRORS.size() < MAX_REPORTED_ERRORS) {
+                ERRORS.add("Line " + line + ": " + error);
+            }
+        }
+
+        /**
+         * Returns the number of rows applied.
+         *
+         * @return The number of rows applied.
+         */
+        public long getApplied() {
+            return applied;
+        }
+
+        /**
+         * Returns the number of rows rejected.
+         *
+         * @return The number of rows rejected.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns the errors of the first rejected rows, one per row.
+         *
+         * @return The error messages, prefixed with their line number.
+         */
+        public List<String> getErrors() {
+            return ERRORS;
+        }
+
+        @Override
+        public String toString() {
+            return applied + " row(s) imported, " + rejected + " row(s) rejected.";
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+/**
+ * ChangeEvent - One change to the Student Enrollment System, as read from its journal or change log.
+ * <p>
+ * The operation is one of ADD_STUDENT, REMOVE_STUDENT, ADD_UNIT, REMOVE_UNIT, ENROL, ENROL_ALL, DROP, WAITLIST,
+ * UNWAITLIST, or for a shard of a {@link ShardRouter} PREPARE_ALL, COMMIT_ALL and ABORT_ALL, and the fields that
+ * follow it are the same as in the journal: e.g. {@code ENROL studentId unitCode}, or for a batch made
+ * all-or-nothing {@code ENROL_ALL studentId unitCode studentId unitCode ...}. A shard's part of a batch spanning
+ * shards is {@code PREPARE_ALL batchId shardIndices studentId unitCode ...}, and only takes effect with a later
+ * {@code COMMIT_ALL batchId}. Removing a unit
+ * also unenrolls every student in it, without a DROP for each, and enrolling a waitlisted student (including
+ * promoting them when a seat frees up) takes them off the waitlist, without an UNWAITLIST. Sequence numbers
+ * increase with every change and are never reused, so a subscriber can remember the last one it processed and
+ * resume after it.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class ChangeEvent {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final long SEQUENCE;
+    private final String[] FIELDS;
+    private final String LINE;
+
+    /**
+     * Constructs a ChangeEvent.
+     *
+     * @param sequence The sequence number of the change.
+     * @param fields The operation followed by its fields.
+     * @param line The checksummed line the change was read from.
+     */
+    ChangeEvent(long sequence, String[] fields, String line) {
+        this.SEQUENCE = sequence;
+        this.FIELDS = fields;
+        this.LINE = line;
+    }
+
+    /**
+     * Returns the sequence number of the change.
+     *
+     * @return The sequence number.
+     */
+    public long getSequence() {
+        return SEQUENCE;
+    }
+
+    /**
+     * Returns the operation, e.g. ENROL.
+     *
+     * @return The operation.
+     */
+    public String getOperation() {
+        return FIELDS[0];
+    }
+
+    /**
+     * Returns the operation followed by its fields. The array is shared and must not be modified.
+     *
+     * @return The fields.
+     */
+    public String[] getFields() {
+        return FIELDS;
+    }
+
+    /**
+     * Returns the change as it is stored: the sequence number, a CRC32 checksum and the tab separated fields.
+     *
+     * @return The line, without a trailing newline.
+     */
+    public String getLine() {
+        return LINE;
+    }
+
+    @Override
+    public String toString() {
+        return SEQUENCE + " " + Arrays.toString(FIELDS);
+    }
+}
@@ -0,0 +1,530 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * ChangeLog - An ordered, replayable stream of every change made to the Student Enrollment System, for downstream
+ * systems (timetabling, billing, LMS provisioning) to subscribe to.
+ * <p>
+ * The journal passes each batch of records to the change log once it is durable, so the stream holds exactly the
+ * changes that survive a crash, in journal order and in the journal's line format (see {@link ChangeEvent}). Unlike
+ * the journal, which is truncated whenever a snapshot is taken, the change log keeps its records in segment files
+ * named after the first sequence number they hold, rolling to a new segment at a size limit. A subscriber can
+ * therefore resume from any sequence number still retained.
+ * </p>
+ *
+ * <p>
+ * Subscribers read with a {@link Cursor}, which tails the segment files directly. Each subscriber reads at its own
+ * pace, falling behind in the files rather than holding up enrollments. Beyond the retention limit the oldest segment
+ * is deleted, but only once every open cursor has read past it; until then the append that would start a new segment
+ * waits (backpressure), which in turn holds up the journal, rather than dropping changes a subscriber has yet to
+ * read. A subscriber that stops reading must therefore close its cursor. The files can also be tailed by any other
+ * process, or streamed over a socket by {@link ChangeStreamServer}.
+ * </p>
+ *
+ * <p>
+ * A failed write is reported and retried: the changes not yet written are kept in memory and written ahead of the
+ * next append, after cutting the segment back to its last complete record. Until then {@link #sync()} throws, so the
+ * journal keeps every record the change log does not yet hold and a snapshot reports the failure.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class ChangeLog implements AutoCloseable {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final String SUFFIX = ".log";
+    private final File DIRECTORY;
+    private final long SEGMENT_BYTES;
+    private final int KEEP_SEGMENTS;
+    private final Object LOCK = new Object();
+    // The first sequence number of each segment, to its file
+    private final NavigableMap<Long, File> SEGMENTS = new ConcurrentSkipListMap<>();
+    private final Set<Cursor> CURSORS = ConcurrentHashMap.newKeySet();
+    private FileChannel channel;
+    private long segmentSize;
+    private volatile long lastSequence;
+    // Changes appended but not yet written, after a failed write
+    private final ByteArrayOutputStream UNWRITTEN = new ByteArrayOutputStream();
+    private IOException failure;
+    // The number of appends waiting for cursors to read the oldest segment
+    private volatile int awaitingCursors;
+    private volatile boolean closed;
+
+    /**
+     * Opens (or creates) the change log in a directory. A torn record at the end of the newest segment, left by a
+     * crash mid-write, is cut off so that appends continue from the last complete record.
+     *
+     * @param directory The directory holding the segment files.
+     * @param segmentBytes The size at which a new segment is started.
+     * @param keepSegments The number of segments to keep, at least 1.
+     * @throws IOException If the directory or its segments cannot be read.
+     */
+    public ChangeLog(File directory, long segmentBytes, int keepSegments) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create change log directory '" + directory + "'.");
+        }
+        this.DIRECTORY = directory;
+        this.SEGMENT_BYTES = segmentBytes;
+        this.KEEP_SEGMENTS = Math.max(1, keepSegments);
+        File[] files = directory.listFiles((dir, name) -> name.matches("\\d{20}\\" + SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                SEGMENTS.put(Long.parseLong(file.getName().substring(0, 20)), file);
+            }
+        }
+        if (!SEGMENTS.isEmpty()) {
+            Map.Entry<Long, File> newest = SEGMENTS.lastEntry();
+            lastSequence = newest.getKey() - 1;
+            long end = 0;
+            try (Cursor cursor = new Cursor(lastSequence)) {
+                for (ChangeEvent event = cursor.readNext(); event != null; event = cursor.readNext()) {
+                    lastSequence = event.getSequence();
+                    end = cursor.position();
+                }
+            } catch (IOException e) {
+                // A corrupt record: keep everything before it
+            }
+            channel = new RandomAccessFile(newest.getValue(), "rw").getChannel();
+            channel.truncate(end);
+            channel.position(end);
+            segmentSize = end;
+        }
+    }
+
+    /**
+     * Appends complete, checksummed journal lines to the change log, starting a new segment first if the current
+     * one is full. If retention is full this waits until every open cursor has read the oldest segment. An error is
+     * reported rather than failing the journal, and the lines are written on the next append instead.
+     *
+     * @param lines The UTF-8 bytes of one or more lines, each ending with a newline.
+     */
+    public void append(byte[] lines) {
+        if (lines.length == 0) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (closed) {
+                return; // Recovery copies any durable records the change log missed
+            }
+            UNWRITTEN.write(lines, 0, lines.length);
+            writeUnwritten();
+        }
+    }
+
+    /**
+     * Forces the changes appended so far to disk. The journal may then be truncated up to the sequence number
+     * returned without the change log losing any of its records in a crash.
+     *
+     * @return The sequence number of the last change forced to disk, or 0 if the log is empty.
+     * @throws IOException If the current segment cannot be forced, or changes could not be written.
+     */
+    public long sync() throws IOException {
+        synchronized (LOCK) {
+            writeUnwritten();
+            if (failure != null) {
+                throw new IOException("The change log cannot be written, so the journal is kept - "
+                        + failure.getMessage(), failure);
+            }
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+            }
+            return lastSequence;
+        }
+    }
+
+    /**
+     * Returns the error that left changes unwritten, if they still are.
+     *
+     * @return The last write error, or null if every change appended has been written.
+     */
+    public IOException getFailure() {
+        synchronized (LOCK) {
+            return failure;
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last change in the log. The change may not be on disk yet; see
+     * {@link #sync()}.
+     *
+     * @return The last sequence number, or 0 if the log is empty.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the sequence number of the oldest change still retained.
+     *
+     * @return The first sequence number, or 0 if the log is empty.
+     */
+    public long getFirstSequence() {
+        Map.Entry<Long, File> oldest = SEGMENTS.firstEntry();
+        return oldest == null ? 0 : oldest.getKey();
+    }
+
+    /**
+     * Opens a cursor that reads the changes after the given sequence number, then waits for new ones.
+     *
+     * @param afterSequence The sequence number of the last change the subscriber has processed, or 0 to start
+     *                      from the oldest change retained.
+     * @return The cursor.
+     * @throws IllegalArgumentException If changes after that sequence number are no longer retained.
+     */
+    public Cursor open(long afterSequence) {
+        synchronized (LOCK) { // So the oldest segment cannot be deleted between the check and registering the cursor
+            long first = getFirstSequence();
+            if (afterSequence > 0 && first > 0 && afterSequence < first - 1) {
+                throw new IllegalArgumentException("Changes after " + afterSequence
+                        + " are no longer retained; the oldest is " + first + ".");
+            }
+            Cursor cursor = new Cursor(afterSequence);
+            CURSORS.add(cursor);
+            return cursor;
+        }
+    }
+
+    /**
+     * Forces and closes the current segment. Cursors stop waiting for new changes.
+     */
+    @Override
+    public void close() {
+        synchronized (LOCK) {
+            closed = true;
+            LOCK.notifyAll();
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error: Unable to close the change log - " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the changes not yet written, reopening the current segment after a failed write or starting a new
+     * one if it is full. On failure the changes stay unwritten for the next attempt.
+     */
+    private void writeUnwritten() {
+        if (UNWRITTEN.size() == 0) {
+            return;
+        }
+        byte[] lines = UNWRITTEN.toByteArray();
+        try {
+            if (channel == null && !SEGMENTS.isEmpty()) { // Cuts off anything a failed write left behind
+                channel = new RandomAccessFile(SEGMENTS.lastEntry().getValue(), "rw").getChannel();
+                channel.truncate(segmentSize);
+                channel.position(segmentSize);
+            }
+            if (channel == null || segmentSize >= SEGMENT_BYTES) {
+                long firstSequence = firstSequenceOf(lines);
+                awaitRetention(firstSequence);
+                if (closed) {
+                    return;
+                }
+                roll(firstSequence);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            segmentSize += lines.length;
+            lastSequence = lastSequenceOf(lines);
+            UNWRITTEN.reset();
+            if (failure != null) {
+                failure = null;
+                System.err.println("The change log is being written again.");
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                System.err.println("Error: Unable to write to the change log, retrying on the next change - "
+                        + e.getMessage());
+            }
+            failure = e;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Reopened on the next attempt
+                }
+                channel = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // The changes are written on the next append
+        }
+        LOCK.notifyAll();
+    }
+
+    /**
+     * Blocks while starting a segment at the given sequence number would delete segments an open cursor has yet to
+     * read, or until the log is closed.
+     */
+    private void awaitRetention(long firstSequence) throws InterruptedException {
+        awaitingCursors++;
+        try {
+            while (!closed && SEGMENTS.size() >= KEEP_SEGMENTS && !readByAll(deletedEnd(firstSequence))) {
+                LOCK.wait();
+            }
+        } finally {
+            awaitingCursors--;
+        }
+    }
+
+    /**
+     * Returns the last sequence number of the segments deleted when a segment starting at the given sequence number
+     * is added.
+     */
+    private long deletedEnd(long firstSequence) {
+        int deleted = SEGMENTS.size() + 1 - KEEP_SEGMENTS;
+        for (long first : SEGMENTS.keySet()) {
+            if (deleted-- == 0) {
+                return first - 1;
+            }
+        }
+        return firstSequence - 1;
+    }
+
+    /**
+     * Returns whether every open cursor has read up to the given sequence number.
+     */
+    private boolean readByAll(long sequence) {
+        for (Cursor cursor : CURSORS) {
+            if (cursor.lastSequence < sequence) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a new segment and deletes the oldest segments beyond the retention limit, which every open cursor has
+     * already read.
+     */
+    private void roll(long firstSequence) throws IOException {
+        if (channel != null) { // The new segment's records must not reach the disk before the old one's
+            channel.force(false);
+            channel.close();
+        }
+        File file = new File(DIRECTORY, String.format("%020d", firstSequence) + SUFFIX);
+        channel = new FileOutputStream(file, true).getChannel();
+        segmentSize = file.length();
+        SEGMENTS.put(firstSequence, file);
+        while (SEGMENTS.size() > KEEP_SEGMENTS) {
+            SEGMENTS.pollFirstEntry().getValue().delete();
+        }
+    }
+
+    /**
+     * Blocks until a change after the given sequence number has been appended, the log is closed or the timeout
+     * elapses.
+     */
+    private void awaitAfter(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (LOCK) {
+            long remaining = timeoutMillis;
+            while (lastSequence <= sequence && !closed && remaining > 0) {
+                LOCK.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static long firstSequenceOf(byte[] lines) {
+        int end = 0;
+        while (lines[end] != '\t') {
+            end++;
+        }
+        return Long.parseLong(new String(lines, 0, end, StandardCharsets.US_ASCII));
+    }
+
+    private static long lastSequenceOf(byte[] lines) {
+        int start = lines.length - 1; // The final newline
+        while (start > 0 && lines[start - 1] != '\n') {
+            start--;
+        }
+        int end = start;
+        while (lines[end] != '\t') {
+            end++;
+        }
+        return Long.parseLong(new String(lines, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Reads the changes in a change log in order, from a given sequence number, moving on from segment to segment
+     * and waiting at the end for new changes to be appended. A cursor is used by one thread at a time.
+     */
+    public class Cursor implements AutoCloseable {
+        private FileChannel segment;
+        private long segmentFirst;
+        private long position;
+        // Bytes read from the segment but not yet returned, between position() and limit()
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16).flip();
+        // Read by the appender to decide which segments may be deleted
+        private volatile long lastSequence;
+
+        private Cursor(long afterSequence) {
+            this.lastSequence = afterSequence;
+        }
+
+        /**
+         * Returns the next change, waiting up to the given time for one to be appended.
+         *
+         * @param timeoutMillis The longest time to wait, 0 to return immediately.
+         * @return The next change, or null if there is none yet.
+         * @throws IOException If a segment cannot be read, is corrupt, or was deleted before it was read.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        public ChangeEvent next(long timeoutMillis) throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (true) {
+                ChangeEvent event = readNext();
+                if (event != null) {
+                    return event;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || closed) {
+                    return null;
+                }
+                awaitAfter(lastSequence, remaining);
+            }
+        }
+
+        /**
+         * Returns the sequence number of the last change returned, or the one the cursor was opened after.
+         *
+         * @return The sequence number.
+         */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        /**
+         * Closes the cursor, so that the segments it has yet to read no longer hold up retention.
+         *
+         * @throws IOException If the segment cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (CURSORS.remove(this)) {
+                synchronized (LOCK) {
+                    LOCK.notifyAll();
+                }
+            }
+            if (segment != null) {
+                segment.close();
+                segment = null;
+            }
+        }
+
+        /**
+         * Returns the next change already in the log, or null if the cursor has read everything appended so far.
+         */
+        private ChangeEvent readNext() throws IOException {
+            while (true) {
+                if (segment == null) {
+                    Map.Entry<Long, File> start = SEGMENTS.floorEntry(lastSequence + 1);
+                    if (start == null) {
+                        start = SEGMENTS.firstEntry();
+                        if (start == null) {
+                            return null;
+                        } else if (lastSequence > 0) {
+                            throw new IOException("Changes after " + lastSequence + " are no longer retained.");
+                        }
+                    }
+                    openSegment(start);
+                }
+                String line = readLine();
+                if (line == null) {
+                    Map.Entry<Long, File> newer = SEGMENTS.higherEntry(segmentFirst);
+                    if (newer == null) {
+                        return null;
+                    }
+                    line = readLine(); // The segment was complete before the newer one was started
+                    if (line == null) {
+                        segment.close();
+                        openSegment(newer);
+                        continue;
+                    }
+                }
+                ChangeEvent event = EnrollmentJournal.decode(line);
+                if (event == null) {
+                    throw new IOException("Corrupt change record after sequence " + lastSequence + ".");
+                }
+                if (event.getSequence() > lastSequence) {
+                    lastSequence = event.getSequence();
+                    if (awaitingCursors > 0) { // The append waiting on retention may now go ahead
+                        synchronized (LOCK) {
+                            LOCK.notifyAll();
+                        }
+                    }
+                    return event;
+                }
+            }
+        }
+
+        private void openSegment(Map.Entry<Long, File> entry) throws IOException {
+            try {
+                segment = new FileInputStream(entry.getValue()).getChannel();
+            } catch (FileNotFoundException e) {
+                segment = null;
+                throw new IOException("Changes after " + lastSequence + " are no longer retained.", e);
+            }
+            segmentFirst = entry.getKey();
+            position = 0;
+            buffer.clear().flip();
+        }
+
+        /**
+         * Returns the next complete line of the segment, or null if there is none yet.
+         */
+        private String readLine() throws IOException {
+            int scanned = buffer.position();
+            while (true) {
+                for (int i = scanned; i < buffer.limit(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        String line = new String(buffer.array(), buffer.position(), i - buffer.position(),
+                                StandardCharsets.UTF_8);
+                        buffer.position(i + 1);
+                        return line;
+                    }
+                }
+                scanned = buffer.remaining();
+                buffer.compact();
+                if (!buffer.hasRemaining()) { // A line longer than the buffer
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+                int read = segment.read(buffer, position);
+                buffer.flip();
+                if (read <= 0) {
+                    return null;
+                }
+                position += read;
+            }
+        }
+
+        /**
+         * Returns the offset in the current segment just after the last line returned.
+         */
+        private long position() {
+            return position - buffer.remaining();
+        }
+    }
+}
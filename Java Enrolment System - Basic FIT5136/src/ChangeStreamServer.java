@@ -0,0 +1,158 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * ChangeStreamServer - Streams the {@link ChangeLog} of the Student Enrollment System to subscribers over TCP.
+ * <p>
+ * A subscriber connects and sends one line holding the sequence number of the last change it has processed (0 for
+ * every change retained). The server replies with every change after it, one journal line per change
+ * ({@code sequence TAB crc TAB operation TAB fields...}), then keeps the connection open and sends new changes as
+ * they become durable. If the subscriber disconnects it reconnects with the last sequence number it saw and misses
+ * nothing. If that change is no longer retained the server replies with a single {@code ERROR} line and closes.
+ * </p>
+ *
+ * <p>
+ * Each subscriber has its own cursor over the change log files, and is only sent changes as fast as it reads them:
+ * a slow subscriber blocks its own connection's writes, which holds back its cursor. Only once it is a whole
+ * retention limit behind does it hold up new changes, and with them enrollments; disconnecting releases it.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class ChangeStreamServer implements AutoCloseable {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final long POLL_MILLIS = 1000;
+    private final ChangeLog CHANGES;
+    private final ServerSocket SERVER;
+    private final ExecutorService EXECUTOR;
+    private final Set<Socket> SUBSCRIBERS = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * Constructs a ChangeStreamServer bound to the given port. The server does not accept subscribers until started.
+     *
+     * @param changes The change log to stream.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public ChangeStreamServer(ChangeLog changes, int port) throws IOException {
+        this.CHANGES = changes;
+        this.SERVER = new ServerSocket();
+        this.SERVER.bind(new InetSocketAddress(port));
+        this.EXECUTOR = EnrollmentServer.newRequestExecutor();
+    }
+
+    /**
+     * Starts accepting subscribers on a background thread.
+     */
+    public void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "change-stream");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return SERVER.getLocalPort();
+    }
+
+    /**
+     * Stops accepting subscribers and disconnects those connected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            SERVER.close();
+        } catch (IOException e) {
+            System.err.println("Error: Unable to close the change stream - " + e.getMessage());
+        }
+        for (Socket socket : SUBSCRIBERS) {
+            closeQuietly(socket);
+        }
+        EXECUTOR.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = SERVER.accept();
+                SUBSCRIBERS.add(socket);
+                EXECUTOR.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Error: Unable to accept a change stream subscriber - " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a subscriber every change after the sequence number it asks for, then new changes until it disconnects.
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+            long afterSequence;
+            try {
+                String request = in.readLine();
+                afterSequence = request == null ? 0 : Long.parseLong(request.trim());
+            } catch (NumberFormatException e) {
+                out.write("ERROR Expected the sequence number to resume after.\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return;
+            }
+            try (ChangeLog.Cursor cursor = CHANGES.open(afterSequence)) {
+                while (!closed) {
+                    ChangeEvent event = cursor.next(0);
+                    if (event == null) { // Caught up: send what is buffered, then wait for more
+                        out.flush();
+                        event = cursor.next(POLL_MILLIS);
+                        if (event == null) {
+                            continue;
+                        }
+                    }
+                    out.write(event.getLine().getBytes(StandardCharsets.UTF_8));
+                    out.write('\n'); // Blocks while the subscriber is not reading, holding back its cursor
+                }
+            } catch (IllegalArgumentException | IOException e) { // Not retained, or a disconnect: then this fails too
+                out.write(("ERROR " + e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The subscriber disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            SUBSCRIBERS.remove(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CompletedUnits - The codes of the units a student has completed.
+ * <p>
+ * Completed units are what prerequisites are checked against, and may include units no longer in the catalogue.
+ * A set of completed units is immutable; recording another completion replaces it. It also caches the bitsets
+ * {@link PrerequisiteGraph} turns it into, so they are only computed again once the student completes another
+ * unit or the catalogue changes.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class CompletedUnits {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    // A student who has not completed any units
+    public static final CompletedUnits NONE = new CompletedUnits(new String[0]);
+    private final String[] CODES;
+    private volatile PrerequisiteGraph.Credit credit;
+
+    private CompletedUnits(String[] codes) {
+        this.CODES = codes;
+    }
+
+    /**
+     * Creates a set of completed units.
+     *
+     * @param codes The unit codes.
+     * @return The completed units, without duplicates, sorted by code.
+     */
+    public static CompletedUnits of(String... codes) {
+        String[] sorted = Arrays.stream(codes).distinct().sorted().toArray(String[]::new);
+        return sorted.length == 0 ? NONE : new CompletedUnits(sorted);
+    }
+
+    /**
+     * Returns these completed units with one more.
+     *
+     * @param unitCode The code of the unit completed.
+     * @return The new completed units, or these if the unit was already completed.
+     */
+    public CompletedUnits with(String unitCode) {
+        if (contains(unitCode)) {
+            return this;
+        }
+        String[] codes = Arrays.copyOf(CODES, CODES.length + 1);
+        codes[CODES.length] = unitCode;
+        return of(codes);
+    }
+
+    /**
+     * Checks if a unit has been completed.
+     *
+     * @param unitCode The code of the unit.
+     * @return True if the unit is among the completed units.
+     */
+    public boolean contains(String unitCode) {
+        return Arrays.binarySearch(CODES, unitCode) >= 0;
+    }
+
+    /**
+     * Returns whether no units have been completed.
+     *
+     * @return True if there are no completed units.
+     */
+    public boolean isEmpty() {
+        return CODES.length == 0;
+    }
+
+    /**
+     * Returns the codes of the completed units.
+     *
+     * @return An unmodifiable list of the unit codes, sorted.
+     */
+    public List<String> getCodes() {
+        return Collections.unmodifiableList(Arrays.asList(CODES));
+    }
+
+    PrerequisiteGraph.Credit getCredit() {
+        return credit;
+    }
+
+    void setCredit(PrerequisiteGraph.Credit credit) {
+        this.credit = credit;
+    }
+}
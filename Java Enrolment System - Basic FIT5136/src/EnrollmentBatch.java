@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EnrollmentBatch - A set of enrollments, such as a whole cohort into its units, made all-or-nothing.
+ * <p>
+ * Pairs of student ID and unit code are added to the batch, which is then submitted to
+ * {@link StudentEnrollmentSystem#enrollAll(EnrollmentBatch)}. Every pair is checked before any is made: the
+ * student and unit must exist, the student must not already be enrolled in the unit (or be listed twice for it),
+ * must stay within their load policy, and the unit must have a seat for every student the batch adds to it. Either
+ * every enrollment is made, in one journal record, or none is and the result of each pair says why.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentBatch {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final List<String> STUDENT_IDS = new ArrayList<>();
+    private final List<String> UNIT_CODES = new ArrayList<>();
+    private EnrollmentResult[] results;
+
+    /**
+     * Adds an enrollment to the batch.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return This batch, to add more.
+     */
+    public EnrollmentBatch add(String studentId, String unitCode) {
+        STUDENT_IDS.add(studentId);
+        UNIT_CODES.add(unitCode);
+        return this;
+    }
+
+    /**
+     * Returns the number of enrollments in the batch.
+     *
+     * @return The number of enrollments.
+     */
+    public int size() {
+        return STUDENT_IDS.size();
+    }
+
+    /**
+     * Returns the student ID of an enrollment.
+     *
+     * @param index The position of the enrollment in the batch.
+     * @return The student ID.
+     */
+    public String getStudentId(int index) {
+        return STUDENT_IDS.get(index);
+    }
+
+    /**
+     * Returns the unit code of an enrollment.
+     *
+     * @param index The position of the enrollment in the batch.
+     * @return The unit code.
+     */
+    public String getUnitCode(int index) {
+        return UNIT_CODES.get(index);
+    }
+
+    /**
+     * Returns the outcome of an enrollment once the batch has been submitted: SUCCESS if it was valid, otherwise
+     * the reason it was not. Unless every enrollment is SUCCESS, none of them were made.
+     *
+     * @param index The position of the enrollment in the batch.
+     * @return The outcome, or null if the batch has not been submitted.
+     */
+    public EnrollmentResult getResult(int index) {
+        return results == null ? null : results[index];
+    }
+
+    /**
+     * Records the outcome of each enrollment, when the batch is submitted.
+     *
+     * @param results The outcomes, in the order the enrollments were added.
+     */
+    void setResults(EnrollmentResult[] results) {
+        this.results = results;
+    }
+}
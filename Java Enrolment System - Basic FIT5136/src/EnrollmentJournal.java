@@ -0,0 +1,436 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * EnrollmentJournal - An append-only, write-ahead journal of every mutation made to the Student Enrollment System.
+ * <p>
+ * Each record is written as a single line holding a sequence number, a CRC32 checksum and the tab separated fields
+ * of the mutation. Writers append into an in-memory buffer and a background flusher writes and fsyncs everything
+ * buffered so far in one go (group commit), so many concurrent mutations share the cost of a single fsync.
+ * </p>
+ *
+ * <p>
+ * On recovery the journal is replayed in order; a torn or corrupt record at the tail (e.g. from a crash mid-write)
+ * ends the replay rather than failing it.
+ * </p>
+ *
+ * <p>
+ * Every batch is also passed on to the {@link ChangeLog}, if one is set, once it is durable, so that subscribers
+ * only ever see changes that will survive a crash.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentJournal implements AutoCloseable {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final File FILE;
+    private final long GROUP_COMMIT_MILLIS;
+    private final Object LOCK = new Object();
+    private final Object TRUNCATE_LOCK = new Object();
+    private final Thread FLUSHER;
+    private FileChannel channel;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long nextSequence;
+    private long durableSequence;
+    private long recordsSinceSnapshot;
+    private IOException failure;
+    private boolean closed;
+    private volatile ChangeLog changeLog;
+
+    /**
+     * Opens (or creates) a journal file for appending.
+     *
+     * @param file The journal file.
+     * @param lastSequence The highest sequence number already applied, new records continue from here.
+     * @param groupCommitMillis The longest time a record may wait in the buffer before it is fsynced.
+     * @throws IOException If the file cannot be opened.
+     */
+    public EnrollmentJournal(File file, long lastSequence, long groupCommitMillis) throws IOException {
+        this.FILE = file;
+        this.GROUP_COMMIT_MILLIS = groupCommitMillis;
+        this.channel = new FileOutputStream(file, true).getChannel();
+        this.nextSequence = lastSequence + 1;
+        this.durableSequence = lastSequence;
+        this.FLUSHER = new Thread(this::flushLoop, "journal-flusher");
+        this.FLUSHER.setDaemon(true);
+        this.FLUSHER.start();
+    }
+
+    /**
+     * Sets the change log that every durable batch of records is appended to.
+     *
+     * @param changeLog The change log, or null for none.
+     */
+    public void setChangeLog(ChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Appends a record to the journal buffer without waiting for it to reach the disk.
+     *
+     * @param fields The fields of the record, the first being the operation name.
+     * @return The sequence number assigned to the record.
+     */
+    public long append(String... fields) {
+        synchronized (LOCK) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed.");
+            }
+            long sequence = nextSequence++;
+            byte[] line = encode(sequence, fields);
+            pending.write(line, 0, line.length);
+            recordsSinceSnapshot++;
+            return sequence;
+        }
+    }
+
+    /**
+     * Appends a record and blocks until it (and every record before it) has been fsynced.
+     *
+     * @param fields The fields of the record, the first being the operation name.
+     * @return The sequence number assigned to the record.
+     */
+    public long commit(String... fields) {
+        long sequence = append(fields);
+        awaitDurable(sequence);
+        return sequence;
+    }
+
+    /**
+     * Blocks until the record with the given sequence number has been fsynced.
+     *
+     * @param sequence The sequence number to wait for.
+     */
+    public void awaitDurable(long sequence) {
+        synchronized (LOCK) {
+            LOCK.notifyAll(); // Wake the flusher so a waiting writer doesn't sit out a full interval
+            while (durableSequence < sequence && failure == null) {
+                try {
+                    LOCK.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal.", e);
+                }
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Journal write failed.", failure);
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number of the most recently appended record.
+     *
+     * @return The last sequence number.
+     */
+    public long getLastSequence() {
+        synchronized (LOCK) {
+            return nextSequence - 1;
+        }
+    }
+
+    /**
+     * Returns the number of records appended since the journal was last truncated by a snapshot.
+     *
+     * @return The number of records since the last snapshot.
+     */
+    public long getRecordsSinceSnapshot() {
+        synchronized (LOCK) {
+            return recordsSinceSnapshot;
+        }
+    }
+
+    /**
+     * Discards every record up to and including the given sequence number, which must already be covered by a
+     * durable snapshot. Records appended after that sequence number are kept.
+     * <p>
+     * Writers are only held up for the final step: the records already on disk are copied into a new file without
+     * the lock, then the lock is taken just long enough to copy the short tail appended since and swap the files.
+     * </p>
+     *
+     * @param snapshotSequence The sequence number the snapshot was taken at.
+     * @throws IOException If the journal cannot be rewritten.
+     */
+    public void truncate(long snapshotSequence) throws IOException {
+        synchronized (TRUNCATE_LOCK) {
+            long endSequence;
+            long endOffset;
+            synchronized (LOCK) {
+                awaitDurable(nextSequence - 1);
+                endSequence = nextSequence - 1;
+                endOffset = channel.size();
+            }
+            File rewritten = new File(FILE.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(rewritten)) {
+                long kept = copyRecords(snapshotSequence, endSequence, out);
+                synchronized (LOCK) {
+                    awaitDurable(nextSequence - 1);
+                    try (FileChannel in = FileChannel.open(FILE.toPath(), StandardOpenOption.READ)) {
+                        long tail = in.size() - endOffset;
+                        long copied = 0;
+                        while (copied < tail) {
+                            copied += in.transferTo(endOffset + copied, tail - copied, out.getChannel());
+                        }
+                    }
+                    out.getChannel().force(false);
+                    channel.close();
+                    Files.move(rewritten.toPath(), FILE.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    channel = new FileOutputStream(FILE, true).getChannel();
+                    recordsSinceSnapshot = kept + (nextSequence - 1 - endSequence);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the records after {@code afterSequence}, up to and including {@code endSequence}, into a new journal
+     * file. Every one of them is already durable, so the file is read without holding the lock.
+     *
+     * @param afterSequence Records at or below this sequence number are dropped.
+     * @param endSequence The last record to copy.
+     * @param out The new journal file.
+     * @return The number of records copied.
+     * @throws IOException If the journal cannot be read or the new file written.
+     */
+    private long copyRecords(long afterSequence, long endSequence, FileOutputStream out) throws IOException {
+        long copied = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(FILE), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ChangeEvent record = decode(line);
+                if (record == null || record.getSequence() > endSequence) {
+                    break; // Past what was durable when the copy started, the tail is copied under the lock
+                }
+                if (record.getSequence() <= afterSequence) {
+                    continue;
+                }
+                out.write(encode(record.getSequence(), record.getFields()));
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Flushes everything buffered, stops the flusher and closes the file.
+     *
+     * @throws IOException If the final flush fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (LOCK) {
+            if (closed) {
+                return;
+            }
+            awaitDurable(nextSequence - 1);
+            closed = true;
+            LOCK.notifyAll();
+        }
+        try {
+            FLUSHER.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Writes and fsyncs the buffered records in batches until the journal is closed.
+     */
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            long batchSequence;
+            synchronized (LOCK) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        LOCK.wait(GROUP_COMMIT_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return; // Closed and nothing left to write
+                }
+                batch = pending;
+                batchSequence = nextSequence - 1;
+                pending = new ByteArrayOutputStream();
+            }
+            byte[] records = batch.toByteArray();
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(records);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (LOCK) {
+                    failure = e;
+                    LOCK.notifyAll();
+                }
+                return;
+            }
+            ChangeLog changeLog = this.changeLog;
+            if (changeLog != null) { // Before the batch is reported durable, so truncation never outruns the log
+                changeLog.append(records);
+            }
+            synchronized (LOCK) {
+                durableSequence = batchSequence;
+                LOCK.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Replays the records of a journal file in order.
+     * <p>
+     * Records with a sequence number at or below {@code afterSequence} are skipped since they are already covered
+     * by a snapshot. Replay stops at the first torn or corrupt record.
+     * </p>
+     *
+     * @param file The journal file to read.
+     * @param afterSequence Only records after this sequence number are replayed.
+     * @param consumer Receives the sequence number and fields of each record.
+     * @return The number of records replayed.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long replay(File file, long afterSequence, BiConsumer<Long, String[]> consumer) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long replayed = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ChangeEvent record = decode(line);
+                if (record == null) {
+                    break; // Torn or corrupt record
+                }
+                if (record.getSequence() <= afterSequence) {
+                    continue;
+                }
+                consumer.accept(record.getSequence(), record.getFields());
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Encodes a record as a single checksummed line.
+     *
+     * @param sequence The sequence number of the record.
+     * @param fields The fields of the record.
+     * @return The UTF-8 bytes of the line, including the trailing newline.
+     */
+    static byte[] encode(long sequence, String... fields) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                body.append('\t');
+            }
+            body.append(escape(fields[i]));
+        }
+        String line = sequence + "\t" + Long.toHexString(checksum(body.toString())) + "\t" + body + "\n";
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a checksummed line written by {@link #encode(long, String...)}.
+     *
+     * @param line The line, without its trailing newline.
+     * @return The record, or null if the line is torn or fails its checksum.
+     */
+    static ChangeEvent decode(String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length < 3) {
+            return null;
+        }
+        long sequence;
+        long checksum;
+        try {
+            sequence = Long.parseLong(parts[0]);
+            checksum = Long.parseLong(parts[1], 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String body = line.substring(parts[0].length() + parts[1].length() + 2);
+        if (checksum(body) != checksum) {
+            return null;
+        }
+        String[] fields = new String[parts.length - 2];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = unescape(parts[i + 2]);
+        }
+        return new ChangeEvent(sequence, fields, line);
+    }
+
+    private static long checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static String escape(String field) {
+        if (field == null) {
+            return "\\0";
+        }
+        StringBuilder escaped = new StringBuilder(field.length());
+        for (char c : field.toCharArray()) {
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String field) {
+        if (field.equals("\\0")) {
+            return null;
+        }
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder unescaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                switch (next) {
+                    case 't': unescaped.append('\t'); break;
+                    case 'n': unescaped.append('\n'); break;
+                    case 'r': unescaped.append('\r'); break;
+                    default: unescaped.append(next);
+                }
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
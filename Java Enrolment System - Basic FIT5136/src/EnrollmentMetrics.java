@@ -0,0 +1,167 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EnrollmentMetrics - Latency histograms and outcome counters for every operation of the Student Enrollment System.
+ * <p>
+ * Each operation has two {@link LatencyHistogram}s, one for successes and one for failures (a refusal such as
+ * UNIT_FULL is usually much faster than an enrollment that waits for the journal, and would hide it if they were
+ * mixed), and a counter for each {@link EnrollmentResult} it can return. Everything is allocated up front and
+ * indexed by ordinal, so recording an operation is a few atomic increments with no locks, no boxing and no
+ * allocation.
+ * </p>
+ *
+ * <p>
+ * The metrics are shown in the administrator menu, written as JSON by {@link #toJson()}, and served by
+ * {@link EnrollmentServer} at {@code GET /metrics}. They count from when the system was started.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentMetrics {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final EnrollmentResult[] RESULTS = EnrollmentResult.values();
+    private final LatencyHistogram[] SUCCESSES = new LatencyHistogram[OPERATIONS.length];
+    private final LatencyHistogram[] FAILURES = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] OUTCOMES = new LongAdder[OPERATIONS.length * RESULTS.length];
+
+    /**
+     * The operations that are measured.
+     */
+    public enum Operation {
+        CREATE_STUDENT,
+        DELETE_STUDENT,
+        CREATE_UNIT,
+        DELETE_UNIT,
+        ENROLL,
+        ENROLL_BATCH,
+        DROP,
+        JOIN_WAITLIST,
+        LEAVE_WAITLIST,
+        PROMOTE,
+        COMPLETE_UNIT,
+        LIST_STUDENTS,
+        LIST_UNITS,
+        LIST_ROSTER,
+        SEARCH_STUDENTS,
+        SEARCH_UNITS
+    }
+
+    /**
+     * Constructs an EnrollmentMetrics with nothing recorded.
+     */
+    public EnrollmentMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            SUCCESSES[i] = new LatencyHistogram();
+            FAILURES[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < OUTCOMES.length; i++) {
+            OUTCOMES[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records an operation that has just finished.
+     *
+     * @param operation The operation.
+     * @param result The outcome of the operation.
+     * @param startNanos The value of {@link System#nanoTime()} when the operation started.
+     */
+    public void record(Operation operation, EnrollmentResult result, long startNanos) {
+        long latency = System.nanoTime() - startNanos;
+        (result.isSuccess() ? SUCCESSES : FAILURES)[operation.ordinal()].record(latency);
+        OUTCOMES[operation.ordinal() * RESULTS.length + result.ordinal()].increment();
+    }
+
+    /**
+     * Returns the latencies of an operation, in nanoseconds.
+     *
+     * @param operation The operation.
+     * @param success True for the latencies of successes, false for those of failures.
+     * @return The histogram of latencies.
+     */
+    public LatencyHistogram getLatencies(Operation operation, boolean success) {
+        return (success ? SUCCESSES : FAILURES)[operation.ordinal()];
+    }
+
+    /**
+     * Returns how many times an operation had an outcome.
+     *
+     * @param operation The operation.
+     * @param result The outcome.
+     * @return The count.
+     */
+    public long getCount(Operation operation, EnrollmentResult result) {
+        return OUTCOMES[operation.ordinal() * RESULTS.length + result.ordinal()].sum();
+    }
+
+    /**
+     * Returns the metrics as a JSON object with an entry per operation, e.g.
+     * {@code {"ENROLL":{"outcomes":{"SUCCESS":10,"UNIT_FULL":2},"success":{"count":10,"meanNanos":...,
+     * "p50Nanos":...,"p99Nanos":...,"p999Nanos":...,"maxNanos":...},"failure":{...}},...}}. Outcomes that never
+     * happened are left out.
+     *
+     * @return The JSON text.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (Operation operation : OPERATIONS) {
+            json.append(json.length() > 1 ? "," : "").append('"').append(operation).append("\":{\"outcomes\":{");
+            boolean first = true;
+            for (EnrollmentResult result : RESULTS) {
+                long count = getCount(operation, result);
+                if (count > 0) {
+                    json.append(first ? "" : ",").append('"').append(result).append("\":").append(count);
+                    first = false;
+                }
+            }
+            json.append("},\"success\":").append(histogramJson(getLatencies(operation, true)))
+                    .append(",\"failure\":").append(histogramJson(getLatencies(operation, false))).append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Summarizes the operations that have been recorded: the latencies of their successes and of their failures,
+     * then the count of each outcome.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram successes = getLatencies(operation, true);
+            LatencyHistogram failures = getLatencies(operation, false);
+            if (successes.getCount() + failures.getCount() == 0) {
+                continue;
+            }
+            summary.append(operation).append('\n');
+            if (successes.getCount() > 0) {
+                summary.append("  success: ").append(successes).append('\n');
+            }
+            if (failures.getCount() > 0) {
+                summary.append("  failure: ").append(failures).append('\n');
+            }
+            summary.append("  outcomes:");
+            for (EnrollmentResult result : RESULTS) {
+                long count = getCount(operation, result);
+                if (count > 0) {
+                    summary.append(' ').append(result).append('=').append(count);
+                }
+            }
+            summary.append('\n');
+        }
+        return summary.length() == 0 ? "No operations recorded yet.\n" : summary.toString();
+    }
+
+    private static String histogramJson(LatencyHistogram histogram) {
+        return "{\"count\":" + histogram.getCount() + ",\"meanNanos\":" + Math.round(histogram.getMean())
+                + ",\"p50Nanos\":" + histogram.getPercentile(50) + ",\"p99Nanos\":" + histogram.getPercentile(99)
+                + ",\"p999Nanos\":" + histogram.getPercentile(99.9) + ",\"maxNanos\":" + histogram.getMax() + "}";
+    }
+}
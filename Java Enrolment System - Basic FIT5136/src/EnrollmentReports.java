@@ -0,0 +1,415 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * EnrollmentReports - Enrollment counts, credit loads and popular unit pairs over a consistent snapshot.
+ * <p>
+ * The snapshot is taken by {@link StudentEnrollmentSystem#getReports()} from a pinned {@link EnrollmentView}, so
+ * each enrollment, batch and withdrawal is either entirely in it or not at all, and changes carry on meanwhile.
+ * Taking it only copies references: a student's unit IDs are kept in an array that is replaced rather than
+ * modified, so the snapshot keeps the arrays themselves, flattened for splitting between tasks. Enrollments in
+ * units that had already left the catalogue (whose students were still being unenrolled) are not counted.
+ * </p>
+ *
+ * <p>
+ * Each report walks the snapshot with a parallel stream, which the common fork/join pool splits across the cores.
+ * Every task counts into its own arrays, indexed by the unit's position in the catalogue, and the partial counts
+ * are added together as the tasks join, so no counter is shared between threads and the reports scale with the
+ * number of cores. The snapshot never changes, so its reports may be computed as often as needed.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentReports {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    // The number of unit pairs reported unless asked for another number
+    public static final int DEFAULT_LIMIT = 10;
+    // The catalogue, sorted by code
+    private final Unit[] UNITS;
+    // The position in UNITS of each unit ID, or -1 for units no longer in the catalogue
+    private final int[] POSITIONS;
+    // The student types, sorted by name
+    private final String[] TYPES;
+    // For each student, their type as an index into TYPES and the IDs of their units
+    private final byte[] STUDENT_TYPES;
+    private final int[][] ENROLMENTS;
+
+    /**
+     * Takes the snapshot.
+     *
+     * @param view The view to report on.
+     */
+    EnrollmentReports(EnrollmentView view) {
+        this.UNITS = view.getUnits().toArray(new Unit[0]);
+        Map<Unit, Integer> positions = new IdentityHashMap<>();
+        for (int position = 0; position < UNITS.length; position++) {
+            positions.put(UNITS[position], position);
+        }
+        this.POSITIONS = new int[view.getUnitIdBound()];
+        for (int id = 0; id < POSITIONS.length; id++) { // IDs as they stood in the view, since they may be reused
+            Unit unit = view.getUnit(id);
+            POSITIONS[id] = unit == null ? -1 : positions.getOrDefault(unit, -1);
+        }
+
+        Student[] students = new Student[view.getStudentCount()];
+        this.ENROLMENTS = new int[students.length][];
+        int[] next = new int[1];
+        view.forEachEnrolment((student, unitIds) -> {
+            students[next[0]] = student;
+            ENROLMENTS[next[0]++] = unitIds;
+        });
+        Class<?>[] types = Arrays.stream(students).parallel().map(Object::getClass).distinct()
+                .sorted(Comparator.comparing(Class::getSimpleName)).toArray(Class<?>[]::new);
+        this.TYPES = Arrays.stream(types).map(Class::getSimpleName).toArray(String[]::new);
+        List<Class<?>> typeList = Arrays.asList(types);
+        this.STUDENT_TYPES = new byte[students.length];
+        IntStream.range(0, students.length).parallel()
+                .forEach(student -> STUDENT_TYPES[student] = (byte) typeList.indexOf(students[student].getClass()));
+    }
+
+    /**
+     * Returns the number of students in the snapshot.
+     *
+     * @return The number of students.
+     */
+    public int getStudentCount() {
+        return ENROLMENTS.length;
+    }
+
+    /**
+     * Counts the students enrolled in each unit.
+     *
+     * @return The number of students enrolled in each unit, by unit code, sorted by code. Units nobody is enrolled
+     *         in are included with a count of zero.
+     */
+    public Map<String, Long> getEnrollmentCounts() {
+        long[] counts = students().collect(() -> new long[UNITS.length], (partial, student) -> {
+            for (int id : ENROLMENTS[student]) {
+                int position = position(id);
+                if (position >= 0) {
+                    partial[position]++;
+                }
+            }
+        }, EnrollmentReports::sum);
+        Map<String, Long> report = new LinkedHashMap<>();
+        for (int position = 0; position < UNITS.length; position++) {
+            report.put(UNITS[position].getCode(), counts[position]);
+        }
+        return Collections.unmodifiableMap(report);
+    }
+
+    /**
+     * Counts the students of each type carrying each load, i.e. the distribution of the total credit points of the
+     * units they are enrolled in.
+     *
+     * @return For each student type (e.g. "PartTimeStudent"), sorted by name, the number of students carrying each
+     *         load, by credit points. Loads nobody carries are left out.
+     */
+    public Map<String, NavigableMap<Integer, Long>> getCreditLoads() {
+        long[][] histograms = students().collect(() -> new long[TYPES.length][], (partial, student) -> {
+            int load = 0;
+            for (int id : ENROLMENTS[student]) {
+                int position = position(id);
+                if (position >= 0) {
+                    load += UNITS[position].getCreditPoints();
+                }
+            }
+            int type = STUDENT_TYPES[student];
+            long[] histogram = partial[type];
+            if (histogram == null || histogram.length <= load) {
+                histogram = histogram == null ? new long[load + 1]
+                        : Arrays.copyOf(histogram, Math.max(load + 1, histogram.length * 2));
+                partial[type] = histogram;
+            }
+            histogram[load]++;
+        }, (left, right) -> {
+            for (int type = 0; type < TYPES.length; type++) {
+                left[type] = sum(left[type], right[type]);
+            }
+        });
+        Map<String, NavigableMap<Integer, Long>> report = new LinkedHashMap<>();
+        for (int type = 0; type < TYPES.length; type++) {
+            NavigableMap<Integer, Long> loads = new TreeMap<>();
+            for (int load = 0; histograms[type] != null && load < histograms[type].length; load++) {
+                if (histograms[type][load] > 0) {
+                    loads.put(load, histograms[type][load]);
+                }
+            }
+            report.put(TYPES[type], Collections.unmodifiableNavigableMap(loads));
+        }
+        return Collections.unmodifiableMap(report);
+    }
+
+    /**
+     * Finds the pairs of units most often taken together.
+     *
+     * @param limit The maximum number of pairs to return.
+     * @return The pairs of units with the most students enrolled in both, most students first, then by unit code.
+     */
+    public List<UnitPair> getPopularPairs(int limit) {
+        PairCounter counts = students().collect(PairCounter::new, (partial, student) -> {
+            int[] ids = ENROLMENTS[student];
+            for (int i = 0; i < ids.length; i++) {
+                int first = position(ids[i]);
+                for (int j = i + 1; first >= 0 && j < ids.length; j++) {
+                    int second = position(ids[j]);
+                    if (second >= 0) {
+                        partial.add(PairCounter.key(Math.min(first, second), Math.max(first, second)), 1);
+                    }
+                }
+            }
+        }, PairCounter::addAll);
+        // Keeps the best pairs found so far, with the least popular of them at the head
+        Comparator<UnitPair> best = Comparator.comparingLong(UnitPair::getStudents).reversed()
+                .thenComparing(UnitPair::getFirstCode, EnrollmentSnapshot::compareIds)
+                .thenComparing(UnitPair::getSecondCode, EnrollmentSnapshot::compareIds);
+        PriorityQueue<UnitPair> top = new PriorityQueue<>(best.reversed());
+        counts.forEach((key, students) -> {
+            top.add(new UnitPair(UNITS[PairCounter.first(key)].getCode(), UNITS[PairCounter.second(key)].getCode(),
+                    students));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        UnitPair[] pairs = top.toArray(new UnitPair[0]);
+        Arrays.sort(pairs, best);
+        return List.of(pairs);
+    }
+
+    /**
+     * Writes every report as JSON.
+     *
+     * @param limit The maximum number of unit pairs to include.
+     * @return A JSON object with the number of students, the enrollment count of each unit, the credit loads of
+     *         each student type and the most popular unit pairs.
+     */
+    public String toJson(int limit) {
+        StringBuilder json = new StringBuilder("{\"students\":").append(getStudentCount()).append(",\"enrollments\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> count : getEnrollmentCounts().entrySet()) {
+            json.append(first ? "" : ",").append(Json.quote(count.getKey())).append(':').append(count.getValue());
+            first = false;
+        }
+        json.append("},\"creditLoads\":{");
+        first = true;
+        for (Map.Entry<String, NavigableMap<Integer, Long>> type : getCreditLoads().entrySet()) {
+            json.append(first ? "" : ",").append(Json.quote(type.getKey())).append(":{");
+            boolean firstLoad = true;
+            for (Map.Entry<Integer, Long> load : type.getValue().entrySet()) {
+                json.append(firstLoad ? "" : ",").append('"').append(load.getKey()).append("\":").append(load.getValue());
+                firstLoad = false;
+            }
+            json.append('}');
+            first = false;
+        }
+        json.append("},\"popularPairs\":[");
+        first = true;
+        for (UnitPair pair : getPopularPairs(limit)) {
+            json.append(first ? "" : ",").append("{\"units\":[").append(Json.quote(pair.getFirstCode())).append(',')
+                    .append(Json.quote(pair.getSecondCode())).append("],\"students\":").append(pair.getStudents())
+                    .append('}');
+            first = false;
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Summarizes every report: the enrollment count of each unit, the credit loads of each student type and the
+     * {@link #DEFAULT_LIMIT} most popular unit pairs.
+     *
+     * @return The summary.
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("Students: ").append(getStudentCount()).append('\n');
+        summary.append("\nEnrollments per unit:\n");
+        for (Map.Entry<String, Long> count : getEnrollmentCounts().entrySet()) {
+            summary.append("  ").append(count.getKey()).append(": ").append(count.getValue()).append('\n');
+        }
+        summary.append("\nCredit loads (credit points = students):\n");
+        for (Map.Entry<String, NavigableMap<Integer, Long>> type : getCreditLoads().entrySet()) {
+            summary.append("  ").append(type.getKey()).append(':');
+            for (Map.Entry<Integer, Long> load : type.getValue().entrySet()) {
+                summary.append(' ').append(load.getKey()).append('=').append(load.getValue());
+            }
+            summary.append('\n');
+        }
+        summary.append("\nUnits most often taken together:\n");
+        List<UnitPair> pairs = getPopularPairs(DEFAULT_LIMIT);
+        for (UnitPair pair : pairs) {
+            summary.append("  ").append(pair).append('\n');
+        }
+        return pairs.isEmpty() ? summary.append("  No student is enrolled in two units.\n").toString()
+                : summary.toString();
+    }
+
+    private IntStream students() {
+        return IntStream.range(0, ENROLMENTS.length).parallel();
+    }
+
+    private int position(int unitId) {
+        return unitId < POSITIONS.length ? POSITIONS[unitId] : -1;
+    }
+
+    /**
+     * Adds two partial counts together, either of which may be null or shorter than the other.
+     *
+     * @param left The first counts, reused for the result where possible.
+     * @param right The second counts, also reused.
+     * @return The summed counts.
+     */
+    private static long[] sum(long[] left, long[] right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        if (left.length < right.length) {
+            long[] longer = right;
+            right = left;
+            left = longer;
+        }
+        for (int i = 0; i < right.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    /**
+     * UnitPair - Two units and the number of students enrolled in both.
+     */
+    public static class UnitPair {
+        private final String FIRST_CODE;
+        private final String SECOND_CODE;
+        private final long STUDENTS;
+
+        private UnitPair(String firstCode, String secondCode, long students) {
+            this.FIRST_CODE = firstCode;
+            this.SECOND_CODE = secondCode;
+            this.STUDENTS = students;
+        }
+
+        /**
+         * Returns the code of the first unit, which sorts before the second.
+         *
+         * @return The unit code.
+         */
+        public String getFirstCode() {
+            return FIRST_CODE;
+        }
+
+        /**
+         * Returns the code of the second unit.
+         *
+         * @return The unit code.
+         */
+        public String getSecondCode() {
+            return SECOND_CODE;
+        }
+
+        /**
+         * Returns the number of students enrolled in both units.
+         *
+         * @return The number of students.
+         */
+        public long getStudents() {
+            return STUDENTS;
+        }
+
+        @Override
+        public String toString() {
+            return FIRST_CODE + " + " + SECOND_CODE + ": " + STUDENTS + (STUDENTS == 1 ? " student" : " students");
+        }
+    }
+
+    /**
+     * PairCounter - Counts pairs of catalogue positions in an open-addressing table of primitive longs, so that
+     * counting a pair allocates nothing.
+     */
+    private static class PairCounter {
+        private static final long EMPTY = -1; // Keys are never negative
+        private long[] keys = newKeys(64);
+        private long[] counts = new long[64];
+        private int size;
+
+        static long key(int first, int second) {
+            return (long) first << 32 | second;
+        }
+
+        static int first(long key) {
+            return (int) (key >>> 32);
+        }
+
+        static int second(long key) {
+            return (int) key;
+        }
+
+        void add(long key, long count) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int slot = slot(keys, key);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += count;
+        }
+
+        void addAll(PairCounter other) {
+            other.forEach(this::add);
+        }
+
+        void forEach(Counted action) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    action.accept(keys[slot], counts[slot]);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new long[oldKeys.length * 2];
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY) {
+                    int newSlot = slot(keys, oldKeys[slot]);
+                    keys[newSlot] = oldKeys[slot];
+                    counts[newSlot] = oldCounts[slot];
+                }
+            }
+        }
+
+        private static int slot(long[] keys, long key) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        interface Counted {
+            void accept(long key, long count);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * EnrollmentResult - The outcome of an operation on the Student Enrollment System.
+ * <p>
+ * Enrollment checks and changes happen atomically inside the system, so the outcome is reported back as a value
+ * rather than being decided up front by the caller. The headless operations of {@link StudentEnrollmentSystem}
+ * return one of these instead of printing, leaving it to the caller (the console menus, an import job or a
+ * server) to decide how to present it.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public enum EnrollmentResult {
+    SUCCESS,
+    STUDENT_NOT_FOUND,
+    UNIT_NOT_FOUND,
+    ALREADY_ENROLLED,
+    UNIT_LIMIT_REACHED,
+    CREDIT_LIMIT_REACHED,
+    UNIT_FULL,
+    NOT_ENROLLED,
+    STUDENT_EXISTS,
+    UNIT_EXISTS,
+    ALREADY_WAITLISTED,
+    NOT_WAITLISTED,
+    TIMETABLE_CLASH,
+    MISSING_PREREQUISITES,
+    MISSING_COREQUISITES,
+    PROHIBITED_UNIT,
+    PREREQUISITE_CYCLE,
+    ALREADY_COMPLETED;
+
+    /**
+     * Checks if the operation succeeded.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+}
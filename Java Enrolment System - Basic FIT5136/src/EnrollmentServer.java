@@ -0,0 +1,434 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EnrollmentServer - Exposes the headless operations of the Student Enrollment System over HTTP/JSON.
+ * <p>
+ * Built on the JDK's own {@code com.sun.net.httpserver}, so it needs no external services. Each request is handled
+ * on its own virtual thread where the JDK supports them (Java 21 and later), so thousands of students blocked on
+ * a journal fsync cost no more than thousands of parked continuations; older JDKs fall back to a cached thread pool.
+ * </p>
+ *
+ * <p>
+ * Endpoints (request bodies are flat JSON objects with the same fields as a JSONL import row):
+ * <pre>
+ * GET    /units                         List every unit
+ * GET    /units/{code}                  A unit with its class size, seats taken and every unit it requires
+ * POST   /units                         {code, title, creditPoints[, capacity][, sessions][, prerequisites]
+ *                                        [, corequisites][, prohibitions]}
+ * DELETE /units/{code}
+ * GET    /students?after={id}&amp;limit={n}  A page of students sorted by ID, with the cursor of the next page
+ * GET    /students/{id}                 A student, the codes of their units and completed units, and their load
+ * POST   /students                      {studentType, id, name, address, phone, email[, courseAdvisor]}
+ * DELETE /students/{id}
+ * POST   /enrollments                   {studentId, unitCode}
+ * DELETE /enrollments/{studentId}/{unitCode}
+ * GET    /waitlists/{code}              The IDs of the students waiting for a unit, in order
+ * POST   /waitlists                     {studentId, unitCode[, priority]}
+ * DELETE /waitlists/{studentId}/{unitCode}
+ * POST   /completions                   {studentId, unitCode}
+ * GET    /metrics                       Latencies and outcome counts of every operation (see EnrollmentMetrics)
+ * GET    /reports?limit={n}             Enrollments per unit, credit loads per student type and the n unit pairs
+ *                                        most often taken together, at a single point in time (see EnrollmentReports)
+ * </pre>
+ * Every change responds with {@code {"result": "..."}}, the name of its {@link EnrollmentResult}, and a status
+ * code of 200 (201 when created), 404 when the student or unit does not exist, or 409 when it was refused.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentServer {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    // Connections queued by the kernel while every handler is busy, sized for the enrollment opening rush
+    private static final int BACKLOG = 4096;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private final StudentEnrollmentSystem SES;
+    private final HttpServer SERVER;
+    private final ExecutorService EXECUTOR;
+
+    /**
+     * Constructs an EnrollmentServer bound to the given port. The server does not accept requests until started.
+     *
+     * @param ses The Student Enrollment System instance to serve.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public EnrollmentServer(StudentEnrollmentSystem ses, int port) throws IOException {
+        this.SES = ses;
+        this.SERVER = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.EXECUTOR = newRequestExecutor();
+        SERVER.setExecutor(EXECUTOR);
+        SERVER.createContext("/units", this::handleUnits);
+        SERVER.createContext("/students", this::handleStudents);
+        SERVER.createContext("/enrollments", this::handleEnrollments);
+        SERVER.createContext("/waitlists", this::handleWaitlists);
+        SERVER.createContext("/completions", this::handleCompletions);
+        SERVER.createContext("/metrics", this::handleMetrics);
+        SERVER.createContext("/reports", this::handleReports);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        SERVER.start();
+    }
+
+    /**
+     * Stops accepting requests, waiting up to the given number of seconds for requests in progress to finish.
+     *
+     * @param delaySeconds The maximum number of seconds to wait.
+     */
+    public void stop(int delaySeconds) {
+        SERVER.stop(delaySeconds);
+        EXECUTOR.shutdown();
+        try {
+            EXECUTOR.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return SERVER.getAddress().getPort();
+    }
+
+    /**
+     * Creates a virtual-thread-per-request executor if the running JDK has one, otherwise a cached thread pool.
+     * Looked up reflectively so the system still compiles and runs on JDKs without virtual threads.
+     *
+     * @return The executor for request handlers.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "http-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handleUnits(HttpExchange exchange) throws IOException {
+        String[] path = path(exchange);
+        actAsClient(exchange);
+        try {
+            switch (exchange.getRequestMethod() + " " + path.length) {
+                case "GET 1":
+                    StringBuilder units = new StringBuilder("[");
+                    for (Unit unit : SES.getUnits()) {
+                        units.append(units.length() > 1 ? "," : "").append(unitJson(unit));
+                    }
+                    respond(exchange, 200, units.append(']').toString());
+                    break;
+                case "GET 2":
+                    Unit unit = SES.getUnit(path[1]);
+                    if (unit == null) {
+                        respond(exchange, EnrollmentResult.UNIT_NOT_FOUND);
+                    } else {
+                        respond(exchange, 200, unitJson(unit));
+                    }
+                    break;
+                case "POST 1":
+                    Map<String, String> body = body(exchange);
+                    String capacity = body.get("capacity");
+                    respond(exchange, SES.createUnit(new Unit(required(body, "code"), required(body, "title"),
+                            Integer.parseInt(required(body, "creditPoints")),
+                            capacity == null ? Unit.UNLIMITED : Integer.parseInt(capacity),
+                            Timetable.parse(body.get("sessions")), Requisites.parse(body.get("prerequisites"),
+                            body.get("corequisites"), body.get("prohibitions")))));
+                    break;
+                case "DELETE 2":
+                    respond(exchange, SES.deleteUnit(path[1]));
+                    break;
+                default:
+                    respond(exchange, 405, error("Unsupported request."));
+            }
+        } catch (IllegalArgumentException e) { // Includes NumberFormatException
+            respond(exchange, 400, error(e.getMessage()));
+        }
+    }
+
+    private void handleStudents(HttpExchange exchange) throws IOException {
+        String[] path = path(exchange);
+        actAsClient(exchange);
+        try {
+            switch (exchange.getRequestMethod() + " " + path.length) {
+                case "GET 1":
+                    Map<String, String> query = query(exchange);
+                    String limit = query.get("limit");
+                    int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limit);
+                    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                        throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+                    }
+                    Page<Student> page = SES.getStudentPage(query.get("after"), pageSize);
+                    StringBuilder students = new StringBuilder("[");
+                    for (Student item : page.getItems()) {
+                        students.append(students.length() > 1 ? "," : "").append(studentJson(item));
+                    }
+                    respond(exchange, 200, "{\"students\":" + students.append(']') + ",\"next\":"
+                            + (page.hasNext() ? Json.quote(page.getNextCursor()) : "null") + "}");
+                    break;
+                case "GET 2":
+                    Student student = SES.getStudent(path[1]);
+                    if (student == null) {
+                        respond(exchange, EnrollmentResult.STUDENT_NOT_FOUND);
+                    } else {
+                        respond(exchange, 200, studentJson(student));
+                    }
+                    break;
+                case "POST 1":
+                    Map<String, String> body = body(exchange);
+                    String type = required(body, "studentType").toUpperCase();
+                    if (!type.equals("F") && !type.equals("P")) {
+                        throw new IllegalArgumentException("Student type must be F or P, not '" + type + "'.");
+                    }
+                    respond(exchange, SES.createStudent(SES.newStudent(type.charAt(0), required(body, "id"),
+                            required(body, "name"), required(body, "address"), required(body, "phone"),
+                            required(body, "email"), body.get("courseAdvisor"))));
+                    break;
+                case "DELETE 2":
+                    respond(exchange, SES.deleteStudent(path[1]));
+                    break;
+                default:
+                    respond(exchange, 405, error("Unsupported request."));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        }
+    }
+
+    private void handleEnrollments(HttpExchange exchange) throws IOException {
+        String[] path = path(exchange);
+        actAsClient(exchange);
+        try {
+            switch (exchange.getRequestMethod() + " " + path.length) {
+                case "POST 1":
+                    Map<String, String> body = body(exchange);
+                    respond(exchange, SES.enroll(required(body, "studentId"), required(body, "unitCode")));
+                    break;
+                case "DELETE 3":
+                    respond(exchange, SES.drop(path[1], path[2]));
+                    break;
+                default:
+                    respond(exchange, 405, error("Unsupported request."));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        }
+    }
+
+    private void handleWaitlists(HttpExchange exchange) throws IOException {
+        String[] path = path(exchange);
+        actAsClient(exchange);
+        try {
+            switch (exchange.getRequestMethod() + " " + path.length) {
+                case "GET 2":
+                    if (SES.getUnit(path[1]) == null) {
+                        respond(exchange, EnrollmentResult.UNIT_NOT_FOUND);
+                        break;
+                    }
+                    StringBuilder waiting = new StringBuilder("[");
+                    for (String studentId : SES.getWaitlist(path[1])) {
+                        waiting.append(waiting.length() > 1 ? "," : "").append(Json.quote(studentId));
+                    }
+                    respond(exchange, 200, waiting.append(']').toString());
+                    break;
+                case "POST 1":
+                    Map<String, String> body = body(exchange);
+                    String priority = body.get("priority");
+                    respond(exchange, SES.joinWaitlist(required(body, "studentId"), required(body, "unitCode"),
+                            priority == null ? 0 : Integer.parseInt(priority)));
+                    break;
+                case "DELETE 3":
+                    respond(exchange, SES.leaveWaitlist(path[1], path[2]));
+                    break;
+                default:
+                    respond(exchange, 405, error("Unsupported request."));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        }
+    }
+
+    private void handleCompletions(HttpExchange exchange) throws IOException {
+        String[] path = path(exchange);
+        actAsClient(exchange);
+        try {
+            if (exchange.getRequestMethod().equals("POST") && path.length == 1) {
+                Map<String, String> body = body(exchange);
+                respond(exchange, SES.completeUnit(required(body, "studentId"), required(body, "unitCode")));
+            } else {
+                respond(exchange, 405, error("Unsupported request."));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("GET") && path(exchange).length == 1) {
+            respond(exchange, 200, SES.getMetrics().toJson());
+        } else {
+            respond(exchange, 405, error("Unsupported request."));
+        }
+    }
+
+    private void handleReports(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("GET") && path(exchange).length == 1) {
+            try {
+                String limit = query(exchange).get("limit");
+                int pairs = limit == null ? EnrollmentReports.DEFAULT_LIMIT : Integer.parseInt(limit);
+                if (pairs < 0) {
+                    throw new IllegalArgumentException("Limit must not be negative.");
+                }
+                respond(exchange, 200, SES.getReports().toJson(pairs));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e.getMessage()));
+            }
+        } else {
+            respond(exchange, 405, error("Unsupported request."));
+        }
+    }
+
+    /**
+     * Attributes the changes made by this request in the audit log to the client's address.
+     */
+    private static void actAsClient(HttpExchange exchange) {
+        AuditLog.setActor("http:" + exchange.getRemoteAddress().getAddress().getHostAddress());
+    }
+
+    private String unitJson(Unit unit) {
+        return "{\"code\":" + Json.quote(unit.getCode()) + ",\"title\":" + Json.quote(unit.getTitle())
+                + ",\"creditPoints\":" + unit.getCreditPoints()
+                + ",\"capacity\":" + (unit.getCapacity() == Unit.UNLIMITED ? "null" : unit.getCapacity())
+                + ",\"seatsTaken\":" + unit.getSeatsTaken() + ",\"classSize\":" + SES.getClassSize(unit.getCode())
+                + ",\"waitlisted\":" + unit.getWaitlist().size()
+                + ",\"sessions\":" + Json.quote(unit.getTimetable().toString())
+                + ",\"prerequisites\":" + codesJson(Arrays.asList(unit.getRequisites().getPrerequisites()))
+                + ",\"corequisites\":" + codesJson(Arrays.asList(unit.getRequisites().getCorequisites()))
+                + ",\"prohibitions\":" + codesJson(Arrays.asList(unit.getRequisites().getProhibitions()))
+                + ",\"required\":" + codesJson(SES.getRequiredUnits(unit.getCode())) + "}";
+    }
+
+    private String studentJson(Student student) {
+        List<String> units = new ArrayList<>();
+        for (Unit unit : student.getUnits()) {
+            units.add(unit.getCode());
+        }
+        return "{\"id\":" + Json.quote(student.getId()) + ",\"name\":" + Json.quote(student.getName())
+                + ",\"studentType\":" + (student instanceof PartTimeStudent ? "\"P\"" : "\"F\"")
+                + ",\"email\":" + Json.quote(student.getEmail()) + ",\"units\":" + codesJson(units)
+                + ",\"creditPoints\":" + student.getCreditPoints()
+                + ",\"completed\":" + codesJson(SES.getCompletedUnits(student.getId())) + "}";
+    }
+
+    private static String codesJson(List<String> codes) {
+        StringBuilder json = new StringBuilder("[");
+        for (String code : codes) {
+            json.append(json.length() > 1 ? "," : "").append(Json.quote(code));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    /**
+     * Splits the request path into its decoded segments, the first being the context, e.g. {@code [units, FIT5136]}.
+     */
+    private static String[] path(HttpExchange exchange) {
+        String[] segments = exchange.getRequestURI().getRawPath().replaceAll("^/+|/+$", "").split("/+");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = URLDecoder.decode(segments[i], StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    /**
+     * Parses the request's query string into its decoded parameters.
+     */
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static Map<String, String> body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing field '" + field + "'.");
+        }
+        return value;
+    }
+
+    private static void respond(HttpExchange exchange, EnrollmentResult result) throws IOException {
+        int status;
+        switch (result) {
+            case SUCCESS:
+                status = exchange.getRequestMethod().equals("POST") ? 201 : 200;
+                break;
+            case STUDENT_NOT_FOUND:
+            case UNIT_NOT_FOUND:
+            case NOT_ENROLLED:
+            case NOT_WAITLISTED:
+                status = 404;
+                break;
+            default:
+                status = 409;
+        }
+        respond(exchange, status, "{\"result\":\"" + result + "\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,570 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * EnrollmentSnapshot - A versioned, memory-mapped binary image of the Student Enrollment System.
+ * <p>
+ * A snapshot records the journal sequence number it was taken at, every unit with its timetable, requisites,
+ * class size and waitlist, the units each student has completed,
+ * and one record per student (including the student type, course advisor and enrolled unit codes). Student records are sorted by
+ * the UTF-8 bytes of their ID behind an offset index, so a single student can be found by binary search in the
+ * mapped file and materialized into a {@link Student} only when it is first needed. Opening a snapshot therefore
+ * costs the same whether it holds a thousand students or several million.
+ * </p>
+ *
+ * <p>
+ * File layout (big-endian): a fixed header, the unit records, the student records, the student offset index and
+ * finally the completed units. Strings are stored as an int byte length (-1 for null) followed by UTF-8 bytes. The mapping is limited
+ * to 2GB.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentSnapshot {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final int MAGIC = 0x53455331; // "SES1"
+    // Version 2 adds the number of students enrolled in each unit, version 3 adds unit capacity, version 4 adds
+    // each unit's waitlist, version 5 adds each unit's timetable, version 6 adds each unit's requisites and each
+    // student's completed units
+    private static final int VERSION = 6;
+    private static final int HEADER_SIZE = 40;
+    private final MappedByteBuffer BUFFER;
+    private final long SEQUENCE;
+    private final int STUDENT_COUNT;
+    private final int INDEX_OFFSET;
+    private final int RECORDS_OFFSET;
+    private final List<Unit> UNITS = new ArrayList<>();
+    private final Map<String, Integer> UNMATERIALIZED_ENROLMENTS = new HashMap<>();
+    private final Map<String, CompletedUnits> COMPLETED_UNITS = new HashMap<>();
+    private final boolean HAS_ENROLMENT_COUNTS;
+    private final boolean HAS_CAPACITY;
+    private final boolean HAS_WAITLISTS;
+    private final boolean HAS_TIMETABLES;
+    private final boolean HAS_REQUISITES;
+    private final BitSet MATERIALIZED;
+    private int materializedCount;
+
+    private EnrollmentSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.BUFFER = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an enrollment snapshot.");
+        }
+        int version = buffer.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ".");
+        }
+        this.SEQUENCE = buffer.getLong(8);
+        int unitCount = buffer.getInt(16);
+        this.STUDENT_COUNT = buffer.getInt(20);
+        int unitsOffset = buffer.getInt(24);
+        this.RECORDS_OFFSET = buffer.getInt(28);
+        this.INDEX_OFFSET = buffer.getInt(32);
+        this.MATERIALIZED = new BitSet(STUDENT_COUNT);
+        this.HAS_ENROLMENT_COUNTS = version >= 2;
+        this.HAS_CAPACITY = version >= 3;
+        this.HAS_WAITLISTS = version >= 4;
+        this.HAS_TIMETABLES = version >= 5;
+        this.HAS_REQUISITES = version >= 6;
+
+        int position = unitsOffset;
+        for (int i = 0; i < unitCount; i++) {
+            String code = readString(position);
+            position += stringSize(position);
+            String title = readString(position);
+            position += stringSize(position);
+            int creditPoints = buffer.getInt(position);
+            position += 4;
+            int capacity = Unit.UNLIMITED;
+            if (HAS_CAPACITY) {
+                capacity = buffer.getInt(position);
+                position += 4;
+            }
+            Timetable timetable = Timetable.NONE;
+            if (HAS_TIMETABLES) {
+                timetable = Timetable.parse(readString(position));
+                position += stringSize(position);
+            }
+            Requisites requisites = Requisites.NONE;
+            if (HAS_REQUISITES) {
+                String[] codes = new String[3];
+                for (int j = 0; j < codes.length; j++) {
+                    codes[j] = readString(position);
+                    position += stringSize(position);
+                }
+                requisites = Requisites.parse(codes[0], codes[1], codes[2]);
+            }
+            Unit unit = new Unit(code, title, creditPoints, capacity, timetable, requisites);
+            UNITS.add(unit);
+            if (HAS_ENROLMENT_COUNTS) {
+                UNMATERIALIZED_ENROLMENTS.put(code, buffer.getInt(position));
+                position += 4;
+            }
+            if (HAS_WAITLISTS) { // In the order they are offered seats, so adding them in turn keeps it
+                int waiting = buffer.getInt(position);
+                position += 4;
+                for (int j = 0; j < waiting; j++) {
+                    String studentId = readString(position);
+                    position += stringSize(position);
+                    unit.getWaitlist().add(studentId, buffer.getInt(position));
+                    position += 4;
+                }
+            }
+        }
+
+        if (HAS_REQUISITES) { // Few students have completed units recorded here, so they are all read up front
+            position = buffer.getInt(36);
+            int students = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < students; i++) {
+                String studentId = readString(position);
+                position += stringSize(position);
+                String[] codes = new String[buffer.getShort(position) & 0xFFFF];
+                position += 2;
+                for (int j = 0; j < codes.length; j++) {
+                    codes[j] = readString(position);
+                    position += stringSize(position);
+                }
+                COMPLETED_UNITS.put(studentId, CompletedUnits.of(codes));
+            }
+        }
+    }
+
+    /**
+     * Maps an existing snapshot file. Only the header and the (small) unit catalogue are read.
+     *
+     * @param file The snapshot file.
+     * @return The mapped snapshot, or null if the file does not exist.
+     * @throws IOException If the file cannot be mapped or is not a supported snapshot.
+     */
+    public static EnrollmentSnapshot open(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is larger than 2GB and cannot be mapped.");
+            }
+            // The mapping stays valid after the channel is closed
+            return new EnrollmentSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the journal sequence number this snapshot was taken at.
+     *
+     * @return The sequence number.
+     */
+    public long getSequence() {
+        return SEQUENCE;
+    }
+
+    /**
+     * Returns the units stored in the snapshot.
+     *
+     * @return The units.
+     */
+    public List<Unit> getUnits() {
+        return UNITS;
+    }
+
+    /**
+     * Returns the units each student has completed, including students not yet materialized.
+     *
+     * @return The completed units by student ID; empty for snapshots written before version 6.
+     */
+    public Map<String, CompletedUnits> getCompletedUnits() {
+        return COMPLETED_UNITS;
+    }
+
+    /**
+     * Returns whether the snapshot records how many students are enrolled in each unit. Snapshots written before
+     * version 2 do not.
+     *
+     * @return True if enrollment counts are available.
+     */
+    public boolean hasEnrolmentCounts() {
+        return HAS_ENROLMENT_COUNTS;
+    }
+
+    /**
+     * Returns how many of the students enrolled in a unit have not yet been materialized.
+     *
+     * @param unitCode The code of the unit.
+     * @return The number of enrollments still only held in the mapped file.
+     */
+    public synchronized int getUnmaterializedEnrolments(String unitCode) {
+        return UNMATERIALIZED_ENROLMENTS.getOrDefault(unitCode, 0);
+    }
+
+    /**
+     * Returns the number of student records in the snapshot.
+     *
+     * @return The number of student records.
+     */
+    public int size() {
+        return STUDENT_COUNT;
+    }
+
+    /**
+     * Returns the number of student records that have not yet been materialized.
+     *
+     * @return The number of records still only held in the mapped file.
+     */
+    public synchronized int getUnmaterializedCount() {
+        return STUDENT_COUNT - materializedCount;
+    }
+
+    /**
+     * Materializes the student with the given ID, unless it is absent or was already materialized earlier
+     * (in which case it lives in, or was removed from, the system's own map).
+     *
+     * @param studentId The ID of the student.
+     * @param units The system's units, used to resolve enrolled unit codes.
+     * @param store The column store to materialize the student's details into, or null to keep them on the heap.
+     * @return The new student, or null.
+     */
+    public synchronized Student materialize(String studentId, Map<String, Unit> units, StudentColumnStore store) {
+        int index = indexOf(studentId.getBytes(StandardCharsets.UTF_8));
+        return index < 0 ? null : materialize(index, units, store);
+    }
+
+    /**
+     * Materializes every student that has not been materialized yet.
+     *
+     * @param units The system's units, used to resolve enrolled unit codes.
+     * @param store The column store to materialize the students' details into, or null to keep them on the heap.
+     * @return The new students.
+     */
+    public synchronized List<Student> materializeAll(Map<String, Unit> units, StudentColumnStore store) {
+        List<Student> students = new ArrayList<>(getUnmaterializedCount());
+        for (int i = MATERIALIZED.nextClearBit(0); i < STUDENT_COUNT; i = MATERIALIZED.nextClearBit(i + 1)) {
+            students.add(materialize(i, units, store));
+        }
+        return students;
+    }
+
+    /**
+     * Returns the IDs of the students not yet materialized that sort after the given ID, in ID order (see
+     * {@link #compareIds}), without materializing them.
+     *
+     * @param after The ID to start after, or null to start from the first student.
+     * @param limit The maximum number of IDs to return.
+     * @return Up to {@code limit} IDs.
+     */
+    public synchronized List<String> getUnmaterializedIds(String after, int limit) {
+        List<String> ids = new ArrayList<>(Math.min(limit, getUnmaterializedCount()));
+        int start = after == null ? 0 : indexAfter(after.getBytes(StandardCharsets.UTF_8));
+        for (int i = MATERIALIZED.nextClearBit(start); i < STUDENT_COUNT && ids.size() < limit;
+             i = MATERIALIZED.nextClearBit(i + 1)) {
+            ids.add(new String(idBytes(i), StandardCharsets.UTF_8));
+        }
+        return ids;
+    }
+
+    /**
+     * Compares two student IDs in the order their records are stored in a snapshot: by their UTF-8 bytes, which is
+     * the order of their code points (and differs from {@link String#compareTo} only for supplementary characters).
+     *
+     * @param a The first ID.
+     * @param b The second ID.
+     * @return A negative number, zero or a positive number as the first ID sorts before, with or after the second.
+     */
+    public static int compareIds(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private Student materialize(int index, Map<String, Unit> units, StudentColumnStore store) {
+        if (MATERIALIZED.get(index)) {
+            return null;
+        }
+        MATERIALIZED.set(index);
+        materializedCount++;
+
+        int position = recordOffset(index);
+        char type = (char) BUFFER.get(position++);
+        String[] fields = new String[6];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = readString(position);
+            position += stringSize(position);
+        }
+        Student student = store == null
+                ? Student.of(type, fields[0], fields[1], fields[2], fields[3], fields[4], fields[5])
+                : store.create(type, fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+        int unitCount = BUFFER.getShort(position);
+        position += 2;
+        for (int i = 0; i < unitCount; i++) {
+            String code = readString(position);
+            Unit unit = units.get(code);
+            position += stringSize(position);
+            UNMATERIALIZED_ENROLMENTS.computeIfPresent(code, (key, count) -> count - 1);
+            if (unit != null) {
+                student.addEnrolment(unit);
+            }
+        }
+        return student;
+    }
+
+    /**
+     * Binary searches the offset index for a student ID.
+     *
+     * @param id The UTF-8 bytes of the ID.
+     * @return The record index, or -1 if absent.
+     */
+    private int indexOf(byte[] id) {
+        int low = 0;
+        int high = STUDENT_COUNT - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareId(recordOffset(mid) + 1, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Binary searches the offset index for the first student ID greater than the given one.
+     *
+     * @param id The UTF-8 bytes of the ID.
+     * @return The record index, or the number of students if every ID is less than or equal to it.
+     */
+    private int indexAfter(byte[] id) {
+        int low = 0;
+        int high = STUDENT_COUNT;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareId(recordOffset(mid) + 1, id) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareId(int position, byte[] id) {
+        int length = BUFFER.getInt(position);
+        int start = position + 4;
+        for (int i = 0; i < Math.min(length, id.length); i++) {
+            int cmp = Integer.compare(BUFFER.get(start + i) & 0xFF, id[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, id.length);
+    }
+
+    private int recordOffset(int index) {
+        return RECORDS_OFFSET + BUFFER.getInt(INDEX_OFFSET + index * 4);
+    }
+
+    private int recordLength(int index) {
+        int end = index + 1 < STUDENT_COUNT ? recordOffset(index + 1) : INDEX_OFFSET;
+        return end - recordOffset(index);
+    }
+
+    private byte[] idBytes(int index) {
+        int position = recordOffset(index) + 1;
+        byte[] id = new byte[BUFFER.getInt(position)];
+        BUFFER.get(position + 4, id);
+        return id;
+    }
+
+    private String readString(int position) {
+        int length = BUFFER.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        BUFFER.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int stringSize(int position) {
+        return 4 + Math.max(0, BUFFER.getInt(position));
+    }
+
+    /**
+     * Writes a snapshot of the system to the given file, replacing any previous snapshot atomically.
+     * <p>
+     * Students already materialized are serialized from the heap; records still only held in the previous
+     * snapshot are copied across byte for byte without being decoded. Each heap student's units are read once, and
+     * the class size stored for each unit is counted from exactly the units written, so the two always agree
+     * however the students change while the snapshot is written.
+     * </p>
+     *
+     * @param file The snapshot file.
+     * @param previous The snapshot the system was restored from, or null.
+     * @param units The units of the system.
+     * @param students The materialized students of the system.
+     * @param completed The units each student has completed, by student ID.
+     * @param waiting Which waiting students to record on the units' waitlists: all of them, or for a shard sharing
+     *                its units with other shards, only those it holds.
+     * @param sequence The journal sequence number the state corresponds to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public static void write(File file, EnrollmentSnapshot previous, Collection<Unit> units,
+                             Collection<Student> students, Map<String, CompletedUnits> completed,
+                             Predicate<String> waiting, long sequence) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        Student[] sorted = students.toArray(new Student[0]);
+        byte[][] sortedIds = new byte[sorted.length][];
+        Unit[][] enrolled = new Unit[sorted.length][];
+        Integer[] order = new Integer[sorted.length];
+        Map<String, Integer> enrolments = new HashMap<>();
+        for (int i = 0; i < sorted.length; i++) {
+            sortedIds[i] = sorted[i].getId().getBytes(StandardCharsets.UTF_8);
+            enrolled[i] = sorted[i].getUnitArray(); // The units written for the student
+            for (Unit unit : enrolled[i]) {
+                enrolments.merge(unit.getCode(), 1, Integer::sum);
+            }
+            order[i] = i;
+        }
+        Unit[] catalogue = units.toArray(new Unit[0]);
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(sortedIds[a], sortedIds[b]));
+
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.write(new byte[HEADER_SIZE]);
+
+            for (Unit unit : catalogue) {
+                writeString(out, unit.getCode());
+                writeString(out, unit.getTitle());
+                out.writeInt(unit.getCreditPoints());
+                out.writeInt(unit.getCapacity());
+                writeString(out, unit.getTimetable().toString());
+                Requisites requisites = unit.getRequisites();
+                writeString(out, Requisites.join(requisites.getPrerequisites()));
+                writeString(out, Requisites.join(requisites.getCorequisites()));
+                writeString(out, Requisites.join(requisites.getProhibitions()));
+                int unmaterialized = previous == null ? 0 : previous.getUnmaterializedEnrolments(unit.getCode());
+                out.writeInt(enrolments.getOrDefault(unit.getCode(), 0) + unmaterialized);
+                List<Waitlist.Entry> entries = new ArrayList<>();
+                for (Waitlist.Entry entry : unit.getWaitlist().entries()) {
+                    if (waiting.test(entry.getStudentId())) {
+                        entries.add(entry);
+                    }
+                }
+                out.writeInt(entries.size());
+                for (Waitlist.Entry entry : entries) {
+                    writeString(out, entry.getStudentId());
+                    out.writeInt(entry.getPriority());
+                }
+            }
+
+            int recordsOffset = out.size();
+            int previousCount = previous == null ? 0 : previous.STUDENT_COUNT;
+            int[] offsets = new int[sorted.length + previousCount];
+            int count = 0;
+            int next = previous == null ? previousCount : previous.MATERIALIZED.nextClearBit(0);
+            int i = 0;
+            // Merge the heap students with the untouched records of the previous snapshot, both sorted by ID
+            while (i < order.length || next < previousCount) {
+                offsets[count++] = out.size() - recordsOffset;
+                boolean fromHeap = next >= previousCount
+                        || (i < order.length && Arrays.compareUnsigned(sortedIds[order[i]], previous.idBytes(next)) < 0);
+                if (fromHeap) {
+                    writeStudent(out, sorted[order[i]], enrolled[order[i]]);
+                    i++;
+                } else {
+                    byte[] raw = new byte[previous.recordLength(next)];
+                    previous.BUFFER.get(previous.recordOffset(next), raw);
+                    out.write(raw);
+                    next = previous.MATERIALIZED.nextClearBit(next + 1);
+                }
+            }
+
+            int indexOffset = out.size();
+            for (int j = 0; j < count; j++) {
+                out.writeInt(offsets[j]);
+            }
+
+            int completedOffset = out.size();
+            List<Map.Entry<String, CompletedUnits>> completions = new ArrayList<>(completed.entrySet());
+            out.writeInt(completions.size());
+            for (Map.Entry<String, CompletedUnits> entry : completions) {
+                writeString(out, entry.getKey());
+                out.writeShort(entry.getValue().getCodes().size());
+                for (String code : entry.getValue().getCodes()) {
+                    writeString(out, code);
+                }
+            }
+            out.flush();
+            if (out.size() == Integer.MAX_VALUE) { // DataOutputStream saturates its counter at 2GB
+                throw new IOException("Snapshot would be larger than 2GB.");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(sequence).putInt(catalogue.length).putInt(count)
+                    .putInt(HEADER_SIZE).putInt(recordsOffset).putInt(indexOffset).putInt(completedOffset).flip();
+            channel.write(header, 0);
+            channel.force(false);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeStudent(DataOutputStream out, Student student, Unit[] units) throws IOException {
+        String advisor = student instanceof PartTimeStudent ? ((PartTimeStudent) student).getCourseAdvisor() : null;
+        out.writeByte(student instanceof PartTimeStudent ? 'P' : 'F');
+        writeString(out, student.getId());
+        writeString(out, student.getName());
+        writeString(out, student.getAddress());
+        writeString(out, student.getPhone());
+        writeString(out, student.getEmail());
+        writeString(out, advisor);
+        out.writeShort(units.length);
+        for (Unit unit : units) {
+            writeString(out, unit.getCode());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * EnrollmentView - An immutable, point-in-time view of the catalogue and of every student's enrollments.
+ * <p>
+ * The Student Enrollment System keeps its latest view in a single atomic reference (see
+ * {@link StudentEnrollmentSystem#getView()}). Reading it pins that version: the view is never modified, so a
+ * listing, export or report over it sees every student as they were at the same moment, however long it takes,
+ * while enrollments carry on. Each change makes a new view from the previous one under the lock the change
+ * already holds, and swaps it in with a compare-and-set; changes to different students never wait for each other
+ * or for readers, and an enrollment batch is swapped in as one version.
+ * </p>
+ *
+ * <p>
+ * Views share almost everything with their predecessors. Students and units are held in {@link PersistentMap}s,
+ * and a student's enrollments are the unit ID array the student already replaces on each change, so a new
+ * version costs a handful of small node copies. Each version also keeps the {@link UnitDictionary} table of its
+ * moment, so its unit IDs decode to the units they stood for even after those units' IDs are freed and reused. A
+ * version only stays in memory while some reader still holds it.
+ * </p>
+ *
+ * <p>
+ * A unit being removed leaves the catalogue before its students are unenrolled, so a view may show students
+ * still enrolled in a unit it no longer lists, exactly as the system itself did at that moment.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class EnrollmentView {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final long VERSION;
+    private final UnitDictionary DICTIONARY;
+    // The dictionary's table when this version was made, which every unit ID in it is decoded with
+    private final Unit[] UNIT_TABLE;
+    private final PersistentMap<String, Unit> UNITS;
+    private final PersistentMap<String, Enrolments> STUDENTS;
+
+    private EnrollmentView(long version, UnitDictionary dictionary, PersistentMap<String, Unit> units,
+                           PersistentMap<String, Enrolments> students) {
+        this.VERSION = version;
+        this.DICTIONARY = dictionary;
+        this.UNIT_TABLE = dictionary.table();
+        this.UNITS = units;
+        this.STUDENTS = students;
+    }
+
+    /**
+     * Builds the first view of the system, in bulk. The caller holds every student's lock and the catalogue.
+     *
+     * @param dictionary The system's unit dictionary.
+     * @param units The units in the catalogue.
+     * @param students Every student.
+     * @return The view, version 1.
+     */
+    static EnrollmentView of(UnitDictionary dictionary, Collection<Unit> units, Collection<Student> students) {
+        PersistentMap<String, Unit> catalogue = PersistentMap.empty();
+        for (Unit unit : units) {
+            catalogue = catalogue.with(unit.getCode(), unit);
+        }
+        Student[] snapshot = students.toArray(new Student[0]);
+        String[] ids = new String[snapshot.length];
+        Enrolments[] enrolments = new Enrolments[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            ids[i] = snapshot[i].getId();
+            enrolments[i] = new Enrolments(snapshot[i]);
+        }
+        return new EnrollmentView(1, dictionary, catalogue, PersistentMap.of(ids, enrolments));
+    }
+
+    /**
+     * Returns the view with a student's current enrollments, adding the student if they were not in it. Called
+     * under the student's lock.
+     *
+     * @param student The student.
+     * @return The next version.
+     */
+    EnrollmentView withStudent(Student student) {
+        return new EnrollmentView(VERSION + 1, DICTIONARY, UNITS, STUDENTS.with(student.getId(), new Enrolments(student)));
+    }
+
+    /**
+     * Returns the view with several students' current enrollments, as a single version. Called under the
+     * students' locks.
+     *
+     * @param students The students.
+     * @return The next version.
+     */
+    EnrollmentView withStudents(Collection<Student> students) {
+        PersistentMap<String, Enrolments> next = STUDENTS;
+        for (Student student : students) {
+            next = next.with(student.getId(), new Enrolments(student));
+        }
+        return new EnrollmentView(VERSION + 1, DICTIONARY, UNITS, next);
+    }
+
+    /**
+     * Returns the view without a student. Called under the student's lock.
+     *
+     * @param studentId The ID of the student.
+     * @return The next version.
+     */
+    EnrollmentView withoutStudent(String studentId) {
+        return new EnrollmentView(VERSION + 1, DICTIONARY, UNITS, STUDENTS.without(studentId));
+    }
+
+    /**
+     * Returns the view with a unit in the catalogue. Called while holding the catalogue.
+     *
+     * @param unit The unit.
+     * @return The next version.
+     */
+    EnrollmentView withUnit(Unit unit) {
+        return new EnrollmentView(VERSION + 1, DICTIONARY, UNITS.with(unit.getCode(), unit), STUDENTS);
+    }
+
+    /**
+     * Returns the view without a unit in the catalogue. Called while holding the catalogue.
+     *
+     * @param unitCode The code of the unit.
+     * @return The next version.
+     */
+    EnrollmentView withoutUnit(String unitCode) {
+        return new EnrollmentView(VERSION + 1, DICTIONARY, UNITS.without(unitCode), STUDENTS);
+    }
+
+    /**
+     * Returns the version of this view. Every change made after the first view was taken increases it by one.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return VERSION;
+    }
+
+    /**
+     * Returns the number of students.
+     *
+     * @return The number of students in this view.
+     */
+    public int getStudentCount() {
+        return STUDENTS.size();
+    }
+
+    /**
+     * Looks up a student.
+     *
+     * @param studentId The ID of the student.
+     * @return The student, or null if there was no student with that ID in this version. The student's own
+     *         methods report their current state; use {@link #getStudentUnits(String)} for this version's.
+     */
+    public Student getStudent(String studentId) {
+        Enrolments enrolments = STUDENTS.get(studentId);
+        return enrolments == null ? null : enrolments.STUDENT;
+    }
+
+    /**
+     * Returns the units a student was enrolled in.
+     *
+     * @param studentId The ID of the student.
+     * @return The student's units in this version, or an empty list if the student was not in it.
+     */
+    public List<Unit> getStudentUnits(String studentId) {
+        Enrolments enrolments = STUDENTS.get(studentId);
+        return enrolments == null ? Collections.emptyList() : decode(enrolments.UNIT_IDS);
+    }
+
+    /**
+     * Looks up a unit in the catalogue.
+     *
+     * @param unitCode The code of the unit.
+     * @return The unit, or null if there was no unit with that code in this version.
+     */
+    public Unit getUnit(String unitCode) {
+        return UNITS.get(unitCode);
+    }
+
+    /**
+     * Returns the catalogue.
+     *
+     * @return The units in this version, sorted by code.
+     */
+    public List<Unit> getUnits() {
+        List<Unit> units = new ArrayList<>(UNITS.size());
+        UNITS.forEach((code, unit) -> units.add(unit));
+        units.sort(Comparator.comparing(Unit::getCode, EnrollmentSnapshot::compareIds));
+        return units;
+    }
+
+    /**
+     * Passes every student and the units they were enrolled in to an action, in no particular order.
+     *
+     * @param action The action.
+     */
+    public void forEachStudent(BiConsumer<Student, List<Unit>> action) {
+        STUDENTS.forEach((studentId, enrolments) -> action.accept(enrolments.STUDENT, decode(enrolments.UNIT_IDS)));
+    }
+
+    /**
+     * Decodes a unit ID as it stood in this version.
+     *
+     * @param id The ID.
+     * @return The unit, or null if no unit had that ID.
+     */
+    Unit getUnit(int id) {
+        return id < UNIT_TABLE.length ? UNIT_TABLE[id] : null;
+    }
+
+    /**
+     * Returns a bound on the unit IDs in this version: every ID is less than it.
+     *
+     * @return The bound.
+     */
+    int getUnitIdBound() {
+        return UNIT_TABLE.length;
+    }
+
+    /**
+     * Passes every student and the IDs of the units they were enrolled in, as encoded by {@link UnitDictionary},
+     * to an action, without decoding the units (see {@link #getUnit(int)}). The arrays must not be modified.
+     *
+     * @param action The action.
+     */
+    void forEachEnrolment(BiConsumer<Student, int[]> action) {
+        STUDENTS.forEach((studentId, enrolments) -> action.accept(enrolments.STUDENT, enrolments.UNIT_IDS));
+    }
+
+    /**
+     * A student and the IDs of their units at one version.
+     */
+    private static final class Enrolments {
+        final Student STUDENT;
+        final int[] UNIT_IDS;
+
+        Enrolments(Student student) {
+            this.STUDENT = student;
+            this.UNIT_IDS = student.getUnitIds();
+        }
+    }
+
+    private List<Unit> decode(int[] unitIds) {
+        List<Unit> units = new ArrayList<>(unitIds.length);
+        for (int id : unitIds) {
+            units.add(UNIT_TABLE[id]);
+        }
+        return Collections.unmodifiableList(units);
+    }
+}
@@ -24,4 +24,15 @@ public class FullTimeStudent extends Student {
     public FullTimeStudent(String id, String name, String address, String phone, String email) {
         super(id, name, address, phone, email);
     }
+
+    /**
+     * Constructs a flyweight FullTimeStudent whose details are read from a column store.
+     *
+     * @param id The unique identifier of the student.
+     * @param store The store holding the student's details.
+     * @param row The student's row in the store.
+     */
+    FullTimeStudent(String id, StudentColumnStore store, int row) {
+        super(id, store, row);
+    }
 }
@@ -0,0 +1,154 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Json - Minimal reader and writer for flat JSON objects.
+ * <p>
+ * The Student Enrollment System only ever exchanges flat objects whose values are strings, numbers, booleans
+ * or null, so this class supports exactly that rather than pulling in a JSON library. Every value is returned
+ * as a string (null for JSON null).
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class Json {
+
+    /**
+     * Parses a flat JSON object.
+     *
+     * @param text The JSON text.
+     * @return The keys and values of the object, in order.
+     * @throws IllegalArgumentException If the text is not a flat JSON object.
+     */
+    public static Map<String, String> parseObject(String text) {
+        Map<String, String> object = new LinkedHashMap<>();
+        int[] position = {skipWhitespace(text, 0)};
+        expect(text, position, '{');
+        if (peek(text, position) == '}') {
+            position[0]++;
+            return object;
+        }
+        while (true) {
+            String key = readString(text, position);
+            expect(text, position, ':');
+            object.put(key, readValue(text, position));
+            char next = peek(text, position);
+            position[0]++;
+            if (next == '}') {
+                break;
+            } else if (next != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}' at position " + (position[0] - 1) + ".");
+            }
+        }
+        if (skipWhitespace(text, position[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected content after JSON object.");
+        }
+        return object;
+    }
+
+    /**
+     * Quotes and escapes a string as a JSON string literal.
+     *
+     * @param value The string, may be null.
+     * @return The JSON literal, or {@code null}.
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String readValue(String text, int[] position) {
+        char c = peek(text, position);
+        if (c == '"') {
+            return readString(text, position);
+        }
+        int start = position[0];
+        while (position[0] < text.length() && ",}] \t\r\n".indexOf(text.charAt(position[0])) < 0) {
+            position[0]++;
+        }
+        String literal = text.substring(start, position[0]);
+        if (literal.isEmpty() || c == '{' || c == '[') {
+            throw new IllegalArgumentException("Unsupported JSON value at position " + start + ".");
+        }
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static String readString(String text, int[] position) {
+        expect(text, position, '"');
+        StringBuilder value = new StringBuilder();
+        while (position[0] < text.length()) {
+            char c = text.charAt(position[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (position[0] >= text.length()) {
+                break;
+            }
+            char escaped = text.charAt(position[0]++);
+            switch (escaped) {
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    if (position[0] + 4 > text.length()) {
+                        throw new IllegalArgumentException("Truncated unicode escape.");
+                    }
+                    value.append((char) Integer.parseInt(text.substring(position[0], position[0] + 4), 16));
+                    position[0] += 4;
+                    break;
+                default: value.append(escaped);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string.");
+    }
+
+    private static void expect(String text, int[] position, char expected) {
+        if (peek(text, position) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at position " + position[0] + ".");
+        }
+        position[0]++;
+    }
+
+    private static char peek(String text, int[] position) {
+        position[0] = skipWhitespace(text, position[0]);
+        if (position[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON.");
+        }
+        return text.charAt(position[0]);
+    }
+
+    private static int skipWhitespace(String text, int position) {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram - A fixed-size, thread-safe histogram of latencies for reporting percentiles.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split into 32 equal sub-buckets, so any value up to
+ * {@code Long.MAX_VALUE} is recorded with a relative error of at most about 3% in a fixed 1,888 counters, no matter
+ * how many values are recorded. Recording takes a few atomic updates and no locks, so many threads can share one
+ * histogram.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class LatencyHistogram {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final AtomicLongArray COUNTS = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    private final LongAdder COUNT = new LongAdder();
+    private final LongAdder SUM = new LongAdder();
+    private final AtomicLong MAX = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value The value, usually a latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        COUNTS.incrementAndGet(bucketOf(value));
+        COUNT.increment();
+        SUM.add(value);
+        long max = MAX.get();
+        while (value > max && !MAX.compareAndSet(max, value)) {
+            max = MAX.get();
+        }
+    }
+
+    /**
+     * Adds every value recorded in another histogram to this one.
+     *
+     * @param other The other histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < COUNTS.length(); i++) {
+            long count = other.COUNTS.get(i);
+            if (count > 0) {
+                COUNTS.addAndGet(i, count);
+            }
+        }
+        COUNT.add(other.getCount());
+        SUM.add(other.SUM.sum());
+        MAX.accumulateAndGet(other.getMax(), Math::max);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return COUNT.sum();
+    }
+
+    /**
+     * Returns the largest value recorded, exactly.
+     *
+     * @return The maximum, or 0 if nothing has been recorded.
+     */
+    public long getMax() {
+        return MAX.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return The mean, or 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) SUM.sum() / count;
+    }
+
+    /**
+     * Returns the value at a percentile, as the highest value that falls in the same bucket.
+     *
+     * @param percentile The percentile, from 0 to 100, e.g. 99.9.
+     * @return The value at the percentile, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < COUNTS.length(); i++) {
+            seen += COUNTS.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueIn(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Summarizes the histogram in milliseconds, for histograms of nanosecond latencies.
+     *
+     * @return The count, mean, p50, p99, p99.9 and maximum.
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms", getCount(),
+                getMean() / 1e6, millis(getPercentile(50)), millis(getPercentile(99)), millis(getPercentile(99.9)),
+                millis(getMax()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the bucket a value is counted in. Values below 32 have a bucket each; above that, the bucket is
+     * chosen by the position of the highest set bit and the 5 bits that follow it.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
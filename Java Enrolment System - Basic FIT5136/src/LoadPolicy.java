@@ -0,0 +1,69 @@
+/**
+ * LoadPolicy - Decides how much study a student may take on at once.
+ * <p>
+ * The Student Enrollment System keeps one policy per student type (see
+ * {@link StudentEnrollmentSystem#setLoadPolicy(Class, LoadPolicy)}) and asks it before every enrollment whether the
+ * student may carry the load the unit would bring them to. Students keep a running total of their units' credit
+ * points, updated as they enroll and withdraw, so the load is known without summing their units and a policy only
+ * compares two numbers. The standard policy, {@link #of(int, int)}, caps both.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public interface LoadPolicy {
+    // No limit on the number of units or credit points
+    int UNLIMITED = Integer.MAX_VALUE;
+
+    /**
+     * Checks whether a student may carry a load.
+     *
+     * @param units The number of units the student would be enrolled in.
+     * @param creditPoints The total credit points of those units.
+     * @return SUCCESS, UNIT_LIMIT_REACHED or CREDIT_LIMIT_REACHED.
+     */
+    EnrollmentResult admit(int units, int creditPoints);
+
+    /**
+     * Creates a policy allowing up to a number of units and credit points.
+     *
+     * @param maxUnits The maximum number of units, or {@link #UNLIMITED}.
+     * @param maxCreditPoints The maximum total credit points, or {@link #UNLIMITED}.
+     * @return The policy.
+     */
+    static LoadPolicy of(int maxUnits, int maxCreditPoints) {
+        return new Limit(maxUnits, maxCreditPoints);
+    }
+
+    /**
+     * The standard policy: a maximum number of units and of credit points.
+     */
+    class Limit implements LoadPolicy {
+        private final int MAX_UNITS;
+        private final int MAX_CREDIT_POINTS;
+
+        private Limit(int maxUnits, int maxCreditPoints) {
+            this.MAX_UNITS = maxUnits;
+            this.MAX_CREDIT_POINTS = maxCreditPoints;
+        }
+
+        @Override
+        public EnrollmentResult admit(int units, int creditPoints) {
+            if (units > MAX_UNITS) {
+                return EnrollmentResult.UNIT_LIMIT_REACHED;
+            }
+            if (creditPoints > MAX_CREDIT_POINTS) {
+                return EnrollmentResult.CREDIT_LIMIT_REACHED;
+            }
+            return EnrollmentResult.SUCCESS;
+        }
+
+        @Override
+        public String toString() {
+            String units = MAX_UNITS == UNLIMITED ? "any number of units" : "at most " + MAX_UNITS + " units";
+            return MAX_CREDIT_POINTS == UNLIMITED ? units : units + " and " + MAX_CREDIT_POINTS + " credit points";
+        }
+    }
+}
@@ -0,0 +1,344 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadSimulator - Simulates enrollment day: a synthetic population of students hitting enroll, drop and list at once.
+ * <p>
+ * A population of full-time and part-time students and a catalogue of units are generated from a seed, then a trace
+ * of operations is generated and driven against the system by a pool of threads, either as fast as possible or at a
+ * fixed rate. Students pick units with a Zipf-like popularity, so a few units take most of the load, as they do when
+ * enrollment opens. Drops target units the student asked for earlier in the trace.
+ * </p>
+ *
+ * <p>
+ * The trace can be recorded to a file and replayed later against another build. A trace file holds the population
+ * parameters in its header and one operation per line, so a replay rebuilds the same population and issues exactly
+ * the same operations in the same order; with {@code --threads 1} every outcome is reproduced too.
+ * </p>
+ *
+ * <p>
+ * At a fixed rate, latency is measured from when each operation was due to start rather than when it actually
+ * started, so a stall is charged to every operation queued behind it instead of hiding in the throughput.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java LoadSimulator [--students 50000] [--units 200] [--capacity 300] [--part-time 0.3]
+ * [--operations 200000] [--mix enroll=70,drop=20,list=10] [--threads 64] [--rate 0] [--seed 1]
+ * [--record trace.tsv | --replay trace.tsv] [--data directory] [--store heap|columnar]}
+ * <br>
+ * A capacity of 0 means units have no seat limit, and a rate of 0 means as fast as possible. With {@code --data} the
+ * system journals to that directory, so fsync costs are included. {@code --store columnar} keeps student details
+ * off-heap in a {@link StudentColumnStore}.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class LoadSimulator {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final String[] KINDS = {"ENROLL", "DROP", "LIST"};
+    private static final int ENROLL = 0;
+    private static final int DROP = 1;
+    private static final int LIST = 2;
+    // Consumes the listings so that they cannot be optimised away
+    private static volatile long sink;
+    private final Map<String, String> PARAMETERS;
+    private final List<String[]> OPERATIONS;
+
+    /**
+     * Constructs a LoadSimulator for a trace.
+     *
+     * @param parameters The population parameters: students, units, capacity, part-time and seed.
+     * @param operations The operations of the trace, each the kind followed by a student ID and, except for LIST,
+     *                   a unit code.
+     */
+    public LoadSimulator(Map<String, String> parameters, List<String[]> operations) {
+        this.PARAMETERS = parameters;
+        this.OPERATIONS = operations;
+    }
+
+    /**
+     * Runs the simulation.
+     *
+     * @param args The options described in the class documentation.
+     * @throws IOException If a trace or the data directory cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        LoadSimulator simulator;
+        if (options.containsKey("replay")) {
+            simulator = read(new File(options.get("replay")));
+        } else {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (String[] option : new String[][] {{"students", "50000"}, {"units", "200"}, {"capacity", "300"},
+                    {"part-time", "0.3"}, {"seed", "1"}}) {
+                parameters.put(option[0], options.getOrDefault(option[0], option[1]));
+            }
+            simulator = generate(parameters, Integer.parseInt(options.getOrDefault("operations", "200000")),
+                    options.getOrDefault("mix", "enroll=70,drop=20,list=10"));
+        }
+        if (options.containsKey("record")) {
+            simulator.write(new File(options.get("record")));
+        }
+
+        StudentEnrollmentSystem ses = new StudentEnrollmentSystem(new Administrator("LoadSimulator"));
+        if (options.getOrDefault("store", "heap").equals("columnar")) {
+            ses.enableColumnStore();
+        }
+        if (options.containsKey("data")) {
+            ses.restore(new File(options.get("data")));
+        }
+        try {
+            long start = System.nanoTime();
+            simulator.populate(ses);
+            System.out.printf("Populated %d student(s) and %d unit(s) in %d ms.%n", ses.getStudentCount(),
+                    ses.getUnits().size(), (System.nanoTime() - start) / 1_000_000);
+            simulator.run(ses, Integer.parseInt(options.getOrDefault("threads", "64")),
+                    Double.parseDouble(options.getOrDefault("rate", "0")));
+        } finally {
+            ses.close();
+        }
+    }
+
+    /**
+     * Generates a trace of operations against a synthetic population.
+     *
+     * @param parameters The population parameters: students, units, capacity, part-time and seed.
+     * @param operations The number of operations to generate.
+     * @param mix The relative weights of each kind of operation, e.g. {@code enroll=70,drop=20,list=10}.
+     * @return The simulator for the trace.
+     */
+    public static LoadSimulator generate(Map<String, String> parameters, int operations, String mix) {
+        int students = Integer.parseInt(parameters.get("students"));
+        int units = Integer.parseInt(parameters.get("units"));
+        int[] weights = new int[KINDS.length];
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.split("=");
+            int kind = Arrays.asList(KINDS).indexOf(pair[0].trim().toUpperCase());
+            if (kind < 0 || pair.length != 2) {
+                throw new IllegalArgumentException("Invalid operation mix '" + entry + "'.");
+            }
+            weights[kind] = Integer.parseInt(pair[1].trim());
+        }
+        int totalWeight = Arrays.stream(weights).sum();
+
+        // Zipf-like popularity: the unit of rank r is chosen with weight 1 / r
+        double[] popularity = new double[units];
+        for (int i = 0; i < units; i++) {
+            popularity[i] = (i == 0 ? 0 : popularity[i - 1]) + 1.0 / (i + 1);
+        }
+        Random random = new Random(Long.parseLong(parameters.get("seed")) * 31 + 1);
+        List<List<String>> requested = new ArrayList<>(); // What each student has asked for so far, for drops
+        for (int i = 0; i < students; i++) {
+            requested.add(new ArrayList<>(2));
+        }
+        List<String[]> trace = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            int student = random.nextInt(students);
+            int pick = random.nextInt(totalWeight);
+            int kind = pick < weights[ENROLL] ? ENROLL : pick < weights[ENROLL] + weights[DROP] ? DROP : LIST;
+            List<String> asked = requested.get(student);
+            if (kind == LIST) {
+                trace.add(new String[] {KINDS[LIST], studentId(student)});
+            } else if (kind == DROP && !asked.isEmpty()) {
+                trace.add(new String[] {KINDS[DROP], studentId(student), asked.remove(random.nextInt(asked.size()))});
+            } else {
+                int rank = Arrays.binarySearch(popularity, random.nextDouble() * popularity[units - 1]);
+                String unitCode = unitCode(Math.min(units - 1, rank < 0 ? -rank - 1 : rank));
+                if (!asked.contains(unitCode)) {
+                    asked.add(unitCode);
+                }
+                trace.add(new String[] {KINDS[ENROLL], studentId(student), unitCode});
+            }
+        }
+        return new LoadSimulator(parameters, trace);
+    }
+
+    /**
+     * Reads a trace recorded with {@link #write(File)}.
+     *
+     * @param file The trace file.
+     * @return The simulator for the trace.
+     * @throws IOException If the file cannot be read or is not a trace.
+     */
+    public static LoadSimulator read(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith("# LoadSimulator")) {
+                throw new IOException("'" + file + "' is not a LoadSimulator trace.");
+            }
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (String parameter : header.substring("# LoadSimulator".length()).trim().split(" ")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(pair[0], pair[1]);
+            }
+            List<String[]> operations = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    operations.add(line.split("\t"));
+                }
+            }
+            return new LoadSimulator(parameters, operations);
+        }
+    }
+
+    /**
+     * Records the trace to a file, one tab-separated operation per line after a header of population parameters.
+     *
+     * @param file The trace file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            writer.write("# LoadSimulator");
+            for (Map.Entry<String, String> parameter : PARAMETERS.entrySet()) {
+                writer.write(" " + parameter.getKey() + "=" + parameter.getValue());
+            }
+            writer.newLine();
+            for (String[] operation : OPERATIONS) {
+                writer.write(String.join("\t", operation));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Adds the trace's population of students and units to the system. The population depends only on the trace's
+     * parameters, so it is the same every time the trace is run.
+     *
+     * @param ses The Student Enrollment System instance.
+     */
+    public void populate(StudentEnrollmentSystem ses) {
+        int students = Integer.parseInt(PARAMETERS.get("students"));
+        int units = Integer.parseInt(PARAMETERS.get("units"));
+        int capacity = Integer.parseInt(PARAMETERS.get("capacity"));
+        double partTime = Double.parseDouble(PARAMETERS.get("part-time"));
+        Random random = new Random(Long.parseLong(PARAMETERS.get("seed")));
+        for (int i = 0; i < units; i++) {
+            ses.insertUnit(new Unit(unitCode(i), "Simulated Unit " + i, random.nextBoolean() ? 6 : 12,
+                    capacity <= 0 ? Unit.UNLIMITED : capacity), false);
+        }
+        for (int i = 0; i < students; i++) {
+            boolean partTimeStudent = random.nextDouble() < partTime;
+            ses.insertStudent(ses.newStudent(partTimeStudent ? 'P' : 'F', studentId(i), "Student " + i,
+                    i + " Simulation Street", String.format("04%08d", i), "student" + i + "@example.com",
+                    partTimeStudent ? "Advisor " + (i % 50) : null), false);
+        }
+        ses.syncImported(); // Make the population durable before measuring, if journaling
+    }
+
+    /**
+     * Drives the trace against the system and prints the throughput, latency percentiles and outcomes per operation.
+     *
+     * @param ses The Student Enrollment System instance, already populated.
+     * @param threads The number of threads issuing operations.
+     * @param rate The total number of operations to start per second, or 0 to go as fast as possible.
+     */
+    public void run(StudentEnrollmentSystem ses, int threads, double rate) {
+        LatencyHistogram[] latencies = new LatencyHistogram[KINDS.length];
+        LongAdder[][] outcomes = new LongAdder[KINDS.length][EnrollmentResult.values().length];
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            latencies[kind] = new LatencyHistogram();
+            for (int result = 0; result < outcomes[kind].length; result++) {
+                outcomes[kind][result] = new LongAdder();
+            }
+        }
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime() + 10_000_000L; // Gives every thread time to start
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = next.getAndIncrement(); i < OPERATIONS.size(); i = next.getAndIncrement()) {
+                    long due = rate > 0 ? start + (long) (i * 1e9 / rate) : Math.max(start, System.nanoTime());
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long begin = rate > 0 ? due : System.nanoTime();
+                    String[] operation = OPERATIONS.get(i);
+                    int kind = Arrays.asList(KINDS).indexOf(operation[0]);
+                    EnrollmentResult result = execute(ses, kind, operation);
+                    latencies[kind].record(System.nanoTime() - begin);
+                    outcomes[kind][result.ordinal()].increment();
+                }
+            }, "load-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+
+        LatencyHistogram overall = new LatencyHistogram();
+        System.out.printf("%d operation(s) on %d thread(s) in %.3f s: %.0f ops/s%n", OPERATIONS.size(), threads,
+                seconds, OPERATIONS.size() / seconds);
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            if (latencies[kind].getCount() == 0) {
+                continue;
+            }
+            overall.add(latencies[kind]);
+            StringBuilder results = new StringBuilder();
+            for (EnrollmentResult result : EnrollmentResult.values()) {
+                long count = outcomes[kind][result.ordinal()].sum();
+                if (count > 0) {
+                    results.append(results.length() == 0 ? "" : ", ").append(result).append('=').append(count);
+                }
+            }
+            System.out.printf("%-7s %s%n        %s%n", KINDS[kind], latencies[kind], results);
+        }
+        System.out.printf("%-7s %s%n", "ALL", overall);
+    }
+
+    private static EnrollmentResult execute(StudentEnrollmentSystem ses, int kind, String[] operation) {
+        switch (kind) {
+            case ENROLL:
+                return ses.enroll(operation[1], operation[2]);
+            case DROP:
+                return ses.drop(operation[1], operation[2]);
+            default:
+                Student student = ses.getStudent(operation[1]);
+                if (student == null) {
+                    return EnrollmentResult.STUDENT_NOT_FOUND;
+                }
+                int creditPoints = 0;
+                for (Unit unit : student.getUnits()) {
+                    creditPoints += unit.getCreditPoints();
+                }
+                sink += creditPoints;
+                return EnrollmentResult.SUCCESS;
+        }
+    }
+
+    private static String studentId(int index) {
+        return "LS" + index;
+    }
+
+    private static String unitCode(int index) {
+        return "SIM" + (1000 + index);
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page - One page of a sorted listing of students, units or a unit's roster.
+ * <p>
+ * Listings are paged with a cursor rather than an offset: the cursor is the key (student ID or unit code) of the
+ * last item on the page, and the next page starts with the first key after it. Each page is therefore found with a
+ * single seek into an ordered index, however far into the listing it is, and students or units added or removed
+ * between pages never cause the items that remain to be skipped or listed twice.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class Page<T> {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final List<T> ITEMS;
+    private final String NEXT_CURSOR;
+
+    /**
+     * Constructs a Page.
+     *
+     * @param items The items on the page, in order.
+     * @param nextCursor The cursor of the next page, or null if this is the last page.
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.ITEMS = Collections.unmodifiableList(items);
+        this.NEXT_CURSOR = nextCursor;
+    }
+
+    /**
+     * Returns the items on this page.
+     *
+     * @return An unmodifiable list of the items, in order.
+     */
+    public List<T> getItems() {
+        return ITEMS;
+    }
+
+    /**
+     * Returns the cursor to pass to fetch the page after this one.
+     *
+     * @return The cursor, or null if this is the last page.
+     */
+    public String getNextCursor() {
+        return NEXT_CURSOR;
+    }
+
+    /**
+     * Returns whether there may be a page after this one.
+     *
+     * @return True if there is a next cursor.
+     */
+    public boolean hasNext() {
+        return NEXT_CURSOR != null;
+    }
+}
@@ -27,13 +27,25 @@ public class PartTimeStudent extends Student {
         super(id, name, address, phone, email);
     }
 
+    /**
+     * Constructs a flyweight PartTimeStudent whose details, including the course advisor, are read from a column
+     * store.
+     *
+     * @param id The unique identifier of the student.
+     * @param store The store holding the student's details.
+     * @param row The student's row in the store.
+     */
+    PartTimeStudent(String id, StudentColumnStore store, int row) {
+        super(id, store, row);
+    }
+
     /**
      * Returns the course advisor of the student.
      *
      * @return The course advisor.
      */
     public String getCourseAdvisor() {
-        return courseAdvisor;
+        return getStore() == null ? courseAdvisor : getStore().get(getRow(), StudentColumnStore.COURSE_ADVISOR);
     }
 
     /**
@@ -42,6 +54,10 @@ public class PartTimeStudent extends Student {
      * @param courseAdvisor The course advisor to be set.
      */
     public void setCourseAdvisor(String courseAdvisor) {
-        this.courseAdvisor = courseAdvisor;
+        if (getStore() == null) {
+            this.courseAdvisor = courseAdvisor;
+        } else {
+            getStore().set(getRow(), StudentColumnStore.COURSE_ADVISOR, courseAdvisor);
+        }
     }
 }
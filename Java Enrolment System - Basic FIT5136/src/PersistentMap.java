@@ -0,0 +1,443 @@
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * PersistentMap - An immutable hash map that is updated by making a new version sharing most of the old one.
+ * <p>
+ * The map is a hash array mapped trie: each node covers five bits of the keys' hashes and holds, for each of up to
+ * 32 of their values, either a key and its value or a child node covering the next five bits. A bitmap records
+ * which values are present, so a node's array has no empty slots. Adding or removing a key copies only the nodes
+ * on the path to it, at most seven and usually four or five for millions of keys, and every other node is shared
+ * with the previous version. Old versions are never modified, so a reader holding one sees it unchanged for as
+ * long as it likes, without locks, while newer versions are made from it.
+ * </p>
+ *
+ * <p>
+ * Keys whose hashes are entirely equal share a collision node, searched linearly. Neither keys nor values may be
+ * null.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class PersistentMap<K, V> {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // Nodes for at most this many entries are built by adding them one at a time
+    private static final int SMALL_NODE = 8;
+    private final Node ROOT;
+    private final int SIZE;
+
+    private PersistentMap(Node root, int size) {
+        this.ROOT = root;
+        this.SIZE = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Builds a map from keys and their values in one pass, much faster than adding them one at a time. The keys
+     * are sorted into nodes by radix on their hashes, and the subtrees under the root are built in parallel.
+     *
+     * @param keys The keys, all distinct.
+     * @param values The value of each key.
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     * @return The map.
+     */
+    public static <K, V> PersistentMap<K, V> of(K[] keys, V[] values) {
+        int size = keys.length;
+        if (size == 0) {
+            return empty();
+        }
+        Object[] entries = new Object[2 * size];
+        int[] hashes = new int[size];
+        for (int i = 0; i < size; i++) {
+            entries[2 * i] = Objects.requireNonNull(keys[i]);
+            entries[2 * i + 1] = Objects.requireNonNull(values[i]);
+            hashes[i] = hash(keys[i]);
+        }
+        return new PersistentMap<>(build(hashes, entries, new int[size], new Object[2 * size], 0, size, 0), size);
+    }
+
+    /**
+     * Looks up the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V) ROOT.find(0, hash(key), key);
+    }
+
+    /**
+     * Checks if the map has a key.
+     *
+     * @param key The key.
+     * @return True if the key is in the map.
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the map with a key set to a value. This map is not changed.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return The new map, or this map if the key already had exactly that value.
+     */
+    public PersistentMap<K, V> with(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node root = ROOT.assoc(0, hash(key), Objects.requireNonNull(key), Objects.requireNonNull(value), added);
+        return root == ROOT ? this : new PersistentMap<>(root, added[0] ? SIZE + 1 : SIZE);
+    }
+
+    /**
+     * Returns the map without a key. This map is not changed.
+     *
+     * @param key The key.
+     * @return The new map, or this map if the key was not in it.
+     */
+    public PersistentMap<K, V> without(Object key) {
+        Node root = ROOT.dissoc(0, hash(key), key);
+        if (root == ROOT) {
+            return this;
+        }
+        return root == null ? empty() : new PersistentMap<>(root, SIZE - 1);
+    }
+
+    /**
+     * Returns the number of keys in the map.
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return SIZE;
+    }
+
+    /**
+     * Returns whether the map is empty.
+     *
+     * @return True if the map has no keys.
+     */
+    public boolean isEmpty() {
+        return SIZE == 0;
+    }
+
+    /**
+     * Passes every key and its value to an action, in no particular order.
+     *
+     * @param action The action.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        ROOT.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16); // Spread the high bits, as HashMap does
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Builds the node for a range of entries whose hashes agree below the shift, sorting them by the next five
+     * bits of their hashes.
+     */
+    private static Node build(int[] hashes, Object[] entries, int[] hashBuffer, Object[] entryBuffer,
+                              int from, int to, int shift) {
+        if (to - from <= SMALL_NODE) { // Too few entries to be worth sorting
+            Node node = BitmapNode.EMPTY;
+            boolean[] added = new boolean[1];
+            for (int i = from; i < to; i++) {
+                node = node.assoc(shift, hashes[i], entries[2 * i], entries[2 * i + 1], added);
+            }
+            return node;
+        }
+        int[] starts = new int[MASK + 2];
+        for (int i = from; i < to; i++) {
+            starts[((hashes[i] >>> shift) & MASK) + 1]++;
+        }
+        int bitmap = 0;
+        int slots = 0;
+        for (int chunk = 0; chunk <= MASK; chunk++) {
+            if (starts[chunk + 1] > 0) {
+                bitmap |= 1 << chunk;
+                slots++;
+            }
+            starts[chunk + 1] += starts[chunk];
+        }
+        int[] next = Arrays.copyOf(starts, MASK + 1);
+        for (int i = from; i < to; i++) {
+            int position = from + next[(hashes[i] >>> shift) & MASK]++;
+            hashBuffer[position] = hashes[i];
+            entryBuffer[2 * position] = entries[2 * i];
+            entryBuffer[2 * position + 1] = entries[2 * i + 1];
+        }
+        System.arraycopy(hashBuffer, from, hashes, from, to - from);
+        System.arraycopy(entryBuffer, 2 * from, entries, 2 * from, 2 * (to - from));
+
+        Object[] array = new Object[2 * slots];
+        int[] chunks = new int[slots];
+        for (int chunk = 0, slot = 0; chunk <= MASK; chunk++) {
+            if ((bitmap & (1 << chunk)) != 0) {
+                chunks[slot++] = chunk;
+            }
+        }
+        if (shift == 0) {
+            IntStream.range(0, slots).parallel().forEach(slot -> buildSlot(hashes, entries, hashBuffer, entryBuffer,
+                    from + starts[chunks[slot]], from + starts[chunks[slot] + 1], shift, array, slot));
+        } else {
+            for (int slot = 0; slot < slots; slot++) {
+                buildSlot(hashes, entries, hashBuffer, entryBuffer, from + starts[chunks[slot]],
+                        from + starts[chunks[slot] + 1], shift, array, slot);
+            }
+        }
+        return new BitmapNode(bitmap, array);
+    }
+
+    private static void buildSlot(int[] hashes, Object[] entries, int[] hashBuffer, Object[] entryBuffer,
+                                  int start, int end, int shift, Object[] array, int slot) {
+        if (end - start == 1) {
+            array[2 * slot] = entries[2 * start];
+            array[2 * slot + 1] = entries[2 * start + 1];
+        } else if (allEqual(hashes, start, end)) {
+            array[2 * slot + 1] = new CollisionNode(hashes[start], Arrays.copyOfRange(entries, 2 * start, 2 * end));
+        } else {
+            array[2 * slot + 1] = build(hashes, entries, hashBuffer, entryBuffer, start, end, shift + BITS);
+        }
+    }
+
+    private static boolean allEqual(int[] hashes, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (hashes[i] != hashes[from]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private interface Node {
+        Object find(int shift, int hash, Object key);
+
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        // Returns null once the node is empty
+        Node dissoc(int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+        final int BITMAP;
+        // For each bit set in the bitmap, in order: a key and its value, or null and a child node
+        final Object[] ARRAY;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.BITMAP = bitmap;
+            this.ARRAY = array;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(BITMAP & (bit - 1));
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((BITMAP & bit) == 0) {
+                return null;
+            }
+            int index = index(bit);
+            Object found = ARRAY[index];
+            if (found == null) {
+                return ((Node) ARRAY[index + 1]).find(shift + BITS, hash, key);
+            }
+            return key.equals(found) ? ARRAY[index + 1] : null;
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int index = index(bit);
+            if ((BITMAP & bit) == 0) {
+                Object[] array = new Object[ARRAY.length + 2];
+                System.arraycopy(ARRAY, 0, array, 0, index);
+                array[index] = key;
+                array[index + 1] = value;
+                System.arraycopy(ARRAY, index, array, index + 2, ARRAY.length - index);
+                added[0] = true;
+                return new BitmapNode(BITMAP | bit, array);
+            }
+            Object found = ARRAY[index];
+            Object current = ARRAY[index + 1];
+            Node child;
+            if (found == null) {
+                child = ((Node) current).assoc(shift + BITS, hash, key, value, added);
+                if (child == current) {
+                    return this;
+                }
+            } else if (key.equals(found)) {
+                if (value == current) {
+                    return this;
+                }
+                return replace(index + 1, found, value);
+            } else {
+                added[0] = true;
+                child = pair(shift + BITS, hash(found), found, current, hash, key, value);
+            }
+            return replace(index + 1, null, child);
+        }
+
+        private BitmapNode replace(int index, Object key, Object value) {
+            Object[] array = ARRAY.clone();
+            array[index - 1] = key;
+            array[index] = value;
+            return new BitmapNode(BITMAP, array);
+        }
+
+        private static Node pair(int shift, int firstHash, Object firstKey, Object firstValue,
+                                 int secondHash, Object secondKey, Object secondValue) {
+            if (firstHash == secondHash) {
+                return new CollisionNode(firstHash, new Object[]{firstKey, firstValue, secondKey, secondValue});
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY.assoc(shift, firstHash, firstKey, firstValue, added)
+                    .assoc(shift, secondHash, secondKey, secondValue, added);
+        }
+
+        @Override
+        public Node dissoc(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((BITMAP & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object found = ARRAY[index];
+            if (found == null) {
+                Node child = (Node) ARRAY[index + 1];
+                Node remaining = child.dissoc(shift + BITS, hash, key);
+                if (remaining == child) {
+                    return this;
+                }
+                if (remaining != null) {
+                    return replace(index + 1, null, remaining);
+                }
+            } else if (!key.equals(found)) {
+                return this;
+            }
+            if (BITMAP == bit) {
+                return null;
+            }
+            Object[] array = new Object[ARRAY.length - 2];
+            System.arraycopy(ARRAY, 0, array, 0, index);
+            System.arraycopy(ARRAY, index + 2, array, index, ARRAY.length - index - 2);
+            return new BitmapNode(BITMAP ^ bit, array);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < ARRAY.length; i += 2) {
+                if (ARRAY[i] == null) {
+                    ((Node) ARRAY[i + 1]).forEach(action);
+                } else {
+                    action.accept(ARRAY[i], ARRAY[i + 1]);
+                }
+            }
+        }
+    }
+
+    private static final class CollisionNode implements Node {
+        final int HASH;
+        // Keys and their values, in pairs
+        final Object[] ARRAY;
+
+        CollisionNode(int hash, Object[] array) {
+            this.HASH = hash;
+            this.ARRAY = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < ARRAY.length; i += 2) {
+                if (key.equals(ARRAY[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int index = hash == HASH ? indexOf(key) : -1;
+            return index < 0 ? null : ARRAY[index + 1];
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != HASH) { // Nest this node in a bitmap node, which tells the two hashes apart
+                return new BitmapNode(bit(HASH, shift), new Object[]{null, this})
+                        .assoc(shift, hash, key, value, added);
+            }
+            int index = indexOf(key);
+            if (index >= 0 && ARRAY[index + 1] == value) {
+                return this;
+            }
+            Object[] array;
+            if (index >= 0) {
+                array = ARRAY.clone();
+            } else {
+                index = ARRAY.length;
+                array = Arrays.copyOf(ARRAY, ARRAY.length + 2);
+                added[0] = true;
+            }
+            array[index] = key;
+            array[index + 1] = value;
+            return new CollisionNode(HASH, array);
+        }
+
+        @Override
+        public Node dissoc(int shift, int hash, Object key) {
+            int index = hash == HASH ? indexOf(key) : -1;
+            if (index < 0) {
+                return this;
+            }
+            if (ARRAY.length == 2) {
+                return null;
+            }
+            Object[] array = new Object[ARRAY.length - 2];
+            System.arraycopy(ARRAY, 0, array, 0, index);
+            System.arraycopy(ARRAY, index + 2, array, index, ARRAY.length - index - 2);
+            return new CollisionNode(HASH, array);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < ARRAY.length; i += 2) {
+                action.accept(ARRAY[i], ARRAY[i + 1]);
+            }
+        }
+    }
+}
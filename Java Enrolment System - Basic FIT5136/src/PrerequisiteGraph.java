@@ -0,0 +1,371 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PrerequisiteGraph - The {@link Requisites} of every unit in the catalogue, precomputed into bitsets.
+ * <p>
+ * Every unit code the graph meets is given a bit position. For each unit the graph keeps the bitset of every unit
+ * it requires, directly or through its prerequisites' own prerequisites, along with the bitsets of its
+ * co-requisites and prohibitions. A student's completed units are turned into a bitset of every unit they are
+ * credited with (each completed unit and everything it required) once, and cached until the catalogue changes.
+ * Checking whether a student may enroll is then a few word-wide AND operations per 64 units, however long the
+ * chains of prerequisites are.
+ * </p>
+ *
+ * <p>
+ * The closures are rebuilt incrementally: adding or removing a unit recomputes only that unit and the units that
+ * transitively require it, each once, in dependency order. A unit whose prerequisites would require the unit
+ * itself is refused. Prerequisites that are not (or no longer) in the catalogue are kept: a student can still
+ * meet them with a completed unit.
+ * </p>
+ *
+ * <p>
+ * Changes are made one at a time under the graph's lock. Each unit's bitsets are published as a single immutable
+ * node, so checks never lock and always see a whole node, old or new.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class PrerequisiteGraph {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final long[] EMPTY = new long[0];
+    private final Map<String, Integer> INDEX = new ConcurrentHashMap<>();
+    private final Map<String, Node> NODES = new ConcurrentHashMap<>();
+    // Guarded by the graph's lock
+    private final Map<String, Requisites> REQUISITES = new HashMap<>();
+    private final Map<String, Set<String>> DEPENDENTS = new HashMap<>();
+    private volatile long version;
+
+    /**
+     * The bitsets of one unit, trimmed to their highest set word.
+     */
+    private static class Node {
+        private final long[] REQUIRED;
+        private final long[] COREQUISITES;
+        private final long[] PROHIBITED;
+
+        private Node(long[] required, long[] corequisites, long[] prohibited) {
+            this.REQUIRED = required;
+            this.COREQUISITES = corequisites;
+            this.PROHIBITED = prohibited;
+        }
+    }
+
+    /**
+     * A student's completed units as bitsets, as of a version of the graph.
+     */
+    static class Credit {
+        private final long VERSION;
+        private final long[] COMPLETED;
+        private final long[] CREDITED;
+
+        private Credit(long version, long[] completed, long[] credited) {
+            this.VERSION = version;
+            this.COMPLETED = completed;
+            this.CREDITED = credited;
+        }
+    }
+
+    /**
+     * Adds a unit of the catalogue, after checking its prerequisites do not require it.
+     *
+     * @param unit The unit.
+     * @throws IllegalArgumentException If one of the unit's prerequisites is, or requires, the unit itself.
+     */
+    public synchronized void add(Unit unit) {
+        String code = unit.getCode();
+        int index = index(code);
+        for (String prerequisite : unit.getRequisites().getPrerequisites()) {
+            Node node = NODES.get(prerequisite);
+            if (prerequisite.equals(code) || node != null && get(node.REQUIRED, index)) {
+                throw new IllegalArgumentException("Unit '" + code + "' cannot require '" + prerequisite
+                        + "', which requires it.");
+            }
+        }
+        link(code, unit.getRequisites());
+        rebuild(Collections.singleton(code));
+    }
+
+    /**
+     * Adds many units of the catalogue at once, rebuilding each affected closure only once. The units are not
+     * checked for cycles, so they must have been checked when first added, e.g. units restored from a snapshot.
+     *
+     * @param units The units.
+     */
+    public synchronized void addAll(Collection<Unit> units) {
+        Set<String> codes = new LinkedHashSet<>();
+        for (Unit unit : units) {
+            link(unit.getCode(), unit.getRequisites());
+            codes.add(unit.getCode());
+        }
+        rebuild(codes);
+    }
+
+    /**
+     * Removes a unit from the catalogue. Units that require it still do, but no longer inherit its prerequisites.
+     *
+     * @param unitCode The code of the unit.
+     */
+    public synchronized void remove(String unitCode) {
+        if (unlink(unitCode)) {
+            NODES.remove(unitCode);
+            rebuild(Collections.emptySet(), unitCode);
+        }
+    }
+
+    /**
+     * Returns the codes of every unit required before enrolling in a unit, directly or transitively.
+     *
+     * @param unitCode The code of the unit.
+     * @return The unit codes, in the order the graph first met them.
+     */
+    public List<String> getRequired(String unitCode) {
+        Node node = NODES.get(unitCode);
+        List<String> codes = new ArrayList<>();
+        if (node != null) {
+            Map<Integer, String> names = new HashMap<>();
+            INDEX.forEach((code, index) -> names.put(index, code));
+            for (int i = nextSetBit(node.REQUIRED, 0); i >= 0; i = nextSetBit(node.REQUIRED, i + 1)) {
+                codes.add(names.get(i));
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Checks whether a student may enroll in a unit: they must be credited with every unit it requires, have
+     * completed or be taking each of its co-requisites, and have neither completed nor be taking any unit it
+     * prohibits.
+     *
+     * @param unitCode The code of the unit.
+     * @param completed The units the student has completed.
+     * @param taking The units the student is taking, including any being enrolled alongside this one.
+     * @return SUCCESS, MISSING_PREREQUISITES, MISSING_COREQUISITES or PROHIBITED_UNIT.
+     */
+    public EnrollmentResult check(String unitCode, CompletedUnits completed, Collection<Unit> taking) {
+        Node node = NODES.get(unitCode);
+        if (node == null || node.REQUIRED.length == 0 && node.COREQUISITES.length == 0
+                && node.PROHIBITED.length == 0) {
+            return EnrollmentResult.SUCCESS;
+        }
+        Credit credit = credit(completed);
+        if (!containsAll(credit.CREDITED, node.REQUIRED)) {
+            return EnrollmentResult.MISSING_PREREQUISITES;
+        }
+        if (node.COREQUISITES.length == 0 && node.PROHIBITED.length == 0) {
+            return EnrollmentResult.SUCCESS;
+        }
+        long[] current = EMPTY;
+        for (Unit unit : taking) {
+            Integer index = INDEX.get(unit.getCode());
+            if (index != null) {
+                current = set(current, index);
+            }
+        }
+        // Only a unit actually completed or taken excludes the units it prohibits, not the units it required
+        for (int i = 0; i < node.PROHIBITED.length; i++) {
+            if ((node.PROHIBITED[i] & (word(credit.COMPLETED, i) | word(current, i))) != 0) {
+                return EnrollmentResult.PROHIBITED_UNIT;
+            }
+        }
+        for (int i = 0; i < node.COREQUISITES.length; i++) {
+            if ((node.COREQUISITES[i] & ~word(credit.CREDITED, i) & ~word(current, i)) != 0) {
+                return EnrollmentResult.MISSING_COREQUISITES;
+            }
+        }
+        return EnrollmentResult.SUCCESS;
+    }
+
+    /**
+     * Returns the bitsets of the units a student has completed and of every unit they are credited with: the units
+     * they completed and everything those required. Cached in the student's completed units until the graph
+     * changes.
+     */
+    private Credit credit(CompletedUnits completed) {
+        long version = this.version; // Read first, so a change made while computing invalidates the result
+        Credit credit = completed.getCredit();
+        if (credit != null && credit.VERSION == version) {
+            return credit;
+        }
+        long[] bits = EMPTY;
+        long[] credited = EMPTY;
+        for (String code : completed.getCodes()) {
+            Integer index = INDEX.get(code);
+            Node node = NODES.get(code);
+            if (index != null) {
+                bits = set(bits, index);
+            }
+            if (node != null) {
+                credited = or(credited, node.REQUIRED);
+            }
+        }
+        credit = new Credit(version, bits, or(credited, bits));
+        completed.setCredit(credit);
+        return credit;
+    }
+
+    private int index(String code) {
+        Integer index = INDEX.get(code);
+        if (index == null) {
+            index = INDEX.size();
+            INDEX.put(code, index);
+        }
+        return index;
+    }
+
+    private void link(String code, Requisites requisites) {
+        unlink(code);
+        REQUISITES.put(code, requisites);
+        for (String prerequisite : requisites.getPrerequisites()) {
+            index(prerequisite);
+            DEPENDENTS.computeIfAbsent(prerequisite, key -> new HashSet<>()).add(code);
+        }
+        for (String corequisite : requisites.getCorequisites()) {
+            index(corequisite);
+        }
+        for (String prohibition : requisites.getProhibitions()) {
+            index(prohibition);
+        }
+    }
+
+    private boolean unlink(String code) {
+        Requisites requisites = REQUISITES.remove(code);
+        if (requisites == null) {
+            return false;
+        }
+        for (String prerequisite : requisites.getPrerequisites()) {
+            Set<String> dependents = DEPENDENTS.get(prerequisite);
+            dependents.remove(code);
+            if (dependents.isEmpty()) {
+                DEPENDENTS.remove(prerequisite);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recomputes the closures of the given units and of every unit that transitively requires them or the changed
+     * unit, then publishes the new nodes.
+     */
+    private void rebuild(Set<String> codes, String... changed) {
+        Set<String> affected = new LinkedHashSet<>(codes);
+        Deque<String> pending = new ArrayDeque<>(codes);
+        Collections.addAll(pending, changed);
+        while (!pending.isEmpty()) {
+            for (String dependent : DEPENDENTS.getOrDefault(pending.poll(), Collections.emptySet())) {
+                if (affected.add(dependent)) {
+                    pending.add(dependent);
+                }
+            }
+        }
+        Map<String, long[]> closures = new HashMap<>();
+        for (String code : affected) {
+            closure(code, affected, closures);
+        }
+        for (String code : affected) {
+            Requisites requisites = REQUISITES.get(code);
+            NODES.put(code, new Node(closures.get(code), bits(requisites.getCorequisites(), code),
+                    bits(requisites.getProhibitions(), code)));
+        }
+        version++; // After the nodes, so credit computed before this is recomputed
+    }
+
+    /**
+     * Computes a unit's closure from its prerequisites' closures, computing first those that are also affected.
+     */
+    private long[] closure(String code, Set<String> affected, Map<String, long[]> closures) {
+        long[] bits = closures.get(code);
+        if (bits != null) {
+            if (bits == EMPTY) {
+                throw new IllegalStateException("Unit '" + code + "' requires itself.");
+            }
+            return bits;
+        }
+        closures.put(code, EMPTY); // Marks the unit as in progress
+        bits = EMPTY;
+        for (String prerequisite : REQUISITES.get(code).getPrerequisites()) {
+            bits = set(bits, INDEX.get(prerequisite));
+            if (affected.contains(prerequisite)) {
+                bits = or(bits, closure(prerequisite, affected, closures));
+            } else {
+                Node node = NODES.get(prerequisite);
+                bits = or(bits, node == null ? EMPTY : node.REQUIRED);
+            }
+        }
+        if (bits == EMPTY) {
+            bits = new long[0]; // Distinct from the in-progress marker
+        }
+        closures.put(code, bits);
+        return bits;
+    }
+
+    private long[] bits(String[] codes, String self) {
+        long[] bits = EMPTY;
+        for (String code : codes) {
+            if (!code.equals(self)) {
+                bits = set(bits, INDEX.get(code));
+            }
+        }
+        return bits;
+    }
+
+    private static long[] set(long[] bits, int index) {
+        int word = index >>> 6;
+        long[] result = word < bits.length ? bits : Arrays.copyOf(bits, word + 1);
+        result[word] |= 1L << index;
+        return result;
+    }
+
+    private static boolean get(long[] bits, int index) {
+        return (word(bits, index >>> 6) & 1L << index) != 0;
+    }
+
+    private static long word(long[] bits, int word) {
+        return word < bits.length ? bits[word] : 0;
+    }
+
+    private static long[] or(long[] bits, long[] other) {
+        if (other.length == 0) {
+            return bits;
+        }
+        long[] result = Arrays.copyOf(bits, Math.max(bits.length, other.length));
+        for (int i = 0; i < other.length; i++) {
+            result[i] |= other[i];
+        }
+        return result;
+    }
+
+    private static boolean containsAll(long[] bits, long[] required) {
+        for (int i = 0; i < required.length; i++) {
+            if ((required[i] & ~word(bits, i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nextSetBit(long[] bits, int from) {
+        for (int word = from >>> 6; word < bits.length; word++) {
+            long remaining = bits[word] & (word == from >>> 6 ? -1L << from : -1L);
+            if (remaining != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(remaining);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RecoveryStressCheck - Checks that a system recovered from a snapshot taken under load matches the system that
+ * wrote it.
+ * <p>
+ * Worker threads enroll, drop, join and leave waitlists and make batches over a few small units while another
+ * thread keeps taking snapshots. The system is then closed and recovered into a new one, and the check compares
+ * every student's units and every unit's seat counter, class size and waitlist with those before the restart.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java RecoveryStressCheck [threads] [seconds] [rounds]}
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class RecoveryStressCheck {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final int UNITS = 10;
+    private static final int CAPACITY = 150;
+    private static final int STUDENTS = 2_000;
+
+    /**
+     * Runs the check.
+     *
+     * @param args Optional thread count, seconds of load per round and number of rounds.
+     * @throws Exception If the system cannot be stored or recovered, or a worker fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        File dataDirectory = Files.createTempDirectory("recovery-check").toFile();
+        StudentEnrollmentSystem ses = new StudentEnrollmentSystem(new Administrator("Check"));
+        ses.restore(dataDirectory);
+        for (int i = 0; i < UNITS; i++) {
+            ses.createUnit(new Unit("U" + i, "Unit " + i, 6, CAPACITY));
+        }
+        for (int i = 0; i < STUDENTS; i++) {
+            ses.createStudent(new FullTimeStudent("S" + i, "Student " + i, "Address", "Phone", "s" + i + "@example.com"));
+        }
+
+        boolean consistent = true;
+        for (int round = 1; round <= rounds; round++) {
+            load(ses, threads, seconds, round);
+            Map<String, Set<String>> units = enrollments(ses);
+            Map<String, List<String>> waitlists = waitlists(ses);
+            boolean ok = check(ses, "Before restart " + round);
+            ses.close();
+
+            ses = new StudentEnrollmentSystem(new Administrator("Check"));
+            ses.restore(dataDirectory);
+            ok &= check(ses, "After restart " + round);
+            if (!units.equals(enrollments(ses))) {
+                System.out.println("After restart " + round + ": students' units differ.");
+                ok = false;
+            }
+            if (!waitlists.equals(waitlists(ses))) {
+                System.out.println("After restart " + round + ": waitlists differ.");
+                ok = false;
+            }
+            System.out.println("Round " + round + (ok ? " consistent." : " INCONSISTENT"));
+            consistent &= ok;
+        }
+        ses.close();
+        System.out.println(consistent ? "Recovered state matches." : "Recovered state is inconsistent!");
+        if (!consistent) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the workers and the snapshot thread for a while.
+     */
+    private static void load(StudentEnrollmentSystem ses, int threads, int seconds, int round)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(round * 1_000L + t);
+            workers.add(new Thread(() -> {
+                while (running.get()) {
+                    String studentId = "S" + random.nextInt(STUDENTS);
+                    String unitCode = "U" + random.nextInt(UNITS);
+                    switch (random.nextInt(6)) {
+                        case 0:
+                        case 1:
+                            ses.enroll(studentId, unitCode);
+                            break;
+                        case 2:
+                            ses.drop(studentId, unitCode);
+                            break;
+                        case 3:
+                            ses.joinWaitlist(studentId, unitCode, random.nextInt(3));
+                            break;
+                        case 4:
+                            ses.leaveWaitlist(studentId, unitCode);
+                            break;
+                        default:
+                            ses.enrollAll(new EnrollmentBatch().add(studentId, unitCode)
+                                    .add("S" + random.nextInt(STUDENTS), "U" + random.nextInt(UNITS)));
+                    }
+                }
+            }));
+        }
+        workers.add(new Thread(() -> {
+            while (running.get()) {
+                try {
+                    ses.snapshot();
+                    Thread.sleep(20);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }));
+        workers.forEach(Thread::start);
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Checks that each unit's seat counter matches its class size and its capacity.
+     */
+    private static boolean check(StudentEnrollmentSystem ses, String when) {
+        boolean ok = true;
+        for (Unit unit : ses.getUnits()) {
+            int classSize = ses.getClassSize(unit.getCode());
+            if (unit.getSeatsTaken() != classSize || classSize > unit.getCapacity()) {
+                System.out.println(when + ": " + unit.getCode() + " has " + unit.getSeatsTaken() + " seat(s) taken, "
+                        + classSize + " student(s) enrolled and " + unit.getCapacity() + " seat(s).");
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private static Map<String, Set<String>> enrollments(StudentEnrollmentSystem ses) {
+        Map<String, Set<String>> enrollments = new HashMap<>();
+        for (Student student : ses.getStudents().values()) {
+            Set<String> codes = new TreeSet<>();
+            student.getUnits().forEach(unit -> codes.add(unit.getCode()));
+            enrollments.put(student.getId(), codes);
+        }
+        return enrollments;
+    }
+
+    private static Map<String, List<String>> waitlists(StudentEnrollmentSystem ses) {
+        Map<String, List<String>> waitlists = new HashMap<>();
+        for (Unit unit : ses.getUnits()) {
+            waitlists.put(unit.getCode(), ses.getWaitlist(unit.getCode()));
+        }
+        return waitlists;
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Requisites - The units a unit requires before, alongside or instead of it.
+ * <p>
+ * A unit lists the units a student must have completed before enrolling in it (prerequisites), the units they must
+ * have completed or be taking at the same time (co-requisites) and the units that cover the same material, which
+ * they must not have completed or be taking (prohibitions). Each list is written as unit codes separated by spaces
+ * or commas, e.g. {@code FIT1045 FIT1008}. Prerequisites are transitive: a student who completed a unit is taken to
+ * have met that unit's own prerequisites, as checked by {@link PrerequisiteGraph}.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class Requisites {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    // A unit anyone can enroll in
+    public static final Requisites NONE = new Requisites(new String[0], new String[0], new String[0]);
+    private final String[] PREREQUISITES;
+    private final String[] COREQUISITES;
+    private final String[] PROHIBITIONS;
+
+    private Requisites(String[] prerequisites, String[] corequisites, String[] prohibitions) {
+        this.PREREQUISITES = prerequisites;
+        this.COREQUISITES = corequisites;
+        this.PROHIBITIONS = prohibitions;
+    }
+
+    /**
+     * Parses the requisites of a unit.
+     *
+     * @param prerequisites The codes of the units to complete first; null or blank for none.
+     * @param corequisites The codes of the units to complete first or take at the same time; null or blank for none.
+     * @param prohibitions The codes of the units that exclude this one; null or blank for none.
+     * @return The requisites.
+     */
+    public static Requisites parse(String prerequisites, String corequisites, String prohibitions) {
+        String[] pre = codes(prerequisites);
+        String[] co = codes(corequisites);
+        String[] not = codes(prohibitions);
+        return pre.length == 0 && co.length == 0 && not.length == 0 ? NONE : new Requisites(pre, co, not);
+    }
+
+    /**
+     * Returns the codes of the units to complete before enrolling.
+     *
+     * @return The prerequisite unit codes, directly required only.
+     */
+    public String[] getPrerequisites() {
+        return PREREQUISITES.clone();
+    }
+
+    /**
+     * Returns the codes of the units to complete before enrolling or take at the same time.
+     *
+     * @return The co-requisite unit codes.
+     */
+    public String[] getCorequisites() {
+        return COREQUISITES.clone();
+    }
+
+    /**
+     * Returns the codes of the units a student must not have completed or be taking.
+     *
+     * @return The prohibited unit codes.
+     */
+    public String[] getProhibitions() {
+        return PROHIBITIONS.clone();
+    }
+
+    /**
+     * Returns whether the unit has no requisites.
+     *
+     * @return True if anyone can enroll.
+     */
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    /**
+     * Writes unit codes in the form {@link #parse(String, String, String)} accepts.
+     *
+     * @param codes The unit codes.
+     * @return The codes separated by spaces, or an empty string if there are none.
+     */
+    static String join(String[] codes) {
+        return String.join(" ", codes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        append(text, "requires", PREREQUISITES);
+        append(text, "with", COREQUISITES);
+        append(text, "not with", PROHIBITIONS);
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, String label, String[] codes) {
+        if (codes.length > 0) {
+            text.append(text.length() > 0 ? "; " : "").append(label).append(' ').append(String.join(", ", codes));
+        }
+    }
+
+    private static String[] codes(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        Set<String> codes = new LinkedHashSet<>(Arrays.asList(text.trim().split("[\\s,]+")));
+        codes.remove("");
+        return codes.toArray(new String[0]);
+    }
+}
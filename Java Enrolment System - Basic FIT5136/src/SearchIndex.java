@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * SearchIndex - A prefix index with typo-tolerant matching, for finding students and units by what an admin types.
+ * <p>
+ * Each key (a student ID or unit code) is indexed under its searchable texts, both whole and split into words, all
+ * lower-cased. The terms are held in a concurrent skip list as {@code term + '\0' + key}, so every term starting
+ * with a prefix is one contiguous range found in O(log n), and the index can be read and updated from many threads
+ * without locking.
+ * </p>
+ *
+ * <p>
+ * When exact prefix matches do not fill the requested number of results, the query is also matched with one typo
+ * (a character missing, extra, wrong or two characters swapped): every string one edit away from the query is
+ * looked up as a prefix in turn. That is a few hundred O(log n) lookups for a typical query, rather than a
+ * comparison against every term.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class SearchIndex {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final char SEPARATOR = '\0';
+    // Queries shorter than this match too much with a typo to be useful
+    private static final int MIN_FUZZY_LENGTH = 3;
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 .@-_'";
+    private final NavigableSet<String> ENTRIES = new ConcurrentSkipListSet<>();
+
+    /**
+     * Indexes a key under the given texts.
+     *
+     * @param key The key, e.g. a student ID.
+     * @param texts The searchable texts, e.g. the ID, name and email. Null texts are skipped.
+     */
+    public void add(String key, String... texts) {
+        for (String term : terms(texts)) {
+            ENTRIES.add(term + SEPARATOR + key);
+        }
+    }
+
+    /**
+     * Removes a key indexed under the given texts.
+     *
+     * @param key The key.
+     * @param texts The texts the key was indexed under.
+     */
+    public void remove(String key, String... texts) {
+        for (String term : terms(texts)) {
+            ENTRIES.remove(term + SEPARATOR + key);
+        }
+    }
+
+    /**
+     * Finds the keys with a term starting with the query, then, if there are too few, those with a term starting
+     * with the query give or take one typo.
+     *
+     * @param query The text typed, matched case-insensitively.
+     * @param limit The maximum number of keys to return.
+     * @return The matching keys, exact prefix matches first, each key once.
+     */
+    public List<String> search(String query, int limit) {
+        String prefix = query.trim().toLowerCase(Locale.ROOT);
+        Set<String> keys = new LinkedHashSet<>();
+        if (prefix.isEmpty() || limit <= 0) {
+            return new ArrayList<>(keys);
+        }
+        collect(prefix, keys, limit);
+        if (keys.size() < limit && prefix.length() >= MIN_FUZZY_LENGTH) {
+            for (String candidate : oneEditAway(prefix)) {
+                collect(candidate, keys, limit);
+                if (keys.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Returns the number of term entries in the index.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return ENTRIES.size();
+    }
+
+    private void collect(String prefix, Set<String> keys, int limit) {
+        // Every entry for a term starting with the prefix sorts between the prefix and the prefix followed by the
+        // highest character
+        for (String entry : ENTRIES.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+            keys.add(entry.substring(entry.lastIndexOf(SEPARATOR) + 1));
+            if (keys.size() >= limit) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns every string one deletion, insertion, substitution or transposition away from a word, in a stable
+     * order (edits near the end first, since typos at the start of a word are rarer).
+     */
+    private static Set<String> oneEditAway(String word) {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (int i = word.length() - 1; i >= 0; i--) {
+            String before = word.substring(0, i);
+            String after = word.substring(i + 1);
+            candidates.add(before + after);
+            if (i + 1 < word.length()) {
+                candidates.add(before + word.charAt(i + 1) + word.charAt(i) + word.substring(i + 2));
+            }
+            for (int c = 0; c < ALPHABET.length(); c++) {
+                candidates.add(before + ALPHABET.charAt(c) + after);
+                candidates.add(before + ALPHABET.charAt(c) + word.substring(i));
+            }
+        }
+        candidates.remove(word);
+        candidates.remove("");
+        return candidates;
+    }
+
+    private static Set<String> terms(String... texts) {
+        Set<String> terms = new TreeSet<>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            String normalized = text.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.isEmpty()) {
+                terms.add(normalized);
+            }
+            for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    terms.add(word);
+                }
+            }
+        }
+        return terms;
+    }
+}
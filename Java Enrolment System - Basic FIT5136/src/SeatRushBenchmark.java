@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SeatRushBenchmark - Measures enrollment throughput when many threads race for the seats of a few popular units,
+ * as happens when enrollment opens.
+ * <p>
+ * Every student tries to enroll in every popular unit at once. Afterwards the benchmark checks that no unit was
+ * oversold and that each unit's seat counter, class size and the number of successful enrollments all agree.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code java SeatRushBenchmark [threads] [students] [units] [capacity]}
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class SeatRushBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional thread count, student count, unit count and unit capacity.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 4;
+        int students = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int units = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int capacity = args.length > 3 ? Integer.parseInt(args[3]) : students / 2;
+
+        StudentEnrollmentSystem ses = new StudentEnrollmentSystem(new Administrator("Benchmark"));
+        List<Unit> popularUnits = new ArrayList<>();
+        for (int i = 0; i < units; i++) {
+            Unit unit = new Unit("HOT" + i, "Popular Unit " + i, 6, capacity);
+            ses.insertUnit(unit, false);
+            popularUnits.add(unit);
+        }
+        List<Student> population = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            Student student = new FullTimeStudent("S" + i, "Student " + i, "Address", "Phone", "s" + i + "@example.com");
+            ses.insertStudent(student, false);
+            population.add(student);
+        }
+
+        AtomicInteger enrolled = new AtomicInteger();
+        AtomicInteger full = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = offset; i < population.size(); i += threads) {
+                    for (Unit unit : popularUnits) {
+                        EnrollmentResult result = ses.enrol(population.get(i), unit, false);
+                        if (result == EnrollmentResult.SUCCESS) {
+                            enrolled.incrementAndGet();
+                        } else if (result == EnrollmentResult.UNIT_FULL) {
+                            full.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        long attempts = (long) students * units;
+
+        System.out.printf("%d threads, %d enrollment attempts in %.3f s (%.0f ops/s)%n",
+                threads, attempts, seconds, attempts / seconds);
+        System.out.println(enrolled.get() + " enrolled, " + full.get() + " rejected as full.");
+        boolean consistent = true;
+        for (Unit unit : popularUnits) {
+            int classSize = ses.getClassSize(unit.getCode());
+            boolean ok = unit.getSeatsTaken() <= capacity && unit.getSeatsTaken() == classSize;
+            consistent &= ok;
+            System.out.println(unit + " - class size " + classSize + (ok ? "" : " INCONSISTENT"));
+        }
+        System.out.println(consistent ? "No seats oversold." : "Seat accounting is inconsistent!");
+        if (!consistent) {
+            System.exit(1);
+        }
+    }
+}
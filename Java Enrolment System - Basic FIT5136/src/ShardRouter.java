@@ -0,0 +1,706 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * ShardRouter - Spreads students over several Student Enrollment Systems (shards) by consistent hashing on their
+ * IDs, and routes each operation to the shard holding the student.
+ * <p>
+ * Every shard holds the whole catalogue, and the shards share the unit objects themselves: a unit's seat counter
+ * and waitlist are the same object in every shard, so seats are reserved with the same lock-free compare-and-set
+ * whichever shard the student is in, and a unit can never be oversold across shards. Catalogue changes are made
+ * in every shard; everything else only touches the shard of the student concerned, with its own maps, locks,
+ * journal and snapshot. A seat freed in one shard is offered to the next waiting student in whichever shard holds
+ * them.
+ * </p>
+ *
+ * <p>
+ * Students are placed on a ring of hash points, {@value #POINTS_PER_SHARD} per shard, and belong to the shard of
+ * the first point at or after their own hash. Adding a shard only adds its points, so only the students whose
+ * hashes now fall on them, about one in every (shards + 1), move to it, and every other student stays where they
+ * are. Moving students are handed over with their enrollments, completed units and waitlist places, the new shard
+ * taking their seats before the old one gives them up. Routed operations wait while a shard is being added.
+ * </p>
+ *
+ * <p>
+ * An enrollment batch whose students are all in one shard is made all or nothing by that shard. A batch spanning
+ * shards is checked and has its seats reserved in every shard before any part is made, then is prepared and
+ * committed in every shard's journal, so it is all or nothing across shards and crashes too; see
+ * {@link #enrollAll(EnrollmentBatch)}.
+ * </p>
+ *
+ * <p>
+ * With a data directory, each shard keeps its journal and snapshot in its own subdirectory {@code shard-<n>}. On
+ * restore, shards missing units the first shard has (or having units it does not) are brought into line, and any
+ * student found in the wrong shard, e.g. after a crash while a shard was being added, is handed over.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class ShardRouter {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    public static final int POINTS_PER_SHARD = 128;
+    private final Administrator ADMIN;
+    // Routed operations hold the read lock; catalogue changes and adding shards hold the write lock
+    private final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+    // Shared by the shards, as they share their units
+    private final UnitDictionary DICTIONARY = new UnitDictionary();
+    private volatile List<StudentEnrollmentSystem> shards;
+    private volatile Ring ring;
+    private File dataDirectory;
+
+    /**
+     * Constructs a ShardRouter with a number of empty shards.
+     *
+     * @param admin The administrator of every shard.
+     * @param shardCount The number of shards, at least one.
+     */
+    public ShardRouter(Administrator admin, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("A router needs at least one shard.");
+        }
+        this.ADMIN = admin;
+        List<StudentEnrollmentSystem> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(newShard());
+        }
+        this.shards = Collections.unmodifiableList(shards);
+        this.ring = new Ring(shardCount);
+    }
+
+    /**
+     * Recovers every shard from its subdirectory of the given directory and journals every mutation made from now
+     * on. If the directory holds more shards than the router has, the router grows to match.
+     *
+     * @param dataDirectory The directory holding a subdirectory for each shard.
+     * @throws IOException If a shard cannot be recovered.
+     */
+    public void restore(File dataDirectory) throws IOException {
+        LOCK.writeLock().lock();
+        try {
+            this.dataDirectory = dataDirectory;
+            int shardCount = shards.size();
+            while (new File(dataDirectory, "shard-" + shardCount).isDirectory()) {
+                shardCount++;
+            }
+            List<StudentEnrollmentSystem> grown = new ArrayList<>(shards);
+            while (grown.size() < shardCount) {
+                grown.add(newShard());
+            }
+            shards = Collections.unmodifiableList(grown);
+            ring = new Ring(shardCount);
+            for (int i = 0; i < shardCount; i++) { // The first shard first, so the others share its units
+                grown.get(i).restore(new File(dataDirectory, "shard-" + i));
+            }
+            settleBatches();
+            reconcileCatalogues();
+            rebalance();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an empty shard and hands over to it the students that now belong to it.
+     *
+     * @return The number of students handed over.
+     * @throws IOException If the new shard cannot be recovered from (or create) its data directory.
+     */
+    public int addShard() throws IOException {
+        LOCK.writeLock().lock();
+        try {
+            StudentEnrollmentSystem shard = newShard();
+            if (dataDirectory != null) {
+                shard.restore(new File(dataDirectory, "shard-" + shards.size()));
+            }
+            for (Unit unit : shards.get(0).getUnits()) { // The same objects, so seats stay counted once
+                shard.insertUnit(unit, false);
+            }
+            List<StudentEnrollmentSystem> grown = new ArrayList<>(shards);
+            grown.add(shard);
+            shards = Collections.unmodifiableList(grown);
+            ring = new Ring(grown.size());
+            return rebalance();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the shards, in the order they were added.
+     *
+     * @return An unmodifiable list of the shards.
+     */
+    public List<StudentEnrollmentSystem> getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the index of the shard a student belongs to.
+     *
+     * @param studentId The ID of the student.
+     * @return The shard index.
+     */
+    public int getShardIndex(String studentId) {
+        return ring.ownerOf(studentId);
+    }
+
+    /**
+     * Returns the unit dictionary the shards share.
+     *
+     * @return The dictionary.
+     */
+    UnitDictionary getDictionary() {
+        return DICTIONARY;
+    }
+
+    /**
+     * Returns the shard a student belongs to.
+     *
+     * @param studentId The ID of the student.
+     * @return The shard.
+     */
+    StudentEnrollmentSystem shardFor(String studentId) {
+        return shards.get(ring.ownerOf(studentId));
+    }
+
+    /**
+     * Returns the unit object every shard should hold for a unit a shard is recovering. The first shard's units
+     * are the shared ones. A shard replaying the removal of a unit and its adding again may so enroll students in,
+     * and remove, the unit the first shard still holds; each shard takes a seat for every student it enrolls and
+     * gives it up for every student the removal unenrolls, so the seats stay counted once.
+     *
+     * @param shard The shard recovering the unit.
+     * @param unit The unit as the shard recovered it.
+     * @return The shared unit.
+     */
+    Unit share(StudentEnrollmentSystem shard, Unit unit) {
+        StudentEnrollmentSystem first = shards.get(0);
+        Unit shared = shard == first ? null : first.getUnit(unit.getCode());
+        return shared == null ? unit : shared;
+    }
+
+    /*
+     * Catalogue changes, made in every shard.
+     */
+
+    /**
+     * Adds a unit to every shard.
+     *
+     * @param unit The unit to be added.
+     * @return SUCCESS, UNIT_EXISTS or PREREQUISITE_CYCLE, as for {@link StudentEnrollmentSystem#createUnit(Unit)}.
+     */
+    public EnrollmentResult createUnit(Unit unit) {
+        LOCK.writeLock().lock();
+        try {
+            EnrollmentResult result = shards.get(0).createUnit(unit);
+            if (result.isSuccess()) {
+                for (StudentEnrollmentSystem shard : shards.subList(1, shards.size())) {
+                    shard.createUnit(unit);
+                }
+            }
+            return result;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a unit from every shard, unenrolling every student enrolled in it.
+     *
+     * @param unitCode The code of the unit to be removed.
+     * @return SUCCESS, or UNIT_NOT_FOUND.
+     */
+    public EnrollmentResult deleteUnit(String unitCode) {
+        LOCK.writeLock().lock();
+        try {
+            EnrollmentResult result = EnrollmentResult.UNIT_NOT_FOUND;
+            for (StudentEnrollmentSystem shard : shards) {
+                if (shard.deleteUnit(unitCode).isSuccess()) {
+                    result = EnrollmentResult.SUCCESS;
+                }
+            }
+            return result;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @return The unit shared by every shard, or null if it does not exist.
+     */
+    public Unit getUnit(String unitCode) {
+        return shards.get(0).getUnit(unitCode);
+    }
+
+    /**
+     * Returns the catalogue.
+     *
+     * @return The units shared by every shard.
+     */
+    public Collection<Unit> getUnits() {
+        return shards.get(0).getUnits();
+    }
+
+    /*
+     * Student operations, routed to the shard of the student.
+     */
+
+    /**
+     * Adds a student to their shard.
+     *
+     * @param student The student to be added.
+     * @return SUCCESS, or STUDENT_EXISTS.
+     */
+    public EnrollmentResult createStudent(Student student) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(student.getId()).createStudent(student);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a student from their shard, releasing their seats.
+     *
+     * @param studentId The ID of the student to be removed.
+     * @return SUCCESS, or STUDENT_NOT_FOUND.
+     */
+    public EnrollmentResult deleteStudent(String studentId) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(studentId).deleteStudent(studentId);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up a student in their shard.
+     *
+     * @param studentId The ID of the student.
+     * @return The student, or null if no student has that ID.
+     */
+    public Student getStudent(String studentId) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(studentId).getStudent(studentId);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of students in every shard.
+     *
+     * @return The number of students.
+     */
+    public long getStudentCount() {
+        long count = 0;
+        for (StudentEnrollmentSystem shard : shards) {
+            count += shard.getStudentCount();
+        }
+        return count;
+    }
+
+    /**
+     * Enrolls a student in a unit, in the student's shard.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return The outcome, as for {@link StudentEnrollmentSystem#enroll(String, String)}.
+     */
+    public EnrollmentResult enroll(String studentId, String unitCode) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(studentId).enroll(studentId, unitCode);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a unit from a student's enrollments, in the student's shard.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return The outcome, as for {@link StudentEnrollmentSystem#drop(String, String)}.
+     */
+    public EnrollmentResult drop(String studentId, String unitCode) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(studentId).drop(studentId, unitCode);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puts a student on a unit's waitlist, in the student's shard.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @param priority The priority, higher first; 0 for the default.
+     * @return The outcome, as for {@link StudentEnrollmentSystem#joinWaitlist(String, String, int)}.
+     */
+    public EnrollmentResult joinWaitlist(String studentId, String unitCode, int priority) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(studentId).joinWaitlist(studentId, unitCode, priority);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes a student off a unit's waitlist, in the student's shard.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return The outcome, as for {@link StudentEnrollmentSystem#leaveWaitlist(String, String)}.
+     */
+    public EnrollmentResult leaveWaitlist(String studentId, String unitCode) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(studentId).leaveWaitlist(studentId, unitCode);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records a unit a student has completed, in the student's shard.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return The outcome, as for {@link StudentEnrollmentSystem#completeUnit(String, String)}.
+     */
+    public EnrollmentResult completeUnit(String studentId, String unitCode) {
+        LOCK.readLock().lock();
+        try {
+            return shardFor(studentId).completeUnit(studentId, unitCode);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Enrolls every student in a batch in their unit, or none of them. The outcome of each enrollment is recorded
+     * in the batch.
+     * <p>
+     * A batch spanning shards is made in two phases. Each shard locks its students and checks its part, in shard
+     * order so that batches cannot deadlock, and the seats the whole batch needs are reserved; if anything is
+     * refused the locks are released and nothing was ever made or journaled. Otherwise every shard makes its part
+     * and journals it as prepared, and once every part is durable each shard journals the batch as committed.
+     * Snapshots wait meanwhile, so after a crash each shard either has its part committed, or every part still in
+     * its shard's journal, and {@link #restore(File)} commits the batch if every shard prepared it and abandons it
+     * otherwise.
+     * </p>
+     *
+     * @param batch The enrollments to make.
+     * @return SUCCESS if every enrollment was made, otherwise the reason the first one listed could not be.
+     */
+    public EnrollmentResult enrollAll(EnrollmentBatch batch) {
+        LOCK.readLock().lock();
+        try {
+            Map<Integer, List<Integer>> parts = new TreeMap<>(); // By shard index, the order their locks are taken
+            for (int i = 0; i < batch.size(); i++) {
+                parts.computeIfAbsent(ring.ownerOf(batch.getStudentId(i)), shard -> new ArrayList<>()).add(i);
+            }
+            if (parts.size() <= 1) {
+                return parts.isEmpty() ? EnrollmentResult.SUCCESS
+                        : shards.get(parts.keySet().iterator().next()).enrollAll(batch);
+            }
+            return enrollAcrossShards(batch, parts);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes a batch spanning shards in two phases; see {@link #enrollAll(EnrollmentBatch)}. Called with the read
+     * lock held, so the catalogue cannot change meanwhile.
+     */
+    private EnrollmentResult enrollAcrossShards(EnrollmentBatch batch, Map<Integer, List<Integer>> parts) {
+        long start = System.nanoTime();
+        EnrollmentResult[] results = new EnrollmentResult[batch.size()];
+        batch.setResults(results);
+        Map<StudentEnrollmentSystem, EnrollmentBatch> subBatches = new LinkedHashMap<>();
+        Map<StudentEnrollmentSystem, int[]> locked = new LinkedHashMap<>();
+        Map<Unit, Integer> seats = new LinkedHashMap<>();
+        List<Unit> reserved = new ArrayList<>();
+        boolean made = false;
+        try {
+            boolean valid = true;
+            for (Map.Entry<Integer, List<Integer>> part : parts.entrySet()) {
+                StudentEnrollmentSystem shard = shards.get(part.getKey());
+                EnrollmentBatch subBatch = new EnrollmentBatch();
+                for (int i : part.getValue()) {
+                    subBatch.add(batch.getStudentId(i), batch.getUnitCode(i));
+                }
+                EnrollmentResult[] subResults = new EnrollmentResult[subBatch.size()];
+                Map<Unit, Integer> subSeats = new LinkedHashMap<>();
+                locked.put(shard, shard.checkPart(subBatch, subResults, subSeats));
+                subBatches.put(shard, subBatch);
+                subSeats.forEach((unit, count) -> seats.merge(unit, count, Integer::sum)); // Units are shared
+                for (int j = 0; j < subResults.length; j++) {
+                    results[part.getValue().get(j)] = subResults[j];
+                    valid &= subResults[j].isSuccess();
+                }
+            }
+            if (!StudentEnrollmentSystem.reserveSeats(batch, results, seats, valid, reserved)) {
+                return finish(batch, subBatches, parts,
+                        Arrays.stream(results).filter(result -> !result.isSuccess()).findFirst().get(), start);
+            }
+            commit(subBatches, parts, locked, seats);
+            made = true;
+            return finish(batch, subBatches, parts, EnrollmentResult.SUCCESS, start);
+        } finally {
+            locked.forEach(StudentEnrollmentSystem::abandonPart); // Every shard's, unless the batch was committed
+            if (!made) { // Promotions may have been turned away while the seats were held
+                reserved.forEach(unit -> shards.get(0).promote(unit));
+            }
+        }
+    }
+
+    /**
+     * Prepares every part of a checked batch whose seats are reserved, then commits it in every shard, releasing
+     * each shard's locks (and removing them from {@code locked}) as it commits. If a part cannot be prepared, the
+     * parts already prepared are undone and journaled as abandoned and the seats released before the error is
+     * thrown. Once any shard has committed, the batch is made whatever fails after, as recovery will finish it.
+     */
+    private void commit(Map<StudentEnrollmentSystem, EnrollmentBatch> subBatches, Map<Integer, List<Integer>> parts,
+                        Map<StudentEnrollmentSystem, int[]> locked, Map<Unit, Integer> seats) {
+        String batchId = UUID.randomUUID().toString();
+        String shardIndices = parts.keySet().stream().map(String::valueOf).collect(Collectors.joining(","));
+        List<StudentEnrollmentSystem> prepared = new ArrayList<>();
+        Map<StudentEnrollmentSystem, Long> sequences = new LinkedHashMap<>();
+        try {
+            try {
+                for (Map.Entry<StudentEnrollmentSystem, EnrollmentBatch> part : subBatches.entrySet()) {
+                    sequences.put(part.getKey(), part.getKey().preparePart(part.getValue(), batchId, shardIndices));
+                    prepared.add(part.getKey());
+                }
+                sequences.forEach(StudentEnrollmentSystem::awaitDurable);
+            } catch (RuntimeException | Error e) {
+                abort(batchId, subBatches, prepared, seats, e);
+                throw e;
+            }
+            for (StudentEnrollmentSystem shard : prepared) {
+                sequences.put(shard, shard.commitPart(subBatches.get(shard), batchId, locked.remove(shard)));
+            }
+            sequences.forEach(StudentEnrollmentSystem::awaitDurable);
+        } finally {
+            prepared.forEach(StudentEnrollmentSystem::releaseSnapshots);
+        }
+    }
+
+    /**
+     * Undoes the prepared parts of a batch that could not be prepared in every shard, journals it as abandoned in
+     * each of them and releases its seats. Errors while doing so are added to the error that stopped the batch.
+     */
+    private void abort(String batchId, Map<StudentEnrollmentSystem, EnrollmentBatch> subBatches,
+                       List<StudentEnrollmentSystem> prepared, Map<Unit, Integer> seats, Throwable cause) {
+        seats.forEach(Unit::releaseSeats);
+        Map<StudentEnrollmentSystem, Long> sequences = new LinkedHashMap<>();
+        for (StudentEnrollmentSystem shard : prepared) {
+            try {
+                sequences.put(shard, shard.abortPart(subBatches.get(shard), batchId));
+            } catch (RuntimeException | Error e) {
+                cause.addSuppressed(e);
+            }
+        }
+        // Durable before snapshots resume, so recovery never finds every part prepared and commits the batch
+        sequences.forEach(StudentEnrollmentSystem::awaitDurable);
+    }
+
+    /**
+     * Copies the outcome of each enrollment into the parts of a batch spanning shards, and records each part in
+     * its shard's metrics and audit log.
+     *
+     * @return The outcome of the batch, for returning to the caller.
+     */
+    private EnrollmentResult finish(EnrollmentBatch batch, Map<StudentEnrollmentSystem, EnrollmentBatch> subBatches,
+                                    Map<Integer, List<Integer>> parts, EnrollmentResult result, long start) {
+        for (Map.Entry<Integer, List<Integer>> part : parts.entrySet()) {
+            StudentEnrollmentSystem shard = shards.get(part.getKey());
+            EnrollmentResult[] subResults = new EnrollmentResult[part.getValue().size()];
+            for (int j = 0; j < subResults.length; j++) {
+                subResults[j] = batch.getResult(part.getValue().get(j));
+            }
+            subBatches.get(shard).setResults(subResults);
+            shard.finishBatch(subBatches.get(shard), result, start);
+        }
+        return result;
+    }
+
+    /**
+     * Takes a snapshot of every shard.
+     *
+     * @throws IOException If a snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        for (StudentEnrollmentSystem shard : shards) {
+            shard.snapshot();
+        }
+    }
+
+    /**
+     * Closes every shard.
+     */
+    public void close() {
+        for (StudentEnrollmentSystem shard : shards) {
+            shard.close();
+        }
+    }
+
+    private StudentEnrollmentSystem newShard() {
+        StudentEnrollmentSystem shard = new StudentEnrollmentSystem(ADMIN);
+        shard.setRouter(this);
+        return shard;
+    }
+
+    /**
+     * Settles the batches spanning shards that a crash left prepared but not committed in some shards. A batch
+     * prepared (or committed) in every shard it spans is committed in the rest; any other was interrupted before
+     * any shard committed it, and is abandoned.
+     */
+    private void settleBatches() {
+        Map<StudentEnrollmentSystem, Map<String, Boolean>> decisions = new LinkedHashMap<>();
+        for (StudentEnrollmentSystem shard : shards) { // Decided before any shard settles, as settling forgets them
+            Map<String, Boolean> decided = new LinkedHashMap<>();
+            shard.getPreparedBatches().forEach((batchId, fields) -> {
+                boolean everywhere = true;
+                for (String index : fields[2].split(",")) {
+                    int i = Integer.parseInt(index);
+                    everywhere &= i < shards.size() && shards.get(i).hasPrepared(batchId);
+                }
+                decided.put(batchId, everywhere);
+            });
+            decisions.put(shard, decided);
+        }
+        decisions.forEach((shard, decided) -> {
+            decided.forEach(shard::settleBatch);
+            shard.forgetBatches();
+        });
+    }
+
+    /**
+     * Makes every shard hold the same units as the first, after a crash part-way through a catalogue change.
+     */
+    private void reconcileCatalogues() {
+        StudentEnrollmentSystem first = shards.get(0);
+        for (StudentEnrollmentSystem shard : shards.subList(1, shards.size())) {
+            for (Unit unit : new ArrayList<>(shard.getUnits())) {
+                if (first.getUnit(unit.getCode()) != unit) {
+                    shard.deleteUnit(unit.getCode(), true);
+                }
+            }
+            for (Unit unit : first.getUnits()) {
+                if (shard.getUnit(unit.getCode()) == null) {
+                    shard.insertUnit(unit, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands every student held by a shard other than their own over to their own shard, then offers any seats
+     * freed meanwhile to waiting students. Called with the write lock held and the ring already changed.
+     *
+     * @return The number of students handed over.
+     */
+    private int rebalance() {
+        // Waitlist places are kept on the shared units, but journaled by the shard holding the student
+        Map<String, Map<Unit, Integer>> waiting = new HashMap<>();
+        for (Unit unit : getUnits()) {
+            for (Waitlist.Entry entry : unit.getWaitlist().entries()) {
+                waiting.computeIfAbsent(entry.getStudentId(), studentId -> new HashMap<>())
+                        .put(unit, entry.getPriority());
+            }
+        }
+        int moved = 0;
+        for (StudentEnrollmentSystem shard : shards) {
+            for (String studentId : new ArrayList<>(shard.getStudents().keySet())) {
+                StudentEnrollmentSystem owner = shardFor(studentId);
+                if (owner != shard && shard.handOver(studentId, owner,
+                        waiting.getOrDefault(studentId, Collections.emptyMap()))) {
+                    moved++;
+                }
+            }
+        }
+        for (StudentEnrollmentSystem shard : shards) {
+            shard.syncImported(); // Makes the hand-overs durable
+        }
+        shards.get(0).promoteWaiting();
+        return moved;
+    }
+
+    /**
+     * The consistent hash ring: each shard's points, sorted, with the shard owning each.
+     */
+    private static final class Ring {
+        final long[] POINTS;
+        final int[] OWNERS;
+
+        Ring(int shardCount) {
+            long[][] points = new long[shardCount * POINTS_PER_SHARD][];
+            for (int shard = 0; shard < shardCount; shard++) {
+                for (int point = 0; point < POINTS_PER_SHARD; point++) {
+                    points[shard * POINTS_PER_SHARD + point] = new long[]{hash("shard-" + shard + "#" + point), shard};
+                }
+            }
+            Arrays.sort(points, (a, b) -> Long.compare(a[0], b[0]));
+            this.POINTS = new long[points.length];
+            this.OWNERS = new int[points.length];
+            for (int i = 0; i < points.length; i++) {
+                POINTS[i] = points[i][0];
+                OWNERS[i] = (int) points[i][1];
+            }
+        }
+
+        int ownerOf(String studentId) {
+            int index = Arrays.binarySearch(POINTS, hash(studentId));
+            if (index < 0) {
+                index = -index - 1; // The first point after the hash
+            }
+            return OWNERS[index == POINTS.length ? 0 : index];
+        }
+
+        /**
+         * Hashes a string to 64 bits: FNV-1a over its UTF-8 bytes, then the MurmurHash3 finalizer to spread them.
+         */
+        static long hash(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            return hash ^ (hash >>> 33);
+        }
+    }
+}
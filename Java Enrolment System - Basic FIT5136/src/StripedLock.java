@@ -0,0 +1,104 @@
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StripedLock - A fixed pool of locks shared between keys by hash, giving per-key mutual exclusion without
+ * allocating a lock for every key or serializing unrelated keys behind a single global lock.
+ * <p>
+ * Two keys may share a stripe, so holding a stripe only ever guarantees exclusion for the keys that map to it.
+ * When several stripes are needed at once, {@link #lockAll(Collection)} acquires them in ascending stripe order,
+ * which keeps multi-key operations free of deadlocks.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class StripedLock {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final ReentrantLock[] LOCKS;
+
+    /**
+     * Constructs a StripedLock with at least the given number of stripes (rounded up to a power of two).
+     *
+     * @param stripes The minimum number of stripes.
+     */
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.LOCKS = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the stripe a key maps to.
+     *
+     * @param key The key.
+     * @return The stripe index.
+     */
+    public int stripeOf(Object key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16); // Spread the high bits, as HashMap does
+        return hash & (LOCKS.length - 1);
+    }
+
+    /**
+     * Acquires the lock for a key.
+     *
+     * @param key The key.
+     */
+    public void lock(Object key) {
+        LOCKS[stripeOf(key)].lock();
+    }
+
+    /**
+     * Releases the lock for a key.
+     *
+     * @param key The key.
+     */
+    public void unlock(Object key) {
+        LOCKS[stripeOf(key)].unlock();
+    }
+
+    /**
+     * Acquires the locks for several keys in ascending stripe order, each stripe once.
+     *
+     * @param keys The keys.
+     * @return The stripes acquired, to be passed to {@link #unlockAll(int[])}.
+     */
+    public int[] lockAll(Collection<?> keys) {
+        int[] stripes = keys.stream().mapToInt(this::stripeOf).sorted().distinct().toArray();
+        for (int stripe : stripes) {
+            LOCKS[stripe].lock();
+        }
+        return stripes;
+    }
+
+    /**
+     * Acquires every stripe in ascending order, excluding all keys at once.
+     *
+     * @return The stripes acquired, to be passed to {@link #unlockAll(int[])}.
+     */
+    public int[] lockAll() {
+        int[] stripes = new int[LOCKS.length];
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            LOCKS[stripe].lock();
+            stripes[stripe] = stripe;
+        }
+        return stripes;
+    }
+
+    /**
+     * Releases stripes acquired by {@link #lockAll(Collection)} or {@link #lockAll()}.
+     *
+     * @param stripes The stripes to release.
+     */
+    public void unlockAll(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            LOCKS[stripes[i]].unlock();
+        }
+    }
+}
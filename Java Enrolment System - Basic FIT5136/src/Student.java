@@ -1,4 +1,7 @@
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -10,6 +13,20 @@ import java.util.Set;
  * </p>
  *
  * <p>
+ * Enrollments are stored as a small array of unit IDs (see {@link UnitDictionary}) rather than a set of units: a
+ * student with no units shares one empty array and a full load of 4 units takes 32 bytes. The array is never
+ * modified in place but replaced on every change, which is made under the student's lock in the enrollment system,
+ * so readers never lock and always see a consistent set of units. A unit's ID is only freed once no student holds
+ * it, so IDs read from an array that is still the student's current one decode to the units they stand for. A running total of the units' credit points is
+ * updated with it, so a {@link LoadPolicy} can check the student's load without adding them up.
+ * </p>
+ *
+ * <p>
+ * A student created by a {@link StudentColumnStore} is a flyweight: only its ID is kept on the heap and the other
+ * details are read from the store's off-heap columns when asked for.
+ * </p>
+ *
+ * <p>
  * @author Antoni Erdeg - antoni.erdeg@monash.edu
  * @version: 1.0
  * </p>
@@ -22,7 +39,15 @@ public abstract class Student {
     private final String ADDRESS;
     private final String PHONE;
     private final String EMAIL;
-    private final Set<Unit> UNITS;
+    // Set for flyweight students whose details are held off-heap, in which case the fields above are null
+    private final StudentColumnStore STORE;
+    private final int ROW;
+    private static final int[] NO_UNITS = new int[0];
+    private volatile int[] unitIds = NO_UNITS;
+    // The dictionary of the catalogue the student's units are in, set with their first unit
+    private volatile UnitDictionary dictionary;
+    private volatile int creditPoints;
+    private StudentEnrollmentSystem enrollmentSystem;
 
     /**
      * Constructs a Student with the specified details.
@@ -39,7 +64,65 @@ public abstract class Student {
         this.ADDRESS = address;
         this.PHONE = phone;
         this.EMAIL = email;
-        this.UNITS = new HashSet<>();
+        this.STORE = null;
+        this.ROW = -1;
+    }
+
+    /**
+     * Constructs a flyweight Student whose details are read from a column store.
+     *
+     * @param id The unique identifier of the student.
+     * @param store The store holding the student's details.
+     * @param row The student's row in the store.
+     */
+    protected Student(String id, StudentColumnStore store, int row) {
+        this.ID = id;
+        this.NAME = null;
+        this.ADDRESS = null;
+        this.PHONE = null;
+        this.EMAIL = null;
+        this.STORE = store;
+        this.ROW = row;
+    }
+
+    /**
+     * Creates a full-time or part-time student from its type code.
+     *
+     * @param type 'P' for a part-time student, anything else for a full-time student.
+     * @param id The unique identifier of the student.
+     * @param name The name of the student.
+     * @param address The address of the student.
+     * @param phone The phone number of the student.
+     * @param email The email address of the student.
+     * @param courseAdvisor The course advisor of a part-time student, may be null.
+     * @return The new student.
+     */
+    public static Student of(char type, String id, String name, String address, String phone, String email,
+                             String courseAdvisor) {
+        if (type == 'P') {
+            PartTimeStudent student = new PartTimeStudent(id, name, address, phone, email);
+            student.setCourseAdvisor(courseAdvisor);
+            return student;
+        }
+        return new FullTimeStudent(id, name, address, phone, email);
+    }
+
+    /**
+     * Returns the column store holding the student's details.
+     *
+     * @return The store, or null if the details are held on the heap.
+     */
+    StudentColumnStore getStore() {
+        return STORE;
+    }
+
+    /**
+     * Returns the student's row in its column store.
+     *
+     * @return The row, or -1 if the details are held on the heap.
+     */
+    int getRow() {
+        return ROW;
     }
 
     /**
@@ -51,31 +134,89 @@ public abstract class Student {
         return ID;
     }
 
+    /**
+     * Returns the address of the student.
+     *
+     * @return The address of the student.
+     */
+    public String getAddress() {
+        return STORE == null ? ADDRESS : STORE.get(ROW, StudentColumnStore.ADDRESS);
+    }
+
+    /**
+     * Returns the phone number of the student.
+     *
+     * @return The phone number of the student.
+     */
+    public String getPhone() {
+        return STORE == null ? PHONE : STORE.get(ROW, StudentColumnStore.PHONE);
+    }
+
+    /**
+     * Returns the email address of the student.
+     *
+     * @return The email address of the student.
+     */
+    public String getEmail() {
+        return STORE == null ? EMAIL : STORE.get(ROW, StudentColumnStore.EMAIL);
+    }
+
+    /**
+     * Sets the enrollment system this student is registered with, so that changes to the student's units
+     * go through the system's locking, indexes and journal.
+     *
+     * @param ses The student enrollment system instance, or null once the student is removed.
+     */
+    void setEnrollmentSystem(StudentEnrollmentSystem ses) {
+        this.enrollmentSystem = ses;
+    }
+
     /**
      * Adds a unit to the student's list of units if not already enrolled.
      * <p>
-     * Checks if the unit is available and if the student is not already enrolled in the maximum number of units (4).
+     * Checks if the unit is available and if the student's load policy allows another unit.
      * If the student is already enrolled in the unit, a message is displayed.
-     * Otherwise, the unit is added to the student's list of units.
+     * Otherwise, the unit is added to the student's list of units. The checks and the enrollment are made
+     * atomically by the enrollment system, so concurrent requests cannot over-enroll the student.
      * </p>
      *
      * @param unit The unit to be added.
      * @param ses The student enrollment system instance.
+     * @return True if the student was enrolled in the unit.
      */
-    public void addUnit(Unit unit, StudentEnrollmentSystem ses) {
-        if (ses.isUnitAvailable(unit) && getUnits().size() < 4) {
-            if (this.getUnits().contains(unit)) {
-                System.out.println("\nUnit '" + unit.toString() + "' - Student is already enrolled.");
-            }
-            else {
-                getUnits().add(unit);
+    public boolean addUnit(Unit unit, StudentEnrollmentSystem ses) {
+        EnrollmentResult result = ses.enrol(this, unit, true);
+        ses.audit(EnrollmentMetrics.Operation.ENROLL, getId(), unit.getCode(), result);
+        switch (result) {
+            case SUCCESS:
                 System.out.println("\nStudent '"+ this.toString() + "' is now enrolled in \n'" + unit.toString() + "'.");
-            }
-        } else if (!ses.isUnitAvailable(unit)) {
-            System.out.println("\nUnit is not available.");
-        } else {
-            System.out.println("\nCannot enroll in more than 4 units.");
+                return true;
+            case ALREADY_ENROLLED:
+                System.out.println("\nUnit '" + unit.toString() + "' - Student is already enrolled.");
+                break;
+            case UNIT_LIMIT_REACHED:
+            case CREDIT_LIMIT_REACHED:
+                System.out.println("\nCannot enroll in more than " + ses.getLoadPolicy(this) + ".");
+                break;
+            case UNIT_FULL:
+                System.out.println("\nUnit '" + unit.getCode() + "' is full.");
+                break;
+            case TIMETABLE_CLASH:
+                System.out.println("\nUnit '" + unit.getCode() + "' clashes with a class in your timetable.");
+                break;
+            case MISSING_PREREQUISITES:
+            case MISSING_COREQUISITES:
+            case PROHIBITED_UNIT:
+            case ALREADY_COMPLETED:
+                System.out.println("\n" + StudentEnrollmentSystem.describe(result, getId(), unit.getCode()));
+                break;
+            case STUDENT_NOT_FOUND:
+                System.out.println("\nStudent is not registered with the enrollment system.");
+                break;
+            default:
+                System.out.println("\nUnit is not available.");
         }
+        return false;
     }
 
     /**
@@ -89,7 +230,15 @@ public abstract class Student {
      */
     public void removeUnit(String unitName) {
         // Check if the unit is in the list and remove it
-        boolean removed = UNITS.removeIf(unit -> unit.getCode().equals(unitName));
+        StudentEnrollmentSystem ses = enrollmentSystem;
+        boolean removed;
+        if (ses != null) {
+            EnrollmentResult result = ses.withdraw(this, unitName, true);
+            ses.audit(EnrollmentMetrics.Operation.DROP, getId(), unitName, result);
+            removed = result == EnrollmentResult.SUCCESS;
+        } else {
+            removed = removeEnrolment(findUnit(unitName));
+        }
         if (removed) {
             System.out.println("\nUnit '"+ unitName +"' removed successfully.");
         } else {
@@ -105,10 +254,10 @@ public abstract class Student {
      * </p>
      */
     public void listUnits() {
-        if (UNITS.isEmpty()) {
+        if (unitIds.length == 0) {
             System.out.println("No units enrolled.");
         } else {
-            for (Unit unit : UNITS) {
+            for (Unit unit : getUnits()) {
                 System.out.println(unit);
             }
         }
@@ -116,11 +265,158 @@ public abstract class Student {
 
     /**
      * Returns the set of units the student is enrolled in.
+     * <p>
+     * The set is a read-only view decoded from the student's unit IDs; lookups compare units by code. Iterating it
+     * sees the units as they were when iteration started. Enrollments are changed through the enrollment system.
+     * </p>
      *
      * @return The set of enrolled units.
      */
     public Set<Unit> getUnits() {
-        return UNITS;
+        return new AbstractSet<Unit>() {
+            @Override
+            public Iterator<Unit> iterator() {
+                Unit[] units = getUnitArray();
+                return new Iterator<Unit>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < units.length;
+                    }
+
+                    @Override
+                    public Unit next() {
+                        if (next >= units.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return units[next++];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return unitIds.length;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of units the student is enrolled in.
+     *
+     * @return The number of enrolled units.
+     */
+    public int getUnitCount() {
+        return unitIds.length;
+    }
+
+    /**
+     * Returns the IDs of the units the student is enrolled in, as encoded by {@link UnitDictionary}. The array is
+     * replaced rather than modified when the enrollments change, so callers may keep it but must not modify it.
+     *
+     * @return The unit IDs.
+     */
+    int[] getUnitIds() {
+        return unitIds;
+    }
+
+    /**
+     * Returns the units the student is enrolled in, all decoded from the same array of unit IDs.
+     *
+     * @return A new array of the units.
+     */
+    Unit[] getUnitArray() {
+        while (true) {
+            int[] ids = unitIds;
+            Unit[] units = new Unit[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                units[i] = dictionary.get(ids[i]);
+            }
+            if (unitIds == ids) { // Still held, so none of the IDs was freed while decoding
+                return units;
+            }
+        }
+    }
+
+    /**
+     * Returns the total credit points of the units the student is enrolled in.
+     *
+     * @return The credit points.
+     */
+    public int getCreditPoints() {
+        return creditPoints;
+    }
+
+    /**
+     * Finds the unit the student is enrolled in with the given code.
+     *
+     * @param unitCode The code of the unit.
+     * @return The enrolled unit, or null if the student is not enrolled in a unit with that code.
+     */
+    public Unit findUnit(String unitCode) {
+        while (true) {
+            int[] ids = unitIds;
+            Unit found = null;
+            for (int i = 0; i < ids.length && found == null; i++) {
+                Unit unit = dictionary.get(ids[i]);
+                if (unit != null && unit.getCode().equals(unitCode)) {
+                    found = unit;
+                }
+            }
+            if (unitIds == ids) { // As for getUnitArray()
+                return found;
+            }
+        }
+    }
+
+    /**
+     * Records an enrollment in a unit, unless the student is already enrolled in a unit with the same code. Called
+     * by the enrollment system under the student's lock, or before the student is registered with it.
+     *
+     * @param unit The unit.
+     * @return True if the enrollment was recorded.
+     */
+    boolean addEnrolment(Unit unit) {
+        if (findUnit(unit.getCode()) != null) {
+            return false;
+        }
+        int[] ids = Arrays.copyOf(unitIds, unitIds.length + 1);
+        ids[ids.length - 1] = unit.getId();
+        dictionary = unit.getDictionary();
+        unitIds = ids;
+        creditPoints += unit.getCreditPoints();
+        return true;
+    }
+
+    /**
+     * Removes the enrollment in exactly this unit object. Called by the enrollment system under the student's lock.
+     *
+     * @param unit The unit, may be null.
+     * @return True if the student was enrolled in the unit.
+     */
+    boolean removeEnrolment(Unit unit) {
+        int[] ids = unitIds;
+        for (int i = 0; unit != null && i < ids.length; i++) {
+            if (ids[i] == unit.getId()) {
+                int[] remaining = ids.length == 1 ? NO_UNITS : new int[ids.length - 1];
+                System.arraycopy(ids, 0, remaining, 0, i);
+                System.arraycopy(ids, i + 1, remaining, i, ids.length - i - 1);
+                unitIds = remaining;
+                creditPoints -= unit.getCreditPoints();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes every enrollment, once the student has left the system and given up their seats, so that they no
+     * longer hold their units' IDs.
+     */
+    void clearEnrolments() {
+        unitIds = NO_UNITS;
+        creditPoints = 0;
     }
 
     /**
@@ -129,11 +425,11 @@ public abstract class Student {
      * @return The name of the student.
      */
     public String getName() {
-        return NAME;
+        return STORE == null ? NAME : STORE.get(ROW, StudentColumnStore.NAME);
     }
 
     @Override
     public String toString() {
-        return ID + " - "+ NAME;
+        return ID + " - "+ getName();
     }
 }
@@ -0,0 +1,185 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * StudentColumnStore - An optional off-heap storage engine for student details.
+ * <p>
+ * Each text field of a student (name, address, phone, email and course advisor) is a column of UTF-8 values appended
+ * to direct (off-heap) byte buffers, and every student row holds the position of its value in each column in an
+ * off-heap row index. The {@link Student} objects created by the store are flyweights that keep only their ID, row
+ * number and enrollments on the heap and decode the other fields on demand, so millions of students cost the
+ * garbage collector a few small objects each instead of five strings with their headers and UTF-16 characters.
+ * </p>
+ *
+ * <p>
+ * Appends are serialized; reads never lock, because a value's bytes and its row index entry are written before the
+ * student that refers to them is published. Values are never overwritten in place: changing a field appends the new
+ * value and repoints the row, and the space of replaced values and removed students is reclaimed when the system
+ * is next restored from its snapshot.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class StudentColumnStore {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    public static final int NAME = 0;
+    public static final int ADDRESS = 1;
+    public static final int PHONE = 2;
+    public static final int EMAIL = 3;
+    public static final int COURSE_ADVISOR = 4;
+    private static final int COLUMNS = 5;
+    // Chunks are allocated as the store grows, so an empty store reserves no off-heap memory up front
+    private static final int CHUNK_BITS = 22;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int ROWS_PER_INDEX_CHUNK = CHUNK_SIZE / (COLUMNS * Long.BYTES);
+    private static final long NULL_VALUE = -1;
+    private final Object APPEND_LOCK = new Object();
+    private final Column[] DATA = new Column[COLUMNS];
+    // Replaced, never modified in place, when a chunk is added, so readers can use it without locking
+    private volatile ByteBuffer[] index = new ByteBuffer[0];
+    private int rows;
+
+    /**
+     * Constructs an empty StudentColumnStore.
+     */
+    public StudentColumnStore() {
+        for (int i = 0; i < COLUMNS; i++) {
+            DATA[i] = new Column();
+        }
+    }
+
+    /**
+     * Stores a student's details and returns a flyweight student reading them from the store.
+     *
+     * @param type 'P' for a part-time student, anything else for a full-time student.
+     * @param id The unique identifier of the student.
+     * @param name The name of the student.
+     * @param address The address of the student.
+     * @param phone The phone number of the student.
+     * @param email The email address of the student.
+     * @param courseAdvisor The course advisor of a part-time student, may be null.
+     * @return The new student.
+     */
+    public Student create(char type, String id, String name, String address, String phone, String email,
+                          String courseAdvisor) {
+        int row;
+        synchronized (APPEND_LOCK) {
+            row = rows;
+            if (row % ROWS_PER_INDEX_CHUNK == 0) {
+                ByteBuffer[] grown = Arrays.copyOf(index, index.length + 1);
+                grown[index.length] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+                index = grown;
+            }
+            String[] values = {name, address, phone, email, type == 'P' ? courseAdvisor : null};
+            for (int column = 0; column < COLUMNS; column++) {
+                putPosition(row, column, DATA[column].append(values[column]));
+            }
+            rows++;
+        }
+        return type == 'P' ? new PartTimeStudent(id, this, row) : new FullTimeStudent(id, this, row);
+    }
+
+    /**
+     * Reads a field of a student.
+     *
+     * @param row The student's row.
+     * @param column The field, e.g. {@link #NAME}.
+     * @return The value, may be null.
+     */
+    public String get(int row, int column) {
+        long position = index[row / ROWS_PER_INDEX_CHUNK].getLong(indexOffset(row, column));
+        return DATA[column].read(position);
+    }
+
+    /**
+     * Changes a field of a student. The old value's space is not reused.
+     *
+     * @param row The student's row.
+     * @param column The field, e.g. {@link #COURSE_ADVISOR}.
+     * @param value The new value, may be null.
+     */
+    public void set(int row, int column, String value) {
+        synchronized (APPEND_LOCK) {
+            putPosition(row, column, DATA[column].append(value));
+        }
+    }
+
+    /**
+     * Returns the number of student rows stored, including removed students not yet reclaimed.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        synchronized (APPEND_LOCK) {
+            return rows;
+        }
+    }
+
+    /**
+     * Returns the off-heap memory reserved by the store.
+     *
+     * @return The number of bytes of direct buffers allocated.
+     */
+    public long getOffHeapBytes() {
+        long chunks = index.length;
+        for (Column column : DATA) {
+            chunks += column.chunks.length;
+        }
+        return chunks * CHUNK_SIZE;
+    }
+
+    private void putPosition(int row, int column, long position) {
+        index[row / ROWS_PER_INDEX_CHUNK].putLong(indexOffset(row, column), position);
+    }
+
+    private static int indexOffset(int row, int column) {
+        return (row % ROWS_PER_INDEX_CHUNK * COLUMNS + column) * Long.BYTES;
+    }
+
+    /**
+     * A column of values, each stored as a 2-byte length followed by its UTF-8 bytes and never split across chunks.
+     * A value's position is its chunk number in the high bits and its offset within the chunk in the low bits.
+     */
+    private static class Column {
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+        private int used = CHUNK_SIZE; // Forces a chunk to be allocated by the first append
+
+        private long append(String value) {
+            if (value == null) {
+                return NULL_VALUE;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Short.MAX_VALUE * 2 + 1) {
+                throw new IllegalArgumentException("Student details are limited to 65535 bytes.");
+            }
+            if (used + 2 + bytes.length > CHUNK_SIZE) {
+                ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                grown[chunks.length] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+                chunks = grown;
+                used = 0;
+            }
+            ByteBuffer chunk = chunks[chunks.length - 1];
+            long position = ((long) (chunks.length - 1) << CHUNK_BITS) | used;
+            chunk.putShort(used, (short) bytes.length);
+            chunk.put(used + 2, bytes);
+            used += 2 + bytes.length;
+            return position;
+        }
+
+        private String read(long position) {
+            if (position == NULL_VALUE) {
+                return null;
+            }
+            ByteBuffer chunk = chunks[(int) (position >>> CHUNK_BITS)];
+            int offset = (int) (position & (CHUNK_SIZE - 1));
+            byte[] bytes = new byte[Short.toUnsignedInt(chunk.getShort(offset))];
+            chunk.get(offset + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
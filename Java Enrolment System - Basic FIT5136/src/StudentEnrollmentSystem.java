@@ -1,4 +1,14 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Student Enrollment System - Manages students and units within the Student Enrollment System and provides a menu-driven interface.
@@ -9,6 +19,12 @@ import java.util.*;
  * </p>
  *
  * <p>
+ * The menus are a thin console client over headless operations ({@link #enroll(String, String)},
+ * {@link #drop(String, String)} and friends) that never prompt or print and report their outcome as an
+ * {@link EnrollmentResult}, so the system can also be driven programmatically.
+ * </p>
+ *
+ * <p>
  * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
  * @version: 1.0
  * </p>
@@ -16,204 +32,2492 @@ import java.util.*;
 public class StudentEnrollmentSystem {
     // All final variables are constants and should be upper case.
     // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
-    private final Map<String, Student> STUDENTS = new HashMap<>();
-    private final Map<String, Unit> UNITS = new HashMap<>();
+    private final Map<String, Student> STUDENTS = new ConcurrentHashMap<>();
+    private final Map<String, Unit> UNITS = new ConcurrentHashMap<>();
+    private final UnitRosterIndex ROSTERS = new UnitRosterIndex();
+    // Requisites of the catalogue's units, and the units each student has completed (only those with any)
+    private final PrerequisiteGraph PREREQUISITES = new PrerequisiteGraph();
+    private final Map<String, CompletedUnits> COMPLETED = new ConcurrentHashMap<>();
+    // The keys of STUDENTS and UNITS in order, so listings can be paged from a cursor with a single seek
+    private final NavigableSet<String> STUDENT_ORDER = new ConcurrentSkipListSet<>(EnrollmentSnapshot::compareIds);
+    private final NavigableSet<String> UNIT_ORDER = new ConcurrentSkipListSet<>(EnrollmentSnapshot::compareIds);
+    private static final int PAGE_SIZE = 20;
+    private final EnrollmentMetrics METRICS = new EnrollmentMetrics();
+    // Rotated at this size, keeping this many old files
+    private static final long AUDIT_FILE_BYTES = 64L << 20;
+    private static final int AUDIT_FILES = 5;
+    private volatile AuditLog auditLog;
+    // Change log segments roll at this size, keeping this many
+    private static final long CHANGE_SEGMENT_BYTES = 64L << 20;
+    private static final int CHANGE_SEGMENTS = 16;
+    private volatile ChangeLog changeLog;
+    // Every change to a student (registration, removal, enrollments) happens under that student's stripe
+    private final StripedLock STUDENT_LOCKS = new StripedLock(1024);
+    private final ReentrantLock SNAPSHOT_LOCK = new ReentrantLock();
+    // The latest point-in-time view, or null until the first one is asked for
+    private final AtomicReference<EnrollmentView> VIEW = new AtomicReference<>();
+    // Load policies by student type, and the policy of any other type
+    private final Map<Class<? extends Student>, LoadPolicy> LOAD_POLICIES = new ConcurrentHashMap<>(Map.of(
+            FullTimeStudent.class, LoadPolicy.of(4, LoadPolicy.UNLIMITED),
+            PartTimeStudent.class, LoadPolicy.of(4, 18)));
+    private static final LoadPolicy DEFAULT_LOAD_POLICY = LoadPolicy.of(4, LoadPolicy.UNLIMITED);
     private final Scanner SCANNER = new Scanner(System.in);
     private Administrator admin;
+    // Minimum number of journal records after which a compacting snapshot is taken
+    private static final long SNAPSHOT_INTERVAL = 10_000;
+    private volatile EnrollmentJournal journal;
+    private EnrollmentSnapshot image;
+    private File dataDirectory;
+    // Built on the first student search, then kept up to date as students are registered and removed
+    private volatile SearchIndex studentSearch;
+    // The router this system is a shard of, or null when it holds every student itself
+    private volatile ShardRouter router;
+    // Encodes the units in the catalogue for students' enrollments; shared by the shards of a router
+    private volatile UnitDictionary dictionary = new UnitDictionary();
+    private final SearchIndex UNIT_SEARCH = new SearchIndex();
+    private static final int SEARCH_LIMIT = 20;
+    // Optional off-heap storage for student details; null keeps them on the heap
+    private StudentColumnStore columnStore;
+    // True while replaying the journal, when limits were already checked before the records were written
+    private boolean recovering;
+    // Batches spanning shards replayed from the journal, prepared but not yet committed, and committed
+    private final Map<String, String[]> PREPARED_BATCHES = new HashMap<>();
+    private final Set<String> COMMITTED_BATCHES = new HashSet<>();
+
+    /**
+     * Initializes the Student Enrollment System with an administrator.
+     *
+     * @param admin The administrator managing the system.
+     */
+    public StudentEnrollmentSystem(Administrator admin) {
+        this.admin = admin;
+    }
+
+    /**
+     * Displays a standard header before each menu.
+     *
+     * @param pageName The name of the current page to display in the header.
+     */
+    public void displayHeader(String pageName) {
+        String header = "\n---------------------------------\n" +
+                "|         FIT5136 Demo           |\n" +
+                "|    Student Enrolment System    |\n" +
+                "---------------------------------\n" +
+                " -- Current Page: " + pageName + " --";
+
+        System.out.println(header);
+    }
+
+    /**
+     * Retrieves the map of Students in the system.
+     *
+     * @return A map of student IDs to Student objects.
+     */
+    public Map<String, Student> getStudents() {
+        hydrate();
+        return STUDENTS;
+    }
+
+    /**
+     * Retrieves a single student by their ID, loading it from the snapshot if it has not been needed before.
+     *
+     * @param studentId The ID of the student.
+     * @return The student, or null if no student has that ID.
+     */
+    public Student getStudent(String studentId) {
+        Student student = STUDENTS.get(studentId);
+        if (student != null || image == null) {
+            return student;
+        }
+        synchronized (image) { // Only one thread may materialize a given record
+            student = STUDENTS.get(studentId);
+            if (student == null) {
+                student = image.materialize(studentId, UNITS, columnStore);
+                if (student != null) {
+                    register(student);
+                }
+            }
+        }
+        return student;
+    }
+
+    /**
+     * Stores the details of every student the system creates from now on (on recovery, import or through
+     * {@link #newStudent}) off-heap in a {@link StudentColumnStore}, keeping only lightweight flyweight students on
+     * the heap. Must be called before the system is restored or holds any students.
+     *
+     * @throws IllegalStateException If the system already holds students.
+     */
+    public void enableColumnStore() {
+        if (getStudentCount() > 0) {
+            throw new IllegalStateException("The column store must be enabled before any students are added.");
+        }
+        columnStore = new StudentColumnStore();
+    }
+
+    /**
+     * Returns the column store holding student details off-heap, if enabled.
+     *
+     * @return The column store, or null if student details are held on the heap.
+     */
+    public StudentColumnStore getColumnStore() {
+        return columnStore;
+    }
+
+    /**
+     * Creates a full-time or part-time student using the system's storage for student details: off-heap if the
+     * column store is enabled, otherwise on the heap. The student still has to be added to the system.
+     *
+     * @param type 'P' for a part-time student, anything else for a full-time student.
+     * @param id The unique identifier of the student.
+     * @param name The name of the student.
+     * @param address The address of the student.
+     * @param phone The phone number of the student.
+     * @param email The email address of the student.
+     * @param courseAdvisor The course advisor of a part-time student, may be null.
+     * @return The new student.
+     */
+    public Student newStudent(char type, String id, String name, String address, String phone, String email,
+                              String courseAdvisor) {
+        return columnStore == null ? Student.of(type, id, name, address, phone, email, courseAdvisor)
+                : columnStore.create(type, id, name, address, phone, email, courseAdvisor);
+    }
+
+    /**
+     * Returns the number of students in the system without loading them from the snapshot.
+     *
+     * @return The number of students.
+     */
+    public int getStudentCount() {
+        return STUDENTS.size() + (image == null ? 0 : image.getUnmaterializedCount());
+    }
+
+    /**
+     * Adds a student to the system if the student ID does not already exist.
+     *
+     * @param student The student to be added.
+     */
+    public void addStudent(Student student) {
+        String studentId = student.getId();
+        if (createStudent(student) == EnrollmentResult.STUDENT_EXISTS) {
+            System.out.println("Error: Student ID '" + studentId + "' already exists. Cannot add new student with this ID.");
+        } else {
+            System.out.println("Student '" + studentId + "' added successfully.");
+        }
+    }
+
+
+    /**
+     * Removes a student from the system by their ID if they exist.
+     *
+     * @param studentId The ID of the student to be removed.
+     */
+    public void removeStudent(String studentId) {
+        if (deleteStudent(studentId).isSuccess()) {
+            System.out.println("Student with ID '" + studentId + "' has been removed.");
+        } else {
+            System.out.println("Unable to remove student with ID '" + studentId + "' as they do not exist.");
+        }
+    }
+
+    /**
+     * Checks if a student exists in the system by their ID.
+     *
+     * @param studentId The ID of the student.
+     * @return True if the student exists, false otherwise.
+     */
+    public boolean studentExists(String studentId) {
+        return getStudent(studentId) != null;
+    }
+
+    /**
+     * Adds a unit to the system if the unit name does not already exist.
+     *
+     * @param unit The unit to be added.
+     */
+    public void addUnit(Unit unit) {
+        String unitName = unit.getCode();
+        EnrollmentResult result = createUnit(unit);
+        if (result == EnrollmentResult.UNIT_EXISTS) {
+            System.out.println("Error: Unit name '" + unitName + "' already exists. Cannot add new unit with this name.");
+        } else if (result == EnrollmentResult.PREREQUISITE_CYCLE) {
+            System.out.println("Error: A prerequisite of unit '" + unitName + "' requires it. Cannot add the unit.");
+        } else {
+            System.out.println("Unit '" + unitName + "' added successfully.");
+        }
+    }
+
+    /**
+     * Removes a unit from the system by its code if it exists, also removing it from every student enrolled in it.
+     *
+     * @param unitCode The code of the unit to be removed.
+     */
+    public void removeUnit(String unitCode) {
+        int unenrolled = getClassSize(unitCode);
+        if (deleteUnit(unitCode).isSuccess()) {
+            System.out.println("Unit '" + unitCode + "' removed successfully (" + unenrolled + " student(s) unenrolled).");
+        } else {
+            System.out.println("Error: Unit '" + unitCode + "' does not exist. Cannot remove a non-existent unit.");
+        }
+    }
+
+
+    /**
+     * Returns the number of students enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @return The class size.
+     */
+    public int getClassSize(String unitCode) {
+        return ROSTERS.size(unitCode) + (image == null ? 0 : image.getUnmaterializedEnrolments(unitCode));
+    }
+
+    /**
+     * Returns the IDs of the students enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @return An unmodifiable view of the unit's roster.
+     */
+    public Set<String> getRoster(String unitCode) {
+        materializeRoster(unitCode);
+        return ROSTERS.roster(unitCode);
+    }
+
+    /**
+     * Lists the students enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     */
+    public void listRoster(String unitCode) {
+        if (!UNITS.containsKey(unitCode)) {
+            System.out.println("Unit '" + unitCode + "' not found.");
+            return;
+        }
+        printPages(after -> getRosterPage(unitCode, after, PAGE_SIZE), "No students enrolled in unit '" + unitCode + "'.");
+        System.out.println(getClassSize(unitCode) + " student(s) enrolled.");
+        List<String> waiting = getWaitlist(unitCode);
+        if (!waiting.isEmpty()) {
+            System.out.println(waiting.size() + " student(s) waiting, next: " + String.join(", ",
+                    waiting.subList(0, Math.min(waiting.size(), PAGE_SIZE))));
+        }
+    }
+
+    /**
+     * Checks if a unit is available in the system by its name.
+     *
+     * @param unit The unit to check.
+     * @return True if the unit is available, false otherwise.
+     */
+    public boolean isUnitAvailable(Unit unit) {
+        return UNITS.containsKey(unit.getCode());
+    }
+
+    /**
+     * Adds a unit to a student's list of units with confirmation.
+     *
+     * @param studentId The ID of the student.
+     * @param unit The unit to be added.
+     */
+    public void addUnitToStudent(String studentId, Unit unit) {
+        if (studentExists(studentId)) { // Check if student exists
+            Student student = getStudent(studentId);
+
+            // Check if student is already enrolled in the unit
+            if (student.getUnits().contains(unit)) {
+                System.out.println("Student is already enrolled in the unit '" + unit.getCode() + "'.");
+                return;
+            }
+
+            // Check if the student's load policy allows another unit
+            EnrollmentResult load = admit(student, unit, Collections.emptyList());
+            if (!load.isSuccess()) {
+                System.out.println(describe(load, studentId, unit.getCode()) + " Their limit is "
+                        + getLoadPolicy(student) + ".");
+                return;
+            }
+
+            // Check if the unit has a free seat
+            if (unit.getSeatsTaken() >= unit.getCapacity()) {
+                System.out.println("Unit '" + unit.getCode() + "' is full.");
+                offerWaitlist(studentId, unit);
+                return;
+            }
+
+            System.out.print("Confirm enrollment in unit '" + unit.getCode() + "' (Y/N): ");
+            String confirmation = SCANNER.nextLine().trim().toUpperCase();
+
+            if (confirmation.equals("Y")) { // Confirm action
+                // Checked again atomically, another request may have got in first
+                EnrollmentResult result = enroll(studentId, unit.getCode());
+                System.out.println("\n" + describe(result, studentId, unit.getCode()));
+                if (result == EnrollmentResult.UNIT_FULL) {
+                    offerWaitlist(studentId, unit);
+                }
+            } else {
+                System.out.println("\nEnrollment in unit '" + unit.getCode() + "' cancelled.");
+            }
+        } else {
+            System.out.println("\nStudent not found.");
+        }
+    }
+
+    /**
+     * Removes a unit from a student's list of units with confirmation.
+     *
+     * @param studentId The ID of the student.
+     * @param unitName The name of the unit to be removed.
+     */
+    public void removeUnitFromStudent(String studentId, String unitName) {
+        if (studentExists(studentId)) { // Check if student exists
+            Student student = getStudent(studentId);
+            Set<Unit> enrolledUnits = student.getUnits();
+
+            // Ensure the set contains the unit by its name
+            Unit unitToRemove = null;
+            for (Unit unit : enrolledUnits) {
+                if (unit.getCode().equals(unitName)) {
+                    unitToRemove = unit;
+                    break;
+                }
+            }
+
+            if (unitToRemove != null) { // Unit found
+                System.out.print("Confirm removal of unit '" + unitName + "' (Y/N): ");
+                String confirmation = SCANNER.nextLine().trim().toUpperCase();
+
+                if (confirmation.equals("Y")) { // Confirm action
+                    EnrollmentResult result = drop(studentId, unitName);
+                    System.out.println("\n" + (result.isSuccess()
+                            ? "Unit '" + unitName + "' removed successfully."
+                            : describe(result, studentId, unitName)));
+                } else {
+                    System.out.println("Removal of unit '" + unitName + "' cancelled.");
+                }
+            } else {
+                System.out.println("Student isn't currently enrolled in the unit '" + unitName + "'.");
+            }
+        } else {
+            System.out.println("Student not found.");
+        }
+    }
+
+    /**
+     * Offers a student who found a unit full a place on its waitlist.
+     *
+     * @param studentId The ID of the student.
+     * @param unit The full unit.
+     */
+    private void offerWaitlist(String studentId, Unit unit) {
+        System.out.print("Join the waitlist (" + unit.getWaitlist().size() + " waiting) to be enrolled when a seat "
+                + "frees up (Y/N): ");
+        if (SCANNER.nextLine().trim().toUpperCase().equals("Y")) {
+            EnrollmentResult result = joinWaitlist(studentId, unit.getCode(), 0);
+            System.out.println(result.isSuccess() ? "Added to the waitlist for unit '" + unit.getCode() + "'."
+                    : describe(result, studentId, unit.getCode()));
+        }
+    }
+
+    /**
+     * Describes the outcome of a batch of enrollments: how many were made, or why each refused one was refused.
+     *
+     * @param batch The submitted batch.
+     * @param result The outcome of the batch.
+     * @return The message to display.
+     */
+    static String describe(EnrollmentBatch batch, EnrollmentResult result) {
+        if (result.isSuccess()) {
+            return "Made " + batch.size() + " enrollment(s) successfully.";
+        }
+        StringBuilder description = new StringBuilder("No enrollments were made:");
+        for (int i = 0; i < batch.size(); i++) {
+            if (!batch.getResult(i).isSuccess()) {
+                description.append("\n  ").append(batch.getStudentId(i)).append(": ")
+                        .append(describe(batch.getResult(i), batch.getStudentId(i), batch.getUnitCode(i)));
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Describes the outcome of an enrollment for display on the console.
+     *
+     * @param result The outcome of the enrollment.
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return The message to display.
+     */
+    static String describe(EnrollmentResult result, String studentId, String unitCode) {
+        switch (result) {
+            case SUCCESS:
+                return "Enrolled in unit '" + unitCode + "' successfully.";
+            case STUDENT_NOT_FOUND:
+                return "Student '" + studentId + "' not found.";
+            case UNIT_NOT_FOUND:
+                return "Unit '" + unitCode + "' not found.";
+            case ALREADY_ENROLLED:
+                return "Student is already enrolled in the unit '" + unitCode + "'.";
+            case UNIT_LIMIT_REACHED:
+                return "Student is already enrolled in the maximum number of units for their study load.";
+            case CREDIT_LIMIT_REACHED:
+                return "Unit '" + unitCode + "' would take the student over the credit points allowed for their "
+                        + "study load.";
+            case UNIT_FULL:
+                return "Unit '" + unitCode + "' is full.";
+            case NOT_ENROLLED:
+                return "Student isn't currently enrolled in the unit '" + unitCode + "'.";
+            case STUDENT_EXISTS:
+                return "Student ID '" + studentId + "' already exists.";
+            case ALREADY_WAITLISTED:
+                return "Student is already on the waitlist for the unit '" + unitCode + "'.";
+            case NOT_WAITLISTED:
+                return "Student isn't on the waitlist for the unit '" + unitCode + "'.";
+            case TIMETABLE_CLASH:
+                return "Unit '" + unitCode + "' clashes with a class in the student's timetable.";
+            case MISSING_PREREQUISITES:
+                return "Student has not completed the prerequisites of unit '" + unitCode + "'.";
+            case MISSING_COREQUISITES:
+                return "Student has not completed, and is not taking, the co-requisites of unit '" + unitCode + "'.";
+            case PROHIBITED_UNIT:
+                return "Student has completed or is taking a unit that excludes unit '" + unitCode + "'.";
+            case ALREADY_COMPLETED:
+                return "Student has already completed the unit '" + unitCode + "'.";
+            case PREREQUISITE_CYCLE:
+                return "A prerequisite of unit '" + unitCode + "' requires it.";
+            default:
+                return "Unit '" + unitCode + "' already exists.";
+        }
+    }
+
+    /**
+     * Lists all units currently enrolled by a student.
+     *
+     * @param studentId The ID of the student.
+     */
+    public void listStudentUnits(String studentId) {
+        if (studentExists(studentId)) { // Check if student exists
+            Student student = getStudent(studentId);
+            student.listUnits();
+            System.out.println("Load: " + student.getUnitCount() + " unit(s), " + student.getCreditPoints()
+                    + " credit points (" + getLoadPolicy(student) + " allowed)");
+            List<String> completed = getCompletedUnits(studentId);
+            if (!completed.isEmpty()) {
+                System.out.println("Completed: " + String.join(", ", completed));
+            }
+        } else {
+            System.out.println("Student not found.");
+        }
+    }
+
+    /**
+     * Retrieves all units in the system.
+     *
+     * @return A collection of units.
+     */
+    public Collection<Unit> getUnits() {
+        return UNITS.values();
+    }
+
+    /**
+     * Retrieves a single unit by its code.
+     *
+     * @param unitCode The code of the unit.
+     * @return The unit, or null if no unit has that code.
+     */
+    public Unit getUnit(String unitCode) {
+        return UNITS.get(unitCode);
+    }
+
+    /**
+     * Returns one page of the students in the system, sorted by ID. Students still only held in the snapshot are
+     * merged in from its sorted index, so only the students on the page are loaded.
+     *
+     * @param after The cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of students on the page.
+     * @return The page of students.
+     */
+    public Page<Student> getStudentPage(String after, int limit) {
+        long start = System.nanoTime();
+        List<Student> students = new ArrayList<>();
+        Iterator<String> loaded = (after == null ? STUDENT_ORDER : STUDENT_ORDER.tailSet(after, false)).iterator();
+        List<String> stored = image == null ? Collections.emptyList() : image.getUnmaterializedIds(after, limit);
+        String nextLoaded = loaded.hasNext() ? loaded.next() : null;
+        int nextStored = 0;
+        String cursor = after;
+        while (students.size() < limit && (nextLoaded != null || nextStored < stored.size())) {
+            String studentId;
+            if (nextStored == stored.size()
+                    || nextLoaded != null && EnrollmentSnapshot.compareIds(nextLoaded, stored.get(nextStored)) <= 0) {
+                studentId = nextLoaded;
+                nextLoaded = loaded.hasNext() ? loaded.next() : null;
+                if (nextStored < stored.size() && studentId.equals(stored.get(nextStored))) {
+                    nextStored++; // Materialized since the snapshot's IDs were read
+                }
+            } else {
+                studentId = stored.get(nextStored++);
+            }
+            Student student = getStudent(studentId);
+            if (student != null) { // Skips a student removed since the page was started
+                students.add(student);
+            }
+            cursor = studentId;
+        }
+        METRICS.record(EnrollmentMetrics.Operation.LIST_STUDENTS, EnrollmentResult.SUCCESS, start);
+        return new Page<>(students, students.size() == limit ? cursor : null);
+    }
+
+    /**
+     * Returns one page of the units in the system, sorted by code.
+     *
+     * @param after The cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of units on the page.
+     * @return The page of units.
+     */
+    public Page<Unit> getUnitPage(String after, int limit) {
+        long start = System.nanoTime();
+        List<Unit> units = new ArrayList<>();
+        String cursor = after;
+        for (String unitCode : after == null ? UNIT_ORDER : UNIT_ORDER.tailSet(after, false)) {
+            if (units.size() == limit) {
+                break;
+            }
+            Unit unit = UNITS.get(unitCode);
+            if (unit != null) {
+                units.add(unit);
+            }
+            cursor = unitCode;
+        }
+        METRICS.record(EnrollmentMetrics.Operation.LIST_UNITS, EnrollmentResult.SUCCESS, start);
+        return new Page<>(units, units.size() == limit ? cursor : null);
+    }
+
+    /**
+     * Returns one page of the students enrolled in a unit, sorted by ID.
+     *
+     * @param unitCode The code of the unit.
+     * @param after The cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of students on the page.
+     * @return The page of students, empty if the unit does not exist.
+     */
+    public Page<Student> getRosterPage(String unitCode, String after, int limit) {
+        long start = System.nanoTime();
+        materializeRoster(unitCode);
+        List<Student> students = new ArrayList<>();
+        String cursor = after;
+        while (students.size() < limit) {
+            int wanted = limit - students.size();
+            List<String> studentIds = ROSTERS.page(unitCode, cursor, wanted);
+            for (String studentId : studentIds) {
+                Student student = getStudent(studentId);
+                if (student != null) { // Skips a student removed since the IDs were read
+                    students.add(student);
+                }
+                cursor = studentId;
+            }
+            if (studentIds.size() < wanted) {
+                break;
+            }
+        }
+        METRICS.record(EnrollmentMetrics.Operation.LIST_ROSTER,
+                UNITS.containsKey(unitCode) ? EnrollmentResult.SUCCESS : EnrollmentResult.UNIT_NOT_FOUND, start);
+        return new Page<>(students, students.size() == limit ? cursor : null);
+    }
+
+    /**
+     * Finds students whose ID, name or email (or any word of them) starts with the query, tolerating one typo if
+     * there are too few exact matches. The search index is built on the first search, loading every student.
+     *
+     * @param query The text to search for.
+     * @param limit The maximum number of students to return.
+     * @return The matching students, best matches first.
+     */
+    public List<Student> searchStudents(String query, int limit) {
+        long start = System.nanoTime();
+        SearchIndex search = studentSearch;
+        if (search == null) {
+            search = buildStudentSearch();
+        }
+        List<Student> matches = new ArrayList<>();
+        for (String studentId : search.search(query, limit)) {
+            Student student = STUDENTS.get(studentId);
+            if (student != null) { // Skips a student removed while the index was being built
+                matches.add(student);
+            }
+        }
+        METRICS.record(EnrollmentMetrics.Operation.SEARCH_STUDENTS, EnrollmentResult.SUCCESS, start);
+        return matches;
+    }
+
+    /**
+     * Finds units whose code or title (or any word of it) starts with the query, tolerating one typo if there are
+     * too few exact matches.
+     *
+     * @param query The text to search for.
+     * @param limit The maximum number of units to return.
+     * @return The matching units, best matches first.
+     */
+    public List<Unit> searchUnits(String query, int limit) {
+        long start = System.nanoTime();
+        List<Unit> matches = new ArrayList<>();
+        for (String unitCode : UNIT_SEARCH.search(query, limit)) {
+            Unit unit = UNITS.get(unitCode);
+            if (unit != null) {
+                matches.add(unit);
+            }
+        }
+        METRICS.record(EnrollmentMetrics.Operation.SEARCH_UNITS, EnrollmentResult.SUCCESS, start);
+        return matches;
+    }
+
+    /*
+     * Headless operations. These never prompt or print: each change is made (and made durable in the journal)
+     * before returning, and the outcome is reported as an EnrollmentResult. The console menus below are a thin
+     * client of these, adding the confirmation prompts and messages.
+     */
+
+    /**
+     * Adds a student to the system.
+     *
+     * @param student The student to be added.
+     * @return SUCCESS, or STUDENT_EXISTS if a student with the same ID already exists.
+     */
+    public EnrollmentResult createStudent(Student student) {
+        long start = System.nanoTime();
+        EnrollmentResult result = insertStudent(student, true) ? EnrollmentResult.SUCCESS : EnrollmentResult.STUDENT_EXISTS;
+        return finish(EnrollmentMetrics.Operation.CREATE_STUDENT, start, student.getId(), null, result);
+    }
+
+    /**
+     * Removes a student from the system, releasing their seats.
+     *
+     * @param studentId The ID of the student to be removed.
+     * @return SUCCESS, or STUDENT_NOT_FOUND.
+     */
+    public EnrollmentResult deleteStudent(String studentId) {
+        long start = System.nanoTime();
+        EnrollmentResult result = deleteStudent(studentId, true) ? EnrollmentResult.SUCCESS : EnrollmentResult.STUDENT_NOT_FOUND;
+        return finish(EnrollmentMetrics.Operation.DELETE_STUDENT, start, studentId, null, result);
+    }
+
+    /**
+     * Adds a unit to the system.
+     *
+     * @param unit The unit to be added.
+     * @return SUCCESS, UNIT_EXISTS if a unit with the same code already exists, or PREREQUISITE_CYCLE if one of its
+     *         prerequisites requires it.
+     */
+    public EnrollmentResult createUnit(Unit unit) {
+        long start = System.nanoTime();
+        EnrollmentResult result;
+        try {
+            result = insertUnit(unit, true) ? EnrollmentResult.SUCCESS : EnrollmentResult.UNIT_EXISTS;
+        } catch (IllegalArgumentException e) {
+            result = EnrollmentResult.PREREQUISITE_CYCLE;
+        }
+        return finish(EnrollmentMetrics.Operation.CREATE_UNIT, start, null, unit.getCode(), result);
+    }
+
+    /**
+     * Removes a unit from the system, unenrolling every student enrolled in it.
+     *
+     * @param unitCode The code of the unit to be removed.
+     * @return SUCCESS, or UNIT_NOT_FOUND.
+     */
+    public EnrollmentResult deleteUnit(String unitCode) {
+        long start = System.nanoTime();
+        EnrollmentResult result = deleteUnit(unitCode, true) >= 0 ? EnrollmentResult.SUCCESS : EnrollmentResult.UNIT_NOT_FOUND;
+        return finish(EnrollmentMetrics.Operation.DELETE_UNIT, start, null, unitCode, result);
+    }
+
+    /**
+     * Enrolls a student in a unit.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return SUCCESS, or the reason the student could not be enrolled.
+     */
+    public EnrollmentResult enroll(String studentId, String unitCode) {
+        long start = System.nanoTime();
+        Student student = getStudent(studentId);
+        Unit unit = UNITS.get(unitCode);
+        EnrollmentResult result;
+        if (student == null) {
+            result = EnrollmentResult.STUDENT_NOT_FOUND;
+        } else if (unit == null) {
+            result = EnrollmentResult.UNIT_NOT_FOUND;
+        } else {
+            result = enrol(student, unit, true);
+        }
+        return finish(EnrollmentMetrics.Operation.ENROLL, start, studentId, unitCode, result);
+    }
+
+    /**
+     * Removes a unit from a student's enrollments, releasing the seat.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return SUCCESS, STUDENT_NOT_FOUND or NOT_ENROLLED.
+     */
+    public EnrollmentResult drop(String studentId, String unitCode) {
+        long start = System.nanoTime();
+        Student student = getStudent(studentId);
+        EnrollmentResult result = student == null ? EnrollmentResult.STUDENT_NOT_FOUND : withdraw(student, unitCode, true);
+        return finish(EnrollmentMetrics.Operation.DROP, start, studentId, unitCode, result);
+    }
+
+    /**
+     * Enrolls every student in a batch in their unit, or none of them. The outcome of each enrollment is recorded
+     * in the batch.
+     *
+     * @param batch The enrollments to make.
+     * @return SUCCESS if every enrollment was made, otherwise the reason the first one listed could not be.
+     */
+    public EnrollmentResult enrollAll(EnrollmentBatch batch) {
+        long start = System.nanoTime();
+        return finishBatch(batch, enrolAll(batch, true), start);
+    }
+
+    /**
+     * Records the latency and outcome of a change in the metrics and the audit log.
+     *
+     * @return The outcome, for returning to the caller.
+     */
+    private EnrollmentResult finish(EnrollmentMetrics.Operation operation, long start, String studentId,
+                                    String unitCode, EnrollmentResult result) {
+        METRICS.record(operation, result, start);
+        audit(operation, studentId, unitCode, result);
+        return result;
+    }
+
+    /**
+     * Publishes a change to the audit log, if the system has one. Only changes requested through the system are
+     * audited, not those replayed from the journal on recovery.
+     *
+     * @param operation The operation.
+     * @param studentId The ID of the student involved, may be null.
+     * @param unitCode The code of the unit involved, may be null.
+     * @param result The outcome of the operation.
+     */
+    void audit(EnrollmentMetrics.Operation operation, String studentId, String unitCode, EnrollmentResult result) {
+        AuditLog auditLog = this.auditLog;
+        if (auditLog != null) {
+            auditLog.publish(operation, studentId, unitCode, result);
+        }
+    }
+
+    /**
+     * Returns the audit log of the changes made to the system, if it has one.
+     *
+     * @return The audit log, or null until the system is restored from a data directory.
+     */
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    /**
+     * Returns the change log every durable change is copied to, for subscribers to read.
+     *
+     * @return The change log, or null if the system has not been restored from a data directory.
+     */
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Returns the latency histograms and outcome counters of the system's operations.
+     *
+     * @return The metrics.
+     */
+    public EnrollmentMetrics getMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * Takes a consistent snapshot of every student's enrollments to report on, from the latest
+     * {@linkplain #getView() view}, so changes carry on while it is taken and while the reports are computed.
+     *
+     * @return The snapshot, whose reports are computed in parallel when asked for.
+     */
+    public EnrollmentReports getReports() {
+        return new EnrollmentReports(getView());
+    }
+
+    /**
+     * Pins the latest point-in-time view of the catalogue and every student's enrollments, for listings, exports
+     * and reports that must not see changes made while they run, and must not hold them up either.
+     * <p>
+     * Once the first view exists, every change publishes the next one, so pinning is a single read. The first
+     * view is built on demand, in bulk, while holding every student's lock and the catalogue (after loading
+     * students still only held in the snapshot file); changes wait for that once.
+     * </p>
+     *
+     * @return The view.
+     */
+    public EnrollmentView getView() {
+        EnrollmentView view = VIEW.get();
+        if (view != null) {
+            return view;
+        }
+        hydrate();
+        int[] stripes = STUDENT_LOCKS.lockAll();
+        try {
+            synchronized (UNITS) {
+                view = VIEW.get();
+                if (view == null) {
+                    view = EnrollmentView.of(dictionary, UNITS.values(), STUDENTS.values());
+                    VIEW.set(view);
+                }
+                return view;
+            }
+        } finally {
+            STUDENT_LOCKS.unlockAll(stripes);
+        }
+    }
+
+    /**
+     * Adds a student to the system without printing, if no student with the same ID exists.
+     *
+     * @param student The student to be added.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return True if the student was added.
+     */
+    boolean insertStudent(Student student, boolean sync) {
+        String studentId = student.getId();
+        long sequence;
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            if (getStudent(studentId) != null) {
+                return false;
+            }
+            register(student);
+            sequence = append(studentRecord(student));
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+        awaitJournal(sequence, sync);
+        return true;
+    }
+
+    /**
+     * Removes a student from the system without printing, releasing their seats and taking them off every waitlist,
+     * so that a student later created with the same ID starts afresh.
+     *
+     * @param studentId The ID of the student to be removed.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return True if the student existed and was removed.
+     */
+    boolean deleteStudent(String studentId, boolean sync) {
+        long sequence;
+        List<Unit> freed;
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            Student student = getStudent(studentId);
+            if (student == null) {
+                return false;
+            }
+            freed = new ArrayList<>(student.getUnits());
+            for (Unit unit : UNITS.values()) {
+                if (unit.getWaitlist().remove(studentId)) {
+                    append("UNWAITLIST", studentId, unit.getCode());
+                }
+            }
+            unregister(student);
+            sequence = append("REMOVE_STUDENT", studentId);
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+        freed.forEach(this::promote);
+        awaitJournal(sequence, sync);
+        return true;
+    }
+
+    /**
+     * Adds a unit to the system without printing, if no unit with the same code exists.
+     *
+     * @param unit The unit to be added.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return True if the unit was added.
+     * @throws IllegalArgumentException If one of the unit's prerequisites requires the unit itself.
+     */
+    boolean insertUnit(Unit unit, boolean sync) {
+        long sequence;
+        synchronized (UNITS) { // Keeps catalogue changes in the same order in the map and the journal
+            if (UNITS.containsKey(unit.getCode())) {
+                return false;
+            }
+            dictionary.register(unit);
+            try {
+                PREREQUISITES.add(unit); // Refuses a cycle before the unit is visible
+            } catch (IllegalArgumentException e) {
+                dictionary.release(unit);
+                throw e;
+            }
+            UNITS.put(unit.getCode(), unit);
+            indexUnit(unit);
+            publish(view -> view.withUnit(unit));
+            sequence = append(unitRecord(unit));
+        }
+        awaitJournal(sequence, sync);
+        return true;
+    }
+
+    /**
+     * Removes a unit from the system without printing, unenrolling every student in its roster.
+     * <p>
+     * The unit leaves the catalogue first, so enrollments racing with the removal either complete before it (and
+     * are then found in the roster) or fail their final check in {@link #enrol(Student, Unit, boolean)}.
+     * </p>
+     *
+     * @param unitCode The code of the unit to be removed.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return The number of students unenrolled, or -1 if the unit does not exist.
+     */
+    int deleteUnit(String unitCode, boolean sync) {
+        materializeRoster(unitCode);
+        Unit unit;
+        Set<String> roster;
+        long sequence;
+        synchronized (UNITS) {
+            unit = UNITS.remove(unitCode);
+            if (unit == null) {
+                return -1;
+            }
+            // Taken with the unit, before a new unit with the same code can be added and start its own roster
+            roster = ROSTERS.removeUnit(unitCode);
+            UNIT_ORDER.remove(unitCode);
+            UNIT_SEARCH.remove(unitCode, unitCode, unit.getTitle());
+            PREREQUISITES.remove(unitCode);
+            publish(view -> view.withoutUnit(unitCode));
+            sequence = append("REMOVE_UNIT", unitCode);
+        }
+        for (String studentId : roster) {
+            STUDENT_LOCKS.lock(studentId);
+            try {
+                Student student = STUDENTS.get(studentId);
+                if (student != null && student.removeEnrolment(unit)) {
+                    unit.releaseSeat(); // Shards share units, and replaying may remove one another shard still holds
+                    publish(view -> view.withStudent(student));
+                }
+            } finally {
+                STUDENT_LOCKS.unlock(studentId);
+            }
+        }
+        // Waits out enrollments that found the unit before it left the catalogue, which undo themselves, so that no
+        // student holds its ID when it is freed
+        STUDENT_LOCKS.unlockAll(STUDENT_LOCKS.lockAll());
+        dictionary.release(unit);
+        awaitJournal(sequence, sync);
+        return roster.size();
+    }
+
+    /**
+     * Enrolls a student in a unit without printing.
+     * <p>
+     * The duplicate, load policy, timetable clash and requisite checks and the enrollment itself happen atomically
+     * under the student's lock, so concurrent requests can never over-enroll a student or double-book their week.
+     * Requests for different students only contend if their IDs share a lock stripe, or on the seat counter of a
+     * unit with limited capacity.
+     * </p>
+     *
+     * @param student The student to enroll.
+     * @param unit The unit to enroll the student in.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return The outcome of the enrollment.
+     */
+    EnrollmentResult enrol(Student student, Unit unit, boolean sync) {
+        String studentId = student.getId();
+        String unitCode = unit.getCode();
+        EnrollmentResult refusal;
+        long sequence;
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            if (STUDENTS.get(studentId) != student) {
+                return EnrollmentResult.STUDENT_NOT_FOUND;
+            }
+            if (UNITS.get(unitCode) != unit) {
+                return EnrollmentResult.UNIT_NOT_FOUND;
+            }
+            if (student.findUnit(unitCode) != null) {
+                return EnrollmentResult.ALREADY_ENROLLED;
+            }
+            if (recovering) {
+                unit.forceReserveSeat();
+            } else if (!(refusal = admit(student, unit, Collections.emptyList())).isSuccess()) {
+                return refusal;
+            } else if (clashes(unit, student.getUnits())) {
+                return EnrollmentResult.TIMETABLE_CLASH;
+            } else if (!(refusal = eligibility(student, unit, student.getUnits())).isSuccess()) {
+                return refusal;
+            } else if (!unit.tryReserveSeat()) { // Lock-free, contends only with other enrollments in this unit
+                return EnrollmentResult.UNIT_FULL;
+            }
+            student.addEnrolment(unit);
+            ROSTERS.add(unitCode, studentId);
+            if (UNITS.get(unitCode) != unit) { // The unit was removed while enrolling, undo
+                student.removeEnrolment(unit);
+                ROSTERS.remove(unitCode, studentId);
+                unit.releaseSeat();
+                return EnrollmentResult.UNIT_NOT_FOUND;
+            }
+            unit.getWaitlist().remove(studentId); // No longer waiting, whether promoted or enrolled directly
+            publish(view -> view.withStudent(student));
+            sequence = append("ENROL", studentId, unitCode);
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+        awaitJournal(sequence, sync);
+        return EnrollmentResult.SUCCESS;
+    }
+
+    /**
+     * Puts a student on a unit's waitlist, to be enrolled automatically when a seat frees up. If a seat is already
+     * free the student is enrolled straight away.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @param priority The priority, higher first; students with the same priority are enrolled in the order they
+     *                 joined.
+     * @return SUCCESS, or the reason the student could not join.
+     */
+    public EnrollmentResult joinWaitlist(String studentId, String unitCode, int priority) {
+        long start = System.nanoTime();
+        Student student = getStudent(studentId);
+        Unit unit = UNITS.get(unitCode);
+        EnrollmentResult result;
+        if (student == null) {
+            result = EnrollmentResult.STUDENT_NOT_FOUND;
+        } else if (unit == null) {
+            result = EnrollmentResult.UNIT_NOT_FOUND;
+        } else {
+            result = waitlist(student, unit, priority, true);
+        }
+        finish(EnrollmentMetrics.Operation.JOIN_WAITLIST, start, studentId, unitCode, result);
+        if (result.isSuccess()) {
+            promote(unit); // A seat may have freed up since the student found the unit full
+        }
+        return result;
+    }
+
+    /**
+     * Takes a student off a unit's waitlist.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit.
+     * @return SUCCESS, UNIT_NOT_FOUND or NOT_WAITLISTED.
+     */
+    public EnrollmentResult leaveWaitlist(String studentId, String unitCode) {
+        long start = System.nanoTime();
+        Unit unit = UNITS.get(unitCode);
+        EnrollmentResult result = unit == null ? EnrollmentResult.UNIT_NOT_FOUND : unwaitlist(studentId, unit, true);
+        return finish(EnrollmentMetrics.Operation.LEAVE_WAITLIST, start, studentId, unitCode, result);
+    }
+
+    /**
+     * Returns the students waiting for a seat in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @return The IDs of the students, in the order they will be offered a seat; empty if the unit does not exist.
+     */
+    public List<String> getWaitlist(String unitCode) {
+        Unit unit = UNITS.get(unitCode);
+        return unit == null ? Collections.emptyList() : unit.getWaitlist().getStudentIds();
+    }
+
+    /**
+     * Sets the load policy for a type of student, checked before each of their enrollments from then on. Students
+     * already over the new limits keep their units.
+     *
+     * @param type The type of student, e.g. {@code PartTimeStudent.class}.
+     * @param policy The policy.
+     */
+    public void setLoadPolicy(Class<? extends Student> type, LoadPolicy policy) {
+        LOAD_POLICIES.put(type, policy);
+    }
+
+    /**
+     * Returns the load policy a student's enrollments are checked against. By default full-time students may take
+     * 4 units, and part-time students 4 units of no more than 18 credit points in total.
+     *
+     * @param student The student.
+     * @return The policy for the student's type.
+     */
+    public LoadPolicy getLoadPolicy(Student student) {
+        return LOAD_POLICIES.getOrDefault(student.getClass(), DEFAULT_LOAD_POLICY);
+    }
+
+    /**
+     * Records that a student has completed a unit, which then counts towards the requisites of other units. Any
+     * current enrollment in the unit is left as it is.
+     *
+     * @param studentId The ID of the student.
+     * @param unitCode The code of the unit, which must be in the catalogue.
+     * @return SUCCESS, STUDENT_NOT_FOUND, UNIT_NOT_FOUND or ALREADY_COMPLETED.
+     */
+    public EnrollmentResult completeUnit(String studentId, String unitCode) {
+        long start = System.nanoTime();
+        Student student = getStudent(studentId);
+        EnrollmentResult result;
+        if (student == null) {
+            result = EnrollmentResult.STUDENT_NOT_FOUND;
+        } else if (!UNITS.containsKey(unitCode)) {
+            result = EnrollmentResult.UNIT_NOT_FOUND;
+        } else {
+            result = complete(student, unitCode, true);
+        }
+        return finish(EnrollmentMetrics.Operation.COMPLETE_UNIT, start, studentId, unitCode, result);
+    }
+
+    /**
+     * Returns the units a student has completed.
+     *
+     * @param studentId The ID of the student.
+     * @return The unit codes, sorted; empty if the student has completed none or does not exist.
+     */
+    public List<String> getCompletedUnits(String studentId) {
+        return COMPLETED.getOrDefault(studentId, CompletedUnits.NONE).getCodes();
+    }
+
+    /**
+     * Returns every unit that must be completed before enrolling in a unit, directly or through the
+     * prerequisites of its prerequisites.
+     *
+     * @param unitCode The code of the unit.
+     * @return The unit codes; empty if the unit has no prerequisites or does not exist.
+     */
+    public List<String> getRequiredUnits(String unitCode) {
+        return PREREQUISITES.getRequired(unitCode);
+    }
+
+    /**
+     * Makes a batch of enrollments without printing, all or none.
+     * <p>
+     * The students' locks are all taken at once, in stripe order so that batches cannot deadlock with each other,
+     * and the catalogue is held so that no unit is removed part way. Every enrollment is then checked against the
+     * others in the batch as well as the current state, the seats each unit needs are reserved with one atomic
+     * update, and only if all of that succeeds are the enrollments made. They are journaled as a single record, so
+     * a crash can never leave part of the batch behind.
+     * </p>
+     *
+     * @param batch The enrollments to make.
+     * @param sync True to wait until the batch is durable in the journal.
+     * @return SUCCESS, or the outcome of the first enrollment that could not be made.
+     */
+    EnrollmentResult enrolAll(EnrollmentBatch batch, boolean sync) {
+        EnrollmentResult[] results = new EnrollmentResult[batch.size()];
+        batch.setResults(results);
+        Map<String, Student> students = materialize(batch);
+        long sequence;
+        List<Unit> reserved = new ArrayList<>();
+        boolean valid = false;
+        int[] stripes = STUDENT_LOCKS.lockAll(students.keySet());
+        try {
+            synchronized (UNITS) {
+                Map<Unit, Integer> seats = new LinkedHashMap<>();
+                valid = reserveSeats(batch, results, seats, check(batch, results, students, seats), reserved);
+                if (!valid) {
+                    return Arrays.stream(results).filter(result -> !result.isSuccess()).findFirst().get();
+                }
+                if (batch.size() == 0) {
+                    return EnrollmentResult.SUCCESS;
+                }
+                String[] fields = makeAll(batch, students, "ENROL_ALL");
+                unwaitAll(batch);
+                sequence = append(fields);
+            }
+        } finally {
+            STUDENT_LOCKS.unlockAll(stripes);
+            if (!valid) { // Promotions may have been turned away while the seats were held
+                reserved.forEach(this::promote);
+            }
+        }
+        awaitJournal(sequence, sync);
+        return EnrollmentResult.SUCCESS;
+    }
+
+    /**
+     * Looks up the students of a batch, materializing them before their locks are taken, as for a single
+     * enrollment.
+     *
+     * @param batch The batch.
+     * @return The students by ID; null for IDs not in the system.
+     */
+    private Map<String, Student> materialize(EnrollmentBatch batch) {
+        Map<String, Student> students = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            students.computeIfAbsent(batch.getStudentId(i), this::getStudent);
+        }
+        return students;
+    }
+
+    /**
+     * Checks every enrollment of a batch against the others in the batch as well as the current state, and counts
+     * the seats each unit needs. Called with the students' locks and the catalogue held.
+     *
+     * @param batch The batch.
+     * @param results Receives the outcome of each enrollment.
+     * @param students The students of the batch, by ID.
+     * @param seats Receives the number of seats each unit needs.
+     * @return True if every enrollment can be made, seats aside.
+     */
+    private boolean check(EnrollmentBatch batch, EnrollmentResult[] results, Map<String, Student> students,
+                          Map<Unit, Integer> seats) {
+        int size = batch.size();
+        Map<String, List<Unit>> added = new HashMap<>(); // Units the batch already adds for each student
+        Map<String, List<Unit>> requested = new HashMap<>(); // Every unit the batch asks for, for co-requisites
+        for (int i = 0; i < size; i++) {
+            Unit unit = UNITS.get(batch.getUnitCode(i));
+            if (unit != null) {
+                requested.computeIfAbsent(batch.getStudentId(i), key -> new ArrayList<>()).add(unit);
+            }
+        }
+        Set<String> pairs = new HashSet<>();
+        boolean valid = true;
+        for (int i = 0; i < size; i++) {
+            String studentId = batch.getStudentId(i);
+            String unitCode = batch.getUnitCode(i);
+            Student student = students.get(studentId);
+            Unit unit = UNITS.get(unitCode);
+            List<Unit> pending = added.getOrDefault(studentId, Collections.emptyList());
+            if (student == null || STUDENTS.get(studentId) != student) {
+                results[i] = EnrollmentResult.STUDENT_NOT_FOUND;
+            } else if (unit == null) {
+                results[i] = EnrollmentResult.UNIT_NOT_FOUND;
+            } else if (student.findUnit(unitCode) != null || !pairs.add(studentId + '\t' + unitCode)) {
+                results[i] = EnrollmentResult.ALREADY_ENROLLED;
+            } else if (clashes(unit, student.getUnits()) || clashes(unit, pending)) {
+                results[i] = EnrollmentResult.TIMETABLE_CLASH;
+            } else {
+                results[i] = admit(student, unit, pending); // Counting the units the batch already adds
+                if (results[i].isSuccess()) {
+                    // Co-requisites may be among the units the batch adds; if adding one fails, so does it
+                    results[i] = eligibility(student, unit, taking(student, requested.get(studentId)));
+                }
+                if (results[i].isSuccess()) {
+                    added.computeIfAbsent(studentId, key -> new ArrayList<>()).add(unit);
+                    seats.merge(unit, 1, Integer::sum);
+                }
+            }
+            valid &= results[i].isSuccess();
+        }
+        return valid;
+    }
+
+    /**
+     * Reserves the seats a checked batch needs, each unit's with one atomic update, all or none. If the batch was
+     * already refused the seats are only checked, so that every reason it was refused is reported.
+     *
+     * @param batch The batch.
+     * @param results The outcome of each enrollment, set to UNIT_FULL for the units without enough seats.
+     * @param seats The number of seats each unit needs.
+     * @param valid True if every enrollment passed its checks.
+     * @param reserved Receives the units whose seats were reserved, and released again if the batch is refused.
+     * @return True if every seat was reserved.
+     */
+    static boolean reserveSeats(EnrollmentBatch batch, EnrollmentResult[] results, Map<Unit, Integer> seats,
+                                boolean valid, List<Unit> reserved) {
+        for (Map.Entry<Unit, Integer> entry : seats.entrySet()) {
+            Unit unit = entry.getKey();
+            boolean available = valid ? unit.tryReserveSeats(entry.getValue())
+                    : unit.getCapacity() - unit.getSeatsTaken() >= entry.getValue(); // Only reported
+            if (available && valid) {
+                reserved.add(unit);
+            } else if (!available) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (results[i].isSuccess() && unit.getCode().equals(batch.getUnitCode(i))) {
+                        results[i] = EnrollmentResult.UNIT_FULL;
+                    }
+                }
+                valid = false;
+            }
+        }
+        if (!valid) {
+            for (Unit unit : reserved) {
+                unit.releaseSeats(seats.get(unit));
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Makes the enrollments of a checked batch whose seats are reserved, and publishes them as one version. The
+     * students stay on the units' waitlists until {@link #unwaitAll(EnrollmentBatch)}. Called with the students'
+     * locks and the catalogue held.
+     *
+     * @param batch The batch.
+     * @param students The students of the batch, by ID.
+     * @param header The leading fields of the batch's journal record.
+     * @return The journal record: the leading fields, then each student ID and unit code.
+     */
+    private String[] makeAll(EnrollmentBatch batch, Map<String, Student> students, String... header) {
+        String[] fields = Arrays.copyOf(header, header.length + 2 * batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Student student = students.get(batch.getStudentId(i));
+            Unit unit = UNITS.get(batch.getUnitCode(i));
+            student.addEnrolment(unit);
+            ROSTERS.add(unit.getCode(), student.getId());
+            fields[header.length + 2 * i] = student.getId();
+            fields[header.length + 2 * i + 1] = batch.getUnitCode(i);
+        }
+        publish(view -> view.withStudents(students.values())); // The whole batch as one version
+        return fields;
+    }
+
+    /**
+     * Undoes the enrollments of a batch made by {@link #makeAll(EnrollmentBatch, Map, String...)}, or as many of
+     * them as were made, and publishes the students as they were. Called with the students' locks and the
+     * catalogue held.
+     *
+     * @param batch The batch.
+     */
+    private void unmakeAll(EnrollmentBatch batch) {
+        Map<String, Student> students = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Student student = STUDENTS.get(batch.getStudentId(i));
+            Unit unit = UNITS.get(batch.getUnitCode(i));
+            if (student != null && unit != null && student.removeEnrolment(unit)) {
+                ROSTERS.remove(unit.getCode(), student.getId());
+                students.put(student.getId(), student);
+            }
+        }
+        publish(view -> view.withStudents(students.values()));
+    }
+
+    /**
+     * Takes the students of a batch that has been made off the waitlists of the units they were enrolled in.
+     *
+     * @param batch The batch.
+     */
+    private void unwaitAll(EnrollmentBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            Unit unit = UNITS.get(batch.getUnitCode(i));
+            if (unit != null) {
+                unit.getWaitlist().remove(batch.getStudentId(i));
+            }
+        }
+    }
+
+    /**
+     * Checks this shard's part of a batch spanning shards, the first step of {@link ShardRouter#enrollAll}. The
+     * students' locks are taken and held until the part is committed or abandoned.
+     *
+     * @param part The enrollments of this shard's students.
+     * @param results Receives the outcome of each enrollment of the part.
+     * @param seats Receives the number of seats each unit needs for the part.
+     * @return The stripes locked, to be passed to {@link #commitPart(EnrollmentBatch, String, int[])} or
+     *         {@link #abandonPart(int[])}.
+     */
+    int[] checkPart(EnrollmentBatch part, EnrollmentResult[] results, Map<Unit, Integer> seats) {
+        part.setResults(results);
+        Map<String, Student> students = materialize(part);
+        int[] stripes = STUDENT_LOCKS.lockAll(students.keySet());
+        synchronized (UNITS) {
+            check(part, results, students, seats);
+        }
+        return stripes;
+    }
+
+    /**
+     * Makes this shard's part of a batch spanning shards, once every part is checked and its seats reserved, and
+     * journals it as prepared. Snapshots are held off until {@link #releaseSnapshots()}, so that no shard
+     * truncates the batch from its journal before every shard has committed it. If the part cannot be made or
+     * journaled, whatever was made is undone and snapshots are let through again before the error is thrown.
+     *
+     * @param part The enrollments of this shard's students.
+     * @param batchId The ID of the batch.
+     * @param shardIndices The indices of the shards the batch spans, separated by commas.
+     * @return The sequence number of the record.
+     */
+    long preparePart(EnrollmentBatch part, String batchId, String shardIndices) {
+        SNAPSHOT_LOCK.lock();
+        try {
+            Map<String, Student> students = new HashMap<>();
+            for (int i = 0; i < part.size(); i++) {
+                students.computeIfAbsent(part.getStudentId(i), STUDENTS::get);
+            }
+            synchronized (UNITS) {
+                try {
+                    return append(makeAll(part, students, "PREPARE_ALL", batchId, shardIndices));
+                } catch (RuntimeException | Error e) {
+                    unmakeAll(part);
+                    throw e;
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            SNAPSHOT_LOCK.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Journals a batch spanning shards as committed, once its part is prepared durably in every shard, takes its
+     * students off the units' waitlists and releases the students' locks.
+     *
+     * @param part The enrollments of this shard's students.
+     * @param batchId The ID of the batch.
+     * @param stripes The stripes locked by {@link #checkPart(EnrollmentBatch, EnrollmentResult[], Map)}.
+     * @return The sequence number of the record.
+     */
+    long commitPart(EnrollmentBatch part, String batchId, int[] stripes) {
+        try {
+            unwaitAll(part);
+            return append("COMMIT_ALL", batchId);
+        } finally {
+            STUDENT_LOCKS.unlockAll(stripes);
+        }
+    }
+
+    /**
+     * Undoes this shard's prepared part of a batch spanning shards that could not be prepared in every shard, and
+     * journals the batch as abandoned. The students' locks stay held.
+     *
+     * @param part The enrollments of this shard's students.
+     * @param batchId The ID of the batch.
+     * @return The sequence number of the record.
+     */
+    long abortPart(EnrollmentBatch part, String batchId) {
+        synchronized (UNITS) {
+            unmakeAll(part);
+            return append("ABORT_ALL", batchId);
+        }
+    }
+
+    /**
+     * Releases the students' locks of a part that is not made, as another part was refused.
+     *
+     * @param stripes The stripes locked by {@link #checkPart(EnrollmentBatch, EnrollmentResult[], Map)}.
+     */
+    void abandonPart(int[] stripes) {
+        STUDENT_LOCKS.unlockAll(stripes);
+    }
+
+    /**
+     * Waits for a journal record to be durable, without taking a snapshot.
+     *
+     * @param sequence The sequence number of the record.
+     */
+    void awaitDurable(long sequence) {
+        EnrollmentJournal journal = this.journal;
+        if (journal != null && sequence != 0) {
+            journal.awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Lets snapshots be taken again once a batch spanning shards is durably committed in every shard.
+     */
+    void releaseSnapshots() {
+        SNAPSHOT_LOCK.unlock();
+    }
+
+    /**
+     * Returns the batches spanning shards whose part this shard recovered prepared but not committed.
+     *
+     * @return The prepared records, by batch ID.
+     */
+    Map<String, String[]> getPreparedBatches() {
+        return new HashMap<>(PREPARED_BATCHES);
+    }
+
+    /**
+     * Returns whether this shard recovered its part of a batch spanning shards, prepared or committed.
+     *
+     * @param batchId The ID of the batch.
+     * @return True if the part was prepared.
+     */
+    boolean hasPrepared(String batchId) {
+        return PREPARED_BATCHES.containsKey(batchId) || COMMITTED_BATCHES.contains(batchId);
+    }
+
+    /**
+     * Settles a batch spanning shards that a crash left prepared but not committed in this shard: its part is
+     * redone as if replayed and journaled as committed, or journaled as abandoned. Called while recovering, before
+     * any request is served.
+     *
+     * @param batchId The ID of the batch.
+     * @param commit True if every shard the batch spans prepared it.
+     */
+    void settleBatch(String batchId, boolean commit) {
+        String[] prepared = PREPARED_BATCHES.remove(batchId);
+        if (prepared == null) {
+            return;
+        }
+        if (commit) {
+            recovering = true; // Checked as a whole before it was prepared, so each enrollment is simply redone
+            try {
+                redoAll(prepared, 3);
+            } finally {
+                recovering = false;
+            }
+        }
+        append(commit ? "COMMIT_ALL" : "ABORT_ALL", batchId);
+    }
+
+    /**
+     * Forgets the batches spanning shards recovered from the journal, once they are settled.
+     */
+    void forgetBatches() {
+        PREPARED_BATCHES.clear();
+        COMMITTED_BATCHES.clear();
+    }
+
+    /**
+     * Records the latency, outcome and audit events of a batch.
+     *
+     * @param batch The batch, with the outcome of each enrollment.
+     * @param result The outcome of the batch.
+     * @param start The time the batch started, from {@link System#nanoTime()}.
+     * @return The outcome, for returning to the caller.
+     */
+    EnrollmentResult finishBatch(EnrollmentBatch batch, EnrollmentResult result, long start) {
+        METRICS.record(EnrollmentMetrics.Operation.ENROLL_BATCH, result, start);
+        for (int i = 0; i < batch.size(); i++) {
+            if (result.isSuccess() || !batch.getResult(i).isSuccess()) { // Valid pairs of a refused batch were not made
+                audit(EnrollmentMetrics.Operation.ENROLL, batch.getStudentId(i), batch.getUnitCode(i), batch.getResult(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks a unit's class sessions against those of other units.
+     *
+     * @param unit The unit to check.
+     * @param units The units it must not clash with, e.g. a student's current units.
+     * @return True if the unit clashes with any of them.
+     */
+    private static boolean clashes(Unit unit, Collection<Unit> units) {
+        Timetable timetable = unit.getTimetable();
+        if (timetable.isEmpty()) {
+            return false;
+        }
+        for (Unit other : units) {
+            if (timetable.clashesWith(other.getTimetable())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks a student's completed units against a unit's requisites. Called under the student's lock.
+     *
+     * @param student The student.
+     * @param unit The unit to check.
+     * @param taking The units the student is taking alongside it.
+     * @return SUCCESS, ALREADY_COMPLETED, MISSING_PREREQUISITES, MISSING_COREQUISITES or PROHIBITED_UNIT.
+     */
+    private EnrollmentResult eligibility(Student student, Unit unit, Collection<Unit> taking) {
+        CompletedUnits completed = COMPLETED.getOrDefault(student.getId(), CompletedUnits.NONE);
+        if (completed.contains(unit.getCode())) {
+            return EnrollmentResult.ALREADY_COMPLETED;
+        }
+        return PREREQUISITES.check(unit.getCode(), completed, taking);
+    }
+
+    /**
+     * Checks a student's load policy for the load a unit would bring them to. Uses the student's running credit
+     * total, so only the units a batch adds alongside it are summed. Called under the student's lock.
+     *
+     * @param student The student.
+     * @param unit The unit to add.
+     * @param pending The units a batch already adds for the student.
+     * @return SUCCESS, UNIT_LIMIT_REACHED or CREDIT_LIMIT_REACHED.
+     */
+    private EnrollmentResult admit(Student student, Unit unit, Collection<Unit> pending) {
+        int creditPoints = student.getCreditPoints() + unit.getCreditPoints();
+        for (Unit other : pending) {
+            creditPoints += other.getCreditPoints();
+        }
+        return getLoadPolicy(student).admit(student.getUnitCount() + pending.size() + 1, creditPoints);
+    }
+
+    /**
+     * Returns the units a student is taking together with those a batch adds for them.
+     *
+     * @param student The student.
+     * @param requested The units the batch asks to enroll the student in.
+     * @return The units.
+     */
+    private static Collection<Unit> taking(Student student, List<Unit> requested) {
+        Collection<Unit> units = new ArrayList<>(student.getUnits());
+        units.addAll(requested);
+        return units;
+    }
+
+    /**
+     * Removes a unit from a student's enrollments without printing.
+     *
+     * @param student The student.
+     * @param unitCode The code of the unit.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return The outcome of the removal.
+     */
+    EnrollmentResult withdraw(Student student, String unitCode, boolean sync) {
+        String studentId = student.getId();
+        long sequence;
+        Unit enrolled;
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            if (STUDENTS.get(studentId) != student) {
+                return EnrollmentResult.STUDENT_NOT_FOUND;
+            }
+            enrolled = student.findUnit(unitCode);
+            if (!student.removeEnrolment(enrolled)) {
+                return EnrollmentResult.NOT_ENROLLED;
+            }
+            enrolled.releaseSeat();
+            ROSTERS.remove(unitCode, studentId);
+            publish(view -> view.withStudent(student));
+            sequence = append("DROP", studentId, unitCode);
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+        promote(enrolled);
+        awaitJournal(sequence, sync);
+        return EnrollmentResult.SUCCESS;
+    }
+
+    /**
+     * Puts a student on a unit's waitlist without printing.
+     * <p>
+     * Made under the student's lock, like an enrollment, so a student can never be both enrolled in a unit and
+     * waiting for it. A student whose load policy does not allow the unit, taking a unit that clashes with its
+     * timetable or not meeting its requisites cannot join.
+     * </p>
+     *
+     * @param student The student.
+     * @param unit The unit.
+     * @param priority The priority, higher first.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return The outcome.
+     */
+    EnrollmentResult waitlist(Student student, Unit unit, int priority, boolean sync) {
+        String studentId = student.getId();
+        long sequence;
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            if (STUDENTS.get(studentId) != student) {
+                return EnrollmentResult.STUDENT_NOT_FOUND;
+            }
+            if (UNITS.get(unit.getCode()) != unit) {
+                return EnrollmentResult.UNIT_NOT_FOUND;
+            }
+            if (student.findUnit(unit.getCode()) != null) {
+                return EnrollmentResult.ALREADY_ENROLLED;
+            }
+            EnrollmentResult load = recovering ? EnrollmentResult.SUCCESS
+                    : admit(student, unit, Collections.emptyList());
+            if (!load.isSuccess()) {
+                return load;
+            }
+            if (!recovering && clashes(unit, student.getUnits())) {
+                return EnrollmentResult.TIMETABLE_CLASH;
+            }
+            EnrollmentResult eligibility = recovering ? EnrollmentResult.SUCCESS
+                    : eligibility(student, unit, student.getUnits());
+            if (!eligibility.isSuccess()) {
+                return eligibility;
+            }
+            Waitlist waitlist = unit.getWaitlist();
+            synchronized (waitlist) { // Joins in the order the joins are journaled, so replaying them keeps the order
+                if (!waitlist.add(studentId, priority)) {
+                    return EnrollmentResult.ALREADY_WAITLISTED;
+                }
+                sequence = append("WAITLIST", studentId, unit.getCode(), String.valueOf(priority));
+            }
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+        awaitJournal(sequence, sync);
+        return EnrollmentResult.SUCCESS;
+    }
+
+    /**
+     * Takes a student off a unit's waitlist without printing.
+     *
+     * @param studentId The ID of the student.
+     * @param unit The unit.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return SUCCESS or NOT_WAITLISTED.
+     */
+    EnrollmentResult unwaitlist(String studentId, Unit unit, boolean sync) {
+        long sequence;
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            if (!unit.getWaitlist().remove(studentId)) {
+                return EnrollmentResult.NOT_WAITLISTED;
+            }
+            sequence = append("UNWAITLIST", studentId, unit.getCode());
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+        awaitJournal(sequence, sync);
+        return EnrollmentResult.SUCCESS;
+    }
+
+    /**
+     * Records a completed unit for a student without printing. Made under the student's lock, so enrollments
+     * are checked against either the old or the new completed units, never a mix.
+     *
+     * @param student The student.
+     * @param unitCode The code of the unit.
+     * @param sync True to wait until the change is durable in the journal.
+     * @return SUCCESS, STUDENT_NOT_FOUND or ALREADY_COMPLETED.
+     */
+    EnrollmentResult complete(Student student, String unitCode, boolean sync) {
+        String studentId = student.getId();
+        long sequence;
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            if (STUDENTS.get(studentId) != student) {
+                return EnrollmentResult.STUDENT_NOT_FOUND;
+            }
+            CompletedUnits completed = COMPLETED.getOrDefault(studentId, CompletedUnits.NONE);
+            if (completed.contains(unitCode)) {
+                return EnrollmentResult.ALREADY_COMPLETED;
+            }
+            COMPLETED.put(studentId, completed.with(unitCode));
+            sequence = append("COMPLETE", studentId, unitCode);
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+        awaitJournal(sequence, sync);
+        return EnrollmentResult.SUCCESS;
+    }
+
+    /**
+     * Offers the free seats of a unit to the students at the head of its waitlist, in order.
+     * <p>
+     * Called after a seat is released, by the thread that released it, once it holds no locks. Each student is
+     * enrolled through {@link #enrol(Student, Unit, boolean)}, so the load policy and capacity are checked as for
+     * any other enrollment and concurrent promotions or enrollments can never oversell a seat. Students who have
+     * since reached their load limit or taken a clashing, prohibited or co-requisite unit keep their place for later;
+     * students who have left the system, enrolled anyway or since completed the unit are dropped from the list,
+     * under their lock and journaled like any other removal. Only the waitlist is visited, never the students of the system, and it
+     * stops at the first student turned away because the unit is full again. Shards share their units, waitlists
+     * included, so each student is enrolled by the shard that holds them.
+     * </p>
+     *
+     * @param unit The unit with a seat released.
+     */
+    void promote(Unit unit) {
+        Waitlist waitlist = unit.getWaitlist();
+        if (recovering || waitlist.isEmpty()) {
+            return; // Promotions made before a restart are replayed from their own journal records
+        }
+        for (Waitlist.Entry entry : waitlist.entries()) {
+            if (unit.getSeatsTaken() >= unit.getCapacity()) {
+                return;
+            }
+            long start = System.nanoTime();
+            StudentEnrollmentSystem owner = shardOf(entry.getStudentId()); // Shards share the unit and its waitlist
+            Student student = owner.getStudent(entry.getStudentId());
+            EnrollmentResult result = student == null ? EnrollmentResult.STUDENT_NOT_FOUND
+                    : owner.enrol(student, unit, false);
+            switch (result) {
+                case SUCCESS:
+                    owner.finish(EnrollmentMetrics.Operation.PROMOTE, start, entry.getStudentId(), unit.getCode(), result);
+                    break;
+                case UNIT_LIMIT_REACHED:
+                case CREDIT_LIMIT_REACHED:
+                case TIMETABLE_CLASH:
+                case MISSING_COREQUISITES:
+                case PROHIBITED_UNIT:
+                    break; // Keeps their place in case they drop or take another unit
+                case UNIT_FULL:
+                case UNIT_NOT_FOUND:
+                    return;
+                default: // Not in the system any more, already enrolled or already completed
+                    owner.unwaitlist(entry.getStudentId(), unit, false);
+            }
+        }
+    }
+
+    /**
+     * Recovers the system from the snapshot and journal in the given directory and journals every mutation
+     * made from now on.
+     * <p>
+     * The snapshot is loaded first, then every journal record written after it is replayed in order. Any durable
+     * records the change log missed (if the system stopped between an fsync and the change log append) are then
+     * copied to it.
+     * </p>
+     *
+     * @param dataDirectory The directory holding the snapshot and journal files.
+     * @throws IOException If the snapshot or journal cannot be read or opened.
+     */
+    public void restore(File dataDirectory) throws IOException {
+        if (!dataDirectory.isDirectory() && !dataDirectory.mkdirs()) {
+            throw new IOException("Cannot create data directory '" + dataDirectory + "'.");
+        }
+        this.dataDirectory = dataDirectory;
+        recovering = true;
+        image = EnrollmentSnapshot.open(snapshotFile());
+        long[] lastSequence = {0};
+        if (image != null) {
+            for (Unit unit : image.getUnits()) {
+                Unit shared = share(unit);
+                if (shared != unit) { // Another shard's copy of the unit also holds this shard's waiting students
+                    unit.getWaitlist().entries().forEach(entry ->
+                            shared.getWaitlist().add(entry.getStudentId(), entry.getPriority()));
+                }
+                dictionary.register(shared);
+                UNITS.put(shared.getCode(), shared);
+                indexUnit(shared);
+            }
+            PREREQUISITES.addAll(UNITS.values());
+            COMPLETED.putAll(image.getCompletedUnits());
+            lastSequence[0] = image.getSequence();
+            if (!image.hasEnrolmentCounts()) {
+                hydrate(); // Class sizes can only be known by loading every student
+            }
+            for (Unit unit : UNITS.values()) {
+                unit.forceReserveSeats(getClassSize(unit.getCode()));
+            }
+        }
+        EnrollmentJournal.replay(journalFile(), lastSequence[0], (sequence, fields) -> {
+            apply(fields);
+            lastSequence[0] = sequence;
+        });
+        recovering = false;
+        changeLog = new ChangeLog(new File(dataDirectory, "changes"), CHANGE_SEGMENT_BYTES, CHANGE_SEGMENTS);
+        ByteArrayOutputStream missed = new ByteArrayOutputStream();
+        EnrollmentJournal.replay(journalFile(), changeLog.getLastSequence(),
+                (sequence, fields) -> missed.writeBytes(EnrollmentJournal.encode(sequence, fields)));
+        changeLog.append(missed.toByteArray());
+        journal = new EnrollmentJournal(journalFile(), lastSequence[0], 5);
+        journal.setChangeLog(changeLog);
+        auditLog = new AuditLog(new File(dataDirectory, "audit.log"), AUDIT_FILE_BYTES, AUDIT_FILES);
+        System.out.println("Recovered " + getStudentCount() + " student(s) and " + UNITS.size() + " unit(s).");
+    }
+
+    /**
+     * Writes a snapshot of the current state and truncates the journal up to it.
+     * <p>
+     * The snapshot is fuzzy: mutations may continue while it is written. Every journal record is idempotent, so
+     * replaying the records after the snapshot's sequence number still converges on the correct state.
+     * </p>
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        EnrollmentJournal journal = this.journal;
+        if (journal == null) {
+            return;
+        }
+        SNAPSHOT_LOCK.lock();
+        try {
+            // Writers carry on while the snapshot is written; changes after the sequence are replayed on recovery
+            long sequence = journal.getLastSequence();
+            if (image == null) {
+                EnrollmentSnapshot.write(snapshotFile(), null, UNITS.values(), STUDENTS.values(), COMPLETED, this::holds,
+                        sequence);
+            } else {
+                synchronized (image) { // Keeps records from moving between the image and the heap while merging
+                    EnrollmentSnapshot.write(snapshotFile(), image, UNITS.values(), STUDENTS.values(), COMPLETED,
+                            this::holds, sequence);
+                }
+            }
+            // Keeps records the change log has not yet copied to disk, so that recovery can copy them
+            ChangeLog changeLog = this.changeLog;
+            journal.truncate(changeLog == null ? sequence : Math.min(sequence, changeLog.sync()));
+        } finally {
+            SNAPSHOT_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the journal, the change log and the audit log, if they are open.
+     */
+    public void close() {
+        AuditLog auditLog = this.auditLog;
+        if (auditLog != null) {
+            this.auditLog = null;
+            auditLog.close();
+        }
+        EnrollmentJournal journal = this.journal;
+        if (journal != null) {
+            this.journal = null;
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Error: Unable to close the journal - " + e.getMessage());
+            }
+        }
+        ChangeLog changeLog = this.changeLog;
+        if (changeLog != null) { // After the journal, which passes it the records flushed on closing
+            this.changeLog = null;
+            changeLog.close();
+        }
+    }
+
+    /**
+     * Applies a journal record to the system without printing it. While recovering no journal is open, so the
+     * record is not journaled again.
+     *
+     * @param fields The fields of the record, the first being the operation name.
+     */
+    void apply(String[] fields) {
+        switch (fields[0]) {
+            case "ADD_STUDENT":
+                insertStudent(newStudent(fields[1].charAt(0), fields[2], fields[3], fields[4], fields[5], fields[6],
+                        fields[7]), false);
+                break;
+            case "REMOVE_STUDENT":
+                deleteStudent(fields[1], false);
+                break;
+            case "ADD_UNIT":
+                insertUnit(share(unitFromRecord(fields)), false);
+                break;
+            case "REMOVE_UNIT":
+                deleteUnit(fields[1], false);
+                break;
+            case "ENROL":
+                Student enrolled = getStudent(fields[1]);
+                Unit unit = UNITS.get(fields[2]);
+                if (enrolled != null && unit != null) {
+                    enrol(enrolled, unit, false);
+                }
+                break;
+            case "ENROL_ALL": // Checked as a whole before it was written, so each enrollment is simply redone
+                redoAll(fields, 1);
+                break;
+            case "PREPARE_ALL": // This shard's part of a batch spanning shards, made once committed
+                PREPARED_BATCHES.put(fields[1], fields);
+                break;
+            case "COMMIT_ALL":
+                COMMITTED_BATCHES.add(fields[1]);
+                String[] prepared = PREPARED_BATCHES.remove(fields[1]);
+                if (prepared != null) {
+                    redoAll(prepared, 3);
+                }
+                break;
+            case "ABORT_ALL":
+                PREPARED_BATCHES.remove(fields[1]);
+                break;
+            case "WAITLIST":
+                Student waiting = getStudent(fields[1]);
+                Unit wanted = UNITS.get(fields[2]);
+                if (waiting != null && wanted != null) {
+                    waitlist(waiting, wanted, Integer.parseInt(fields[3]), false);
+                }
+                break;
+            case "UNWAITLIST":
+                Unit unwanted = UNITS.get(fields[2]);
+                if (unwanted != null) {
+                    unwaitlist(fields[1], unwanted, false);
+                }
+                break;
+            case "DROP":
+                Student dropped = getStudent(fields[1]);
+                if (dropped != null) {
+                    withdraw(dropped, fields[2], false);
+                }
+                break;
+            case "COMPLETE":
+                Student graduate = getStudent(fields[1]);
+                if (graduate != null) {
+                    complete(graduate, fields[2], false);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal record '" + fields[0] + "'.");
+        }
+    }
+
+    /**
+     * Redoes the enrollments of a batch record, listed as student ID and unit code pairs from the given field on.
+     */
+    private void redoAll(String[] fields, int from) {
+        for (int i = from; i + 1 < fields.length; i += 2) {
+            Student member = getStudent(fields[i]);
+            Unit memberUnit = UNITS.get(fields[i + 1]);
+            if (member != null && memberUnit != null) {
+                enrol(member, memberUnit, false);
+            }
+        }
+    }
+
+    /**
+     * Applies a bulk-imported record without printing it. The record is appended to the journal without waiting
+     * for it to be fsynced; see {@link #syncImported()}.
+     *
+     * @param fields The fields of the record, the first being the operation name.
+     * @return Null if the record was applied, otherwise the reason it was rejected.
+     */
+    String importRecord(String[] fields) {
+        switch (fields[0]) {
+            case "ADD_STUDENT":
+                Student newStudent = newStudent(fields[1].charAt(0), fields[2], fields[3], fields[4], fields[5],
+                        fields[6], fields[7]);
+                boolean studentAdded = insertStudent(newStudent, false);
+                audit(EnrollmentMetrics.Operation.CREATE_STUDENT, fields[2], null,
+                        studentAdded ? EnrollmentResult.SUCCESS : EnrollmentResult.STUDENT_EXISTS);
+                return studentAdded ? null : "Student ID '" + fields[2] + "' already exists.";
+            case "ADD_UNIT":
+                Unit newUnit = unitFromRecord(fields);
+                boolean unitAdded;
+                try {
+                    unitAdded = insertUnit(newUnit, false);
+                } catch (IllegalArgumentException e) {
+                    audit(EnrollmentMetrics.Operation.CREATE_UNIT, null, fields[1], EnrollmentResult.PREREQUISITE_CYCLE);
+                    return e.getMessage();
+                }
+                audit(EnrollmentMetrics.Operation.CREATE_UNIT, null, fields[1],
+                        unitAdded ? EnrollmentResult.SUCCESS : EnrollmentResult.UNIT_EXISTS);
+                return unitAdded ? null : "Unit '" + fields[1] + "' already exists.";
+            case "ENROL":
+                Student student = getStudent(fields[1]);
+                Unit unit = UNITS.get(fields[2]);
+                EnrollmentResult enrolled = student == null ? EnrollmentResult.STUDENT_NOT_FOUND
+                        : unit == null ? EnrollmentResult.UNIT_NOT_FOUND : enrol(student, unit, false);
+                audit(EnrollmentMetrics.Operation.ENROLL, fields[1], fields[2], enrolled);
+                switch (enrolled) {
+                    case SUCCESS:
+                        return null;
+                    case ALREADY_ENROLLED:
+                        return "Student '" + fields[1] + "' is already enrolled in the unit '" + fields[2] + "'.";
+                    case UNIT_FULL:
+                        return "Unit '" + fields[2] + "' is full.";
+                    case STUDENT_NOT_FOUND:
+                        return "Student '" + fields[1] + "' not found.";
+                    case UNIT_NOT_FOUND:
+                        return "Unit '" + fields[2] + "' not found.";
+                    case UNIT_LIMIT_REACHED:
+                    case CREDIT_LIMIT_REACHED:
+                    case TIMETABLE_CLASH:
+                    case MISSING_PREREQUISITES:
+                    case MISSING_COREQUISITES:
+                    case PROHIBITED_UNIT:
+                    case ALREADY_COMPLETED:
+                        return "Student '" + fields[1] + "': " + describe(enrolled, fields[1], fields[2]);
+                    default:
+                        return "Student '" + fields[1] + "' or unit '" + fields[2] + "' was removed during the import.";
+                }
+            case "COMPLETE":
+                Student graduate = getStudent(fields[1]);
+                EnrollmentResult completed = graduate == null ? EnrollmentResult.STUDENT_NOT_FOUND
+                        : !UNITS.containsKey(fields[2]) ? EnrollmentResult.UNIT_NOT_FOUND
+                        : complete(graduate, fields[2], false);
+                audit(EnrollmentMetrics.Operation.COMPLETE_UNIT, fields[1], fields[2], completed);
+                return completed.isSuccess() || completed == EnrollmentResult.ALREADY_COMPLETED ? null
+                        : describe(completed, fields[1], fields[2]);
+            default:
+                return "Records of type '" + fields[0] + "' cannot be imported.";
+        }
+    }
+
+    /**
+     * Blocks until every imported record is durable in the journal, then takes a snapshot if one is due.
+     */
+    void syncImported() {
+        EnrollmentJournal journal = this.journal;
+        if (journal != null) {
+            awaitJournal(journal.getLastSequence(), true);
+        }
+    }
 
     /**
-     * Initializes the Student Enrollment System with an administrator.
+     * Builds the journal record describing a student.
      *
-     * @param admin The administrator managing the system.
+     * @param student The student.
+     * @return The record fields.
      */
-    public StudentEnrollmentSystem(Administrator admin) {
-        this.admin = admin;
+    static String[] studentRecord(Student student) {
+        String advisor = student instanceof PartTimeStudent ? ((PartTimeStudent) student).getCourseAdvisor() : null;
+        return new String[] {"ADD_STUDENT", student instanceof PartTimeStudent ? "P" : "F", student.getId(),
+                student.getName(), student.getAddress(), student.getPhone(), student.getEmail(), advisor};
     }
 
     /**
-     * Displays a standard header before each menu.
+     * Builds the journal record describing a unit.
      *
-     * @param pageName The name of the current page to display in the header.
+     * @param unit The unit.
+     * @return The record fields.
      */
-    public void displayHeader(String pageName) {
-        String header = "\n---------------------------------\n" +
-                "|         FIT5136 Demo           |\n" +
-                "|    Student Enrolment System    |\n" +
-                "---------------------------------\n" +
-                " -- Current Page: " + pageName + " --";
+    static String[] unitRecord(Unit unit) {
+        Requisites requisites = unit.getRequisites();
+        return new String[] {"ADD_UNIT", unit.getCode(), unit.getTitle(), Integer.toString(unit.getCreditPoints()),
+                Integer.toString(unit.getCapacity()), unit.getTimetable().toString(),
+                Requisites.join(requisites.getPrerequisites()), Requisites.join(requisites.getCorequisites()),
+                Requisites.join(requisites.getProhibitions())};
+    }
 
-        System.out.println(header);
+    /**
+     * Creates a unit from its journal record. Records written before units had a capacity have no seat limit,
+     * those written before units had a timetable have no class sessions, and those written before units had
+     * requisites have none.
+     *
+     * @param fields The record fields.
+     * @return The unit.
+     */
+    static Unit unitFromRecord(String[] fields) {
+        int capacity = fields.length > 4 && fields[4] != null ? Integer.parseInt(fields[4]) : Unit.UNLIMITED;
+        Timetable timetable = fields.length > 5 ? Timetable.parse(fields[5]) : Timetable.NONE;
+        Requisites requisites = fields.length > 8 ? Requisites.parse(fields[6], fields[7], fields[8]) : Requisites.NONE;
+        return new Unit(fields[1], fields[2], Integer.parseInt(fields[3]), capacity, timetable, requisites);
     }
 
     /**
-     * Retrieves the map of Students in the system.
+     * Appends a mutation to the journal, if one is open, without waiting for it to be durable.
      *
-     * @return A map of student IDs to Student objects.
+     * @param fields The fields of the record, the first being the operation name.
+     * @return The sequence number of the record, or 0 if there is no journal.
      */
-    public Map<String, Student> getStudents() {
-        return STUDENTS;
+    private long append(String... fields) {
+        EnrollmentJournal journal = this.journal;
+        return journal == null ? 0 : journal.append(fields);
     }
 
     /**
-     * Adds a student to the system if the student ID does not already exist.
+     * Optionally waits for a journal record to be durable, then takes a snapshot if one is due. Called once the
+     * student's lock has been released, so other requests are not held up by the fsync.
      *
-     * @param student The student to be added.
+     * @param sequence The sequence number of the record.
+     * @param sync True to wait for the record to be durable.
      */
-    public void addStudent(Student student) {
-        String studentId = student.getId();
-        if (STUDENTS.containsKey(studentId)) {
-            System.out.println("Error: Student ID '" + studentId + "' already exists. Cannot add new student with this ID.");
-        } else {
-            STUDENTS.put(studentId, student);
-            System.out.println("Student '" + studentId + "' added successfully.");
+    private void awaitJournal(long sequence, boolean sync) {
+        EnrollmentJournal journal = this.journal;
+        if (journal == null || sequence == 0 || !sync) {
+            return;
+        }
+        journal.awaitDurable(sequence);
+        if (journal.getRecordsSinceSnapshot() >= Math.max(SNAPSHOT_INTERVAL, getStudentCount())
+                && SNAPSHOT_LOCK.tryLock()) { // Skip if another thread is already taking the snapshot
+            try {
+                snapshot();
+            } catch (IOException e) {
+                System.out.println("Error: Unable to write snapshot - " + e.getMessage());
+            } finally {
+                SNAPSHOT_LOCK.unlock();
+            }
         }
     }
 
+    /**
+     * Materializes every student still only held in the snapshot, for operations that need the whole population.
+     */
+    private void hydrate() {
+        if (image == null) {
+            return;
+        }
+        synchronized (image) {
+            for (Student student : image.materializeAll(UNITS, columnStore)) {
+                register(student);
+            }
+        }
+    }
 
     /**
-     * Removes a student from the system by their ID if they exist.
+     * Makes sure every student enrolled in a unit has been materialized from the snapshot, so that the unit's
+     * roster is complete.
      *
-     * @param studentId The ID of the student to be removed.
+     * @param unitCode The code of the unit.
      */
-    public void removeStudent(String studentId) {
-        if (studentExists(studentId)) {
-            STUDENTS.remove(studentId);
-            System.out.println("Student with ID '" + studentId + "' has been removed.");
-        } else {
-            System.out.println("Unable to remove student with ID '" + studentId + "' as they do not exist.");
+    private void materializeRoster(String unitCode) {
+        if (image != null && image.getUnmaterializedEnrolments(unitCode) > 0) {
+            hydrate();
         }
     }
 
     /**
-     * Checks if a student exists in the system by their ID.
+     * Adds a student to the system's map and indexes without printing or journaling it.
      *
-     * @param studentId The ID of the student.
-     * @return True if the student exists, false otherwise.
+     * @param student The student.
      */
-    public boolean studentExists(String studentId) {
-        return STUDENTS.containsKey(studentId);
+    private void register(Student student) {
+        STUDENTS.put(student.getId(), student);
+        STUDENT_ORDER.add(student.getId());
+        student.setEnrollmentSystem(this);
+        ROSTERS.addStudent(student);
+        publish(view -> view.withStudent(student));
+        SearchIndex search = studentSearch;
+        if (search != null) {
+            search.add(student.getId(), student.getId(), student.getName(), student.getEmail());
+        }
     }
 
     /**
-     * Adds a unit to the system if the unit name does not already exist.
+     * Adds a unit already in the system's map to the ordered and search indexes.
      *
-     * @param unit The unit to be added.
+     * @param unit The unit.
      */
-    public void addUnit(Unit unit) {
-        String unitName = unit.getCode();
-        if (UNITS.containsKey(unitName)) {
-            System.out.println("Error: Unit name '" + unitName + "' already exists. Cannot add new unit with this name.");
-        } else {
-            UNITS.put(unitName, unit);
-            System.out.println("Unit '" + unitName + "' added successfully.");
+    private void indexUnit(Unit unit) {
+        UNIT_ORDER.add(unit.getCode());
+        UNIT_SEARCH.add(unit.getCode(), unit.getCode(), unit.getTitle());
+    }
+
+    /**
+     * Removes a student from the system's map and indexes without printing or journaling it.
+     *
+     * @param student The student.
+     */
+    private void unregister(Student student) {
+        STUDENTS.remove(student.getId());
+        STUDENT_ORDER.remove(student.getId());
+        COMPLETED.remove(student.getId());
+        student.setEnrollmentSystem(null);
+        ROSTERS.removeStudent(student);
+        publish(view -> view.withoutStudent(student.getId()));
+        SearchIndex search = studentSearch;
+        if (search != null) {
+            search.remove(student.getId(), student.getId(), student.getName(), student.getEmail());
         }
+        student.getUnits().forEach(Unit::releaseSeat);
+        student.clearEnrolments();
     }
 
+    /**
+     * Publishes the next point-in-time view, if views are in use. Called under the lock that guards the change
+     * (the students' locks, or the catalogue), so the view is built from a state no other change can alter.
+     *
+     * @param change Makes the next view from the current one; may run more than once if another change publishes
+     *               first.
+     */
+    private void publish(UnaryOperator<EnrollmentView> change) {
+        EnrollmentView view;
+        do {
+            view = VIEW.get();
+        } while (view != null && !VIEW.compareAndSet(view, change.apply(view)));
+    }
+
+    /*
+     * Sharding. A ShardRouter spreads students over several systems that share one set of unit objects, so seats
+     * and waitlists are counted once for all of them. These hooks let a shard find the others.
+     */
 
     /**
-     * Checks if a unit is available in the system by its name.
+     * Makes this system a shard of a router, which decides from then on which students it holds. Called before
+     * the shard is restored or used.
      *
-     * @param unit The unit to check.
-     * @return True if the unit is available, false otherwise.
+     * @param router The router.
      */
-    public boolean isUnitAvailable(Unit unit) {
-        return UNITS.containsKey(unit.getCode());
+    void setRouter(ShardRouter router) {
+        this.router = router;
+        this.dictionary = router.getDictionary();
     }
 
     /**
-     * Adds a unit to a student's list of units with confirmation.
+     * Returns the system that holds a student: this one, unless it is a shard.
      *
      * @param studentId The ID of the student.
-     * @param unit The unit to be added.
+     * @return The system.
      */
-    public void addUnitToStudent(String studentId, Unit unit) {
-        if (studentExists(studentId)) { // Check if student exists
-            Student student = STUDENTS.get(studentId);
-
-            // Check if student is already enrolled in the unit
-            if (student.getUnits().contains(unit)) {
-                System.out.println("Student is already enrolled in the unit '" + unit.getCode() + "'.");
-                return;
-            }
+    private StudentEnrollmentSystem shardOf(String studentId) {
+        ShardRouter router = this.router;
+        return router == null ? this : router.shardFor(studentId);
+    }
 
-            // Check if student is already enrolled in 4 units
-            if (student.getUnits().size() >= 4) {
-                System.out.println("Student is already enrolled in the maximum number of units (4 units).");
-                return;
-            }
+    private boolean holds(String studentId) {
+        return shardOf(studentId) == this;
+    }
 
-            System.out.print("Confirm enrollment in unit '" + unit.getCode() + "' (Y/N): ");
-            String confirmation = SCANNER.nextLine().trim().toUpperCase();
+    /**
+     * Returns the unit object shared by every shard for a unit being recovered, so that they count its seats
+     * together.
+     *
+     * @param unit The unit as recovered by this system.
+     * @return The shared unit, or the given unit if no other shard has one with the same code.
+     */
+    private Unit share(Unit unit) {
+        ShardRouter router = this.router;
+        return router == null ? unit : router.share(this, unit);
+    }
 
-            if (confirmation.equals("Y")) { // Confirm action
-                student.addUnit(unit, this);
-                System.out.println("\nEnrolled in unit '" + unit.getCode() + "' successfully.");
-            } else {
-                System.out.println("\nEnrollment in unit '" + unit.getCode() + "' cancelled.");
+    /**
+     * Hands a student over to another shard, with their enrollments, completed units and waitlist places. The
+     * other shard takes the student's seats before this one gives them up, so a seat is never free to be taken
+     * twice. If the other shard already holds the student (after a hand-over interrupted by a crash), this shard's
+     * copy is simply dropped. Nobody is promoted to the seats; see {@link #promoteWaiting()}.
+     *
+     * @param studentId The ID of the student.
+     * @param target The shard that holds the student from now on.
+     * @param waiting The units the student is waiting for, with the priority they joined with.
+     * @return True if this shard held the student.
+     */
+    boolean handOver(String studentId, StudentEnrollmentSystem target, Map<Unit, Integer> waiting) {
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            Student student = getStudent(studentId);
+            if (student == null) {
+                return false;
             }
-        } else {
-            System.out.println("\nStudent not found.");
+            if (target.getStudent(studentId) == null) {
+                target.adopt(student, COMPLETED.getOrDefault(studentId, CompletedUnits.NONE), waiting);
+            }
+            unregister(student); // Waitlist places stay on the shared units
+            append("REMOVE_STUDENT", studentId);
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
         }
+        return true;
     }
 
     /**
-     * Removes a unit from a student's list of units with confirmation.
+     * Takes over a student handed over by another shard, journaling them as if they had been created here.
      *
-     * @param studentId The ID of the student.
-     * @param unitName The name of the unit to be removed.
+     * @param student The student, as held by the other shard.
+     * @param completed The units the student has completed.
+     * @param waiting The units the student is waiting for, with their priority.
      */
-    public void removeUnitFromStudent(String studentId, String unitName) {
-        if (studentExists(studentId)) { // Check if student exists
-            Student student = STUDENTS.get(studentId);
-            Set<Unit> enrolledUnits = student.getUnits();
-
-            // Ensure the set contains the unit by its name
-            Unit unitToRemove = null;
-            for (Unit unit : enrolledUnits) {
-                if (unit.getCode().equals(unitName)) {
-                    unitToRemove = unit;
-                    break;
+    private void adopt(Student student, CompletedUnits completed, Map<Unit, Integer> waiting) {
+        String[] record = studentRecord(student);
+        Student copy = newStudent(record[1].charAt(0), record[2], record[3], record[4], record[5], record[6], record[7]);
+        String studentId = copy.getId();
+        STUDENT_LOCKS.lock(studentId);
+        try {
+            register(copy);
+            append(record);
+            if (!completed.isEmpty()) {
+                COMPLETED.put(studentId, completed);
+            }
+            for (String unitCode : completed.getCodes()) {
+                append("COMPLETE", studentId, unitCode);
+            }
+            for (Unit unit : student.getUnits()) {
+                if (UNITS.get(unit.getCode()) == unit && copy.addEnrolment(unit)) {
+                    unit.forceReserveSeat(); // Given up by the other shard once this one holds it
+                    ROSTERS.add(unit.getCode(), studentId);
+                    append("ENROL", studentId, unit.getCode());
                 }
             }
+            publish(view -> view.withStudent(copy));
+            waiting.forEach((unit, priority) -> append("WAITLIST", studentId, unit.getCode(), Integer.toString(priority)));
+        } finally {
+            STUDENT_LOCKS.unlock(studentId);
+        }
+    }
 
-            if (unitToRemove != null) { // Unit found
-                System.out.print("Confirm removal of unit '" + unitName + "' (Y/N): ");
-                String confirmation = SCANNER.nextLine().trim().toUpperCase();
+    /**
+     * Offers the free seats of every unit to the students waiting for them, e.g. after shards were rebalanced.
+     */
+    void promoteWaiting() {
+        UNITS.values().forEach(this::promote);
+    }
 
-                if (confirmation.equals("Y")) { // Confirm action
-                    student.removeUnit(unitName);
-                } else {
-                    System.out.println("Removal of unit '" + unitName + "' cancelled.");
-                }
-            } else {
-                System.out.println("Student isn't currently enrolled in the unit '" + unitName + "'.");
+    /**
+     * Builds the student search index. The index is published before it is filled, so students registered while it
+     * is being built are indexed by {@link #register(Student)} and none are missed.
+     *
+     * @return The student search index.
+     */
+    private synchronized SearchIndex buildStudentSearch() {
+        if (studentSearch == null) {
+            SearchIndex search = new SearchIndex();
+            studentSearch = search;
+            hydrate();
+            for (Student student : STUDENTS.values()) {
+                search.add(student.getId(), student.getId(), student.getName(), student.getEmail());
             }
-        } else {
-            System.out.println("Student not found.");
         }
+        return studentSearch;
     }
 
     /**
-     * Lists all units currently enrolled by a student.
+     * Prompts for a search and prints the matching students, or every student if the search is left blank.
+     */
+    private void promptStudentSearch() {
+        System.out.print("Search by student ID, name or email (blank to list all): ");
+        String query = SCANNER.nextLine().trim();
+        if (query.isEmpty()) {
+            printPages(after -> getStudentPage(after, PAGE_SIZE), "No students currently enrolled.");
+            return;
+        }
+        List<Student> matches = searchStudents(query, SEARCH_LIMIT);
+        if (matches.isEmpty()) {
+            System.out.println("No students match '" + query + "'.");
+        }
+        for (Student student : matches) {
+            System.out.println(student);
+        }
+    }
+
+    /**
+     * Prompts for a search and prints the matching units, or every unit if the search is left blank.
+     */
+    private void promptUnitSearch() {
+        System.out.print("Search by unit code or title (blank to list all): ");
+        String query = SCANNER.nextLine().trim();
+        if (query.isEmpty()) {
+            printPages(after -> getUnitPage(after, PAGE_SIZE), "No units currently available.");
+            return;
+        }
+        List<Unit> matches = searchUnits(query, SEARCH_LIMIT);
+        if (matches.isEmpty()) {
+            System.out.println("No units match '" + query + "'.");
+        }
+        for (Unit unit : matches) {
+            System.out.println(unit);
+        }
+    }
+
+    /**
+     * Prints a listing a page at a time, asking before each further page.
      *
-     * @param studentId The ID of the student.
+     * @param pages Fetches the page after the given cursor (null for the first page).
+     * @param empty The message to print if the listing is empty.
      */
-    public void listStudentUnits(String studentId) {
-        if (studentExists(studentId)) { // Check if student exists
-            Student student = STUDENTS.get(studentId);
-            student.listUnits();
-        } else {
-            System.out.println("Student not found.");
+    private <T> void printPages(Function<String, Page<T>> pages, String empty) {
+        Page<T> page = pages.apply(null);
+        if (page.getItems().isEmpty()) {
+            System.out.println(empty);
+            return;
+        }
+        while (true) {
+            for (T item : page.getItems()) {
+                System.out.println(item);
+            }
+            if (!page.hasNext()) {
+                return;
+            }
+            page = pages.apply(page.getNextCursor());
+            if (page.getItems().isEmpty()) {
+                return;
+            }
+            System.out.print("Press Enter for more or 'B' to stop: ");
+            if (SCANNER.nextLine().trim().equalsIgnoreCase("B")) {
+                return;
+            }
+        }
+    }
+
+    private File snapshotFile() {
+        return new File(dataDirectory, "enrollment.snapshot");
+    }
+
+    private File journalFile() {
+        return new File(dataDirectory, "enrollment.journal");
+    }
+
+    /**
+     * Bulk imports students, units and enrollments from a CSV or JSONL file and prints a summary.
+     *
+     * @param file The file to import.
+     */
+    public void importFile(File file) {
+        try {
+            long start = System.nanoTime();
+            BulkImporter.Report report = new BulkImporter(this).importFile(file);
+            System.out.println(report + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            report.getErrors().stream().limit(20).forEach(System.out::println);
+            if (report.getRejected() > 20) {
+                System.out.println("... and " + (report.getRejected() - 20) + " more error(s).");
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Unable to import '" + file + "' - " + e.getMessage());
         }
     }
 
     /**
-     * Retrieves all units in the system.
+     * Writes the operation metrics to a file as JSON, reporting the outcome to the console.
      *
-     * @return A collection of units.
+     * @param file The file to write.
      */
-    public Collection<Unit> getUnits() {
-        return UNITS.values();
+    private void saveMetrics(File file) {
+        try {
+            Files.writeString(file.toPath(), METRICS.toJson());
+            System.out.println("Metrics saved to '" + file + "'.");
+        } catch (IOException e) {
+            System.out.println("Error: Unable to save metrics to '" + file + "' - " + e.getMessage());
+        }
     }
 
     /**
@@ -257,6 +2561,7 @@ public class StudentEnrollmentSystem {
             System.out.println("Student does not exist in the enrollment system.");
             return;
         }
+        AuditLog.setActor("student:" + studentId);
 
         while (true) {
             displayHeader("Student Menu");
@@ -291,7 +2596,7 @@ public class StudentEnrollmentSystem {
                     System.out.println("\nUnits Enrolled:"+"\n-----------------");
                     listStudentUnits(studentId);
 
-                    Student student = STUDENTS.get(studentId);
+                    Student student = getStudent(studentId);
                     if (student == null || student.getUnits().isEmpty()) { // Check if student has units
                         System.out.println("Not enrolled in any Units.");
                         break; // Return to student menu
@@ -327,6 +2632,7 @@ public class StudentEnrollmentSystem {
      * Provides the menu for administrator interactions.
      */
     private void adminMenu() {
+        AuditLog.setActor(admin == null ? "admin" : "admin:" + admin.getName());
         while (true) {
             displayHeader("Administrator Menu");
             System.out.println("\nAdministrator Menu:");
@@ -339,6 +2645,12 @@ public class StudentEnrollmentSystem {
             System.out.println("7. Back to Main Menu");
             System.out.println("8. Add Unit to Student");  // New option
             System.out.println("9. Remove Unit from Student");  // New option
+            System.out.println("10. Bulk Import from File");
+            System.out.println("11. List Students Enrolled in Unit");
+            System.out.println("12. Show Operation Metrics");
+            System.out.println("13. Enroll Students in Units");
+            System.out.println("14. Record Completed Unit");
+            System.out.println("15. Show Enrollment Reports");
             System.out.println("0. Exit");
             System.out.print("Enter choice: ");
             int adminChoice = SCANNER.nextInt();
@@ -376,14 +2688,10 @@ public class StudentEnrollmentSystem {
                 case 2:
                     // Remove a student
                     displayHeader("Admin Menu: Remove Student");
-                    System.out.println("\nCurrent Students:" + "\n-----------------");
-                    List<Student> studentList = new ArrayList<>(STUDENTS.values());
-                    if (studentList.isEmpty()) {
+                    if (getStudentCount() == 0) {
                         System.out.println("No students currently enrolled.");
                     } else {
-                        for (Student student : studentList) {
-                            System.out.println(student);
-                        }
+                        promptStudentSearch();
                         System.out.print("\nEnter Student ID to Remove: ");
                         String studentIdToRemove = SCANNER.nextLine();
                         System.out.print("Confirm removal of student '" + studentIdToRemove + "' (Y/N): ");
@@ -411,8 +2719,36 @@ public class StudentEnrollmentSystem {
                         System.out.println("Invalid input for credit points. Returning to Main Menu.");
                         break;
                     }
+                    System.out.print("Enter Seat Capacity (blank for unlimited): ");
+                    String newUnitCapacityInput = SCANNER.nextLine().trim();
+                    int newUnitCapacity = Unit.UNLIMITED;
+                    if (!newUnitCapacityInput.isEmpty()) {
+                        try {
+                            newUnitCapacity = Integer.parseInt(newUnitCapacityInput);
+                        } catch (NumberFormatException e) {
+                            System.out.println("Invalid input for seat capacity. Returning to Main Menu.");
+                            break;
+                        }
+                    }
+
+                    System.out.print("Enter Class Sessions, e.g. MON 09:00-11:00; WED 14:00-15:00 (blank for none): ");
+                    Timetable newUnitTimetable;
+                    try {
+                        newUnitTimetable = Timetable.parse(SCANNER.nextLine());
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage() + " Returning to Main Menu.");
+                        break;
+                    }
 
-                    Unit newUnit = new Unit(newUnitName, newUnitTitle, newUnitPoints);
+                    System.out.print("Enter Prerequisite Unit Codes (separated by spaces, blank for none): ");
+                    String newUnitPrerequisites = SCANNER.nextLine();
+                    System.out.print("Enter Co-requisite Unit Codes (separated by spaces, blank for none): ");
+                    String newUnitCorequisites = SCANNER.nextLine();
+                    System.out.print("Enter Prohibited Unit Codes (separated by spaces, blank for none): ");
+                    String newUnitProhibitions = SCANNER.nextLine();
+
+                    Unit newUnit = new Unit(newUnitName, newUnitTitle, newUnitPoints, newUnitCapacity, newUnitTimetable,
+                            Requisites.parse(newUnitPrerequisites, newUnitCorequisites, newUnitProhibitions));
                     System.out.print("Confirm creation of unit '" + newUnitName + "' to the system (Y/N): ");
                     String addUnitConfirmation = SCANNER.nextLine().trim().toUpperCase();
                     if (addUnitConfirmation.equals("Y")) {
@@ -425,23 +2761,14 @@ public class StudentEnrollmentSystem {
                 case 4:
                     // Remove a unit
                     displayHeader("Admin Menu: Remove Unit");
-                    System.out.println("\nCurrent Units:" + "\n-----------------");
-                    List<Unit> unitList = new ArrayList<>(UNITS.values());
-                    if (unitList.isEmpty()) {
-                        System.out.println("No units currently available.");
-                    } else {
-                        for (Unit unit : unitList) {
-                            System.out.println(unit);
-                        }
-                    }
+                    promptUnitSearch();
                     System.out.print("\nEnter Unit Code to Remove: ");
                     String unitNameToRemove = SCANNER.nextLine().trim();
                     if (UNITS.containsKey(unitNameToRemove)) {
                         System.out.print("Confirm removal of unit '" + unitNameToRemove + "' (Y/N): ");
                         String removeUnitConfirmation = SCANNER.nextLine().trim().toUpperCase();
                         if (removeUnitConfirmation.equals("Y")) {
-                            UNITS.remove(unitNameToRemove);
-                            System.out.println("Unit '" + unitNameToRemove + "' removed successfully.");
+                            removeUnit(unitNameToRemove);
                         } else {
                             System.out.println("Operation cancelled.");
                         }
@@ -453,15 +2780,7 @@ public class StudentEnrollmentSystem {
                 case 5:
                     // List all students
                     displayHeader("Admin Menu: List All Students");
-                    System.out.println("\nCurrent Students:" + "\n-----------------");
-                    studentList = new ArrayList<>(STUDENTS.values());
-                    if (studentList.isEmpty()) {
-                        System.out.println("No students currently enrolled.");
-                    } else {
-                        for (Student student : studentList) {
-                            System.out.println(student);
-                        }
-                    }
+                    promptStudentSearch();
                     System.out.println("\nPress any key or 'B' to return to the Menu.");
                     SCANNER.nextLine();  // Wait for user input
                     break;
@@ -470,14 +2789,7 @@ public class StudentEnrollmentSystem {
                     // List all units
                     displayHeader("Admin Menu: List All Units");
                     System.out.println("\nCurrent Units:" + "\n-----------------");
-                    unitList = new ArrayList<>(UNITS.values());
-                    if (unitList.isEmpty()) {
-                        System.out.println("No units currently available.");
-                    } else {
-                        for (Unit unit : unitList) {
-                            System.out.println(unit);
-                        }
-                    }
+                    printPages(after -> getUnitPage(after, PAGE_SIZE), "No units currently available.");
                     System.out.println("\nPress any key or 'B' to return to the Menu.");
                     SCANNER.nextLine();  // Wait for user input
                     break;
@@ -488,23 +2800,11 @@ public class StudentEnrollmentSystem {
                 case 8:
                     // Add Unit to Student
                     displayHeader("Admin Menu: Add Unit to Student");
-                    System.out.println("\nCurrent Students:" + "\n-----------------");
-                    studentList = new ArrayList<>(STUDENTS.values());
-                    if (studentList.isEmpty()) {
-                        System.out.println("No students currently enrolled.");
-                        return;
-                    } else {
-                        for (Student student : studentList) {
-                            System.out.println(student);
-                        }
-                    }
+                    promptStudentSearch();
                     System.out.print("\nStudent ID: ");
                     String studentId = SCANNER.nextLine().trim();
                     if (studentExists(studentId)) {
-                        System.out.println("\nAvailable Units:" + "\n-----------------");
-                        for (Unit unit : UNITS.values()) {
-                            System.out.println(unit);
-                        }
+                        promptUnitSearch();
                         System.out.print("\nEnter Unit Code to Enroll: ");
                         String unitName = SCANNER.nextLine().trim();
                         Unit unitToAdd = UNITS.get(unitName);
@@ -521,22 +2821,13 @@ public class StudentEnrollmentSystem {
                 case 9:
                     // Remove Unit from Student
                     displayHeader("Admin Menu: Remove Unit from Student");
-                    System.out.println("\nCurrent Students:" + "\n-----------------");
-                    studentList = new ArrayList<>(STUDENTS.values());
-                    if (studentList.isEmpty()) {
-                        System.out.println("No students currently enrolled.");
-                        return;
-                    } else {
-                        for (Student student : studentList) {
-                            System.out.println(student);
-                        }
-                    }
+                    promptStudentSearch();
                     System.out.print("\nEnter Student ID: ");
                     studentId = SCANNER.nextLine().trim();
                     if (studentExists(studentId)) {
                         System.out.println("\nStudent's Current Units:"+"\n-----------------");
                         listStudentUnits(studentId);
-                        if( !STUDENTS.get(studentId).getUnits().isEmpty() ){
+                        if( !getStudent(studentId).getUnits().isEmpty() ){
                             System.out.print("\nEnter Unit Code to Remove: ");
                             String unitNameToRemoveFromStudent = SCANNER.nextLine().trim();
                             removeUnitFromStudent(studentId, unitNameToRemoveFromStudent);
@@ -552,6 +2843,87 @@ public class StudentEnrollmentSystem {
                     }
                     break;
 
+                case 10:
+                    // Bulk import students, units and enrollments
+                    displayHeader("Admin Menu: Bulk Import from File");
+                    System.out.print("Enter path of CSV or JSONL file: ");
+                    importFile(new File(SCANNER.nextLine().trim()));
+                    System.out.println("\nPress any key or 'B' to return to the Menu.");
+                    SCANNER.nextLine();  // Wait for user input
+                    break;
+
+                case 11:
+                    // List the roster of a unit
+                    displayHeader("Admin Menu: List Students Enrolled in Unit");
+                    System.out.println("\nCurrent Units:" + "\n-----------------");
+                    for (Unit unit : UNITS.values()) {
+                        System.out.println(unit + " - " + getClassSize(unit.getCode()) + " enrolled");
+                    }
+                    System.out.print("\nEnter Unit Code: ");
+                    String rosterUnitCode = SCANNER.nextLine().trim();
+                    System.out.println("\nEnrolled Students:" + "\n-----------------");
+                    listRoster(rosterUnitCode);
+                    System.out.println("\nPress any key or 'B' to return to the Menu.");
+                    SCANNER.nextLine();  // Wait for user input
+                    break;
+
+                case 12:
+                    // Show latencies and outcomes of every operation
+                    displayHeader("Admin Menu: Operation Metrics");
+                    System.out.print(METRICS);
+                    System.out.print("\nEnter a file to save the metrics as JSON (blank to skip): ");
+                    String metricsFile = SCANNER.nextLine().trim();
+                    if (!metricsFile.isEmpty()) {
+                        saveMetrics(new File(metricsFile));
+                    }
+                    break;
+
+                case 13:
+                    // Enroll a whole cohort at once, all or nothing
+                    displayHeader("Admin Menu: Enroll Students in Units");
+                    promptUnitSearch();
+                    System.out.print("\nEnter Unit Codes to Enroll in (separated by spaces or commas): ");
+                    String[] cohortUnits = SCANNER.nextLine().trim().split("[\\s,]+");
+                    System.out.print("Enter Student IDs (separated by spaces or commas): ");
+                    String[] cohortStudents = SCANNER.nextLine().trim().split("[\\s,]+");
+                    EnrollmentBatch cohort = new EnrollmentBatch();
+                    for (String cohortStudent : cohortStudents) {
+                        for (String cohortUnit : cohortUnits) {
+                            if (!cohortStudent.isEmpty() && !cohortUnit.isEmpty()) {
+                                cohort.add(cohortStudent, cohortUnit);
+                            }
+                        }
+                    }
+                    System.out.print("Confirm " + cohort.size() + " enrollment(s) (Y/N): ");
+                    if (SCANNER.nextLine().trim().toUpperCase().equals("Y")) {
+                        System.out.println("\n" + describe(cohort, enrollAll(cohort)));
+                    } else {
+                        System.out.println("Operation cancelled.");
+                    }
+                    break;
+
+                case 14:
+                    // Record a unit a student has completed, for prerequisite checks
+                    displayHeader("Admin Menu: Record Completed Unit");
+                    promptStudentSearch();
+                    System.out.print("\nEnter Student ID: ");
+                    String graduateId = SCANNER.nextLine().trim();
+                    System.out.print("Enter Completed Unit Code: ");
+                    String completedUnitCode = SCANNER.nextLine().trim();
+                    EnrollmentResult completion = completeUnit(graduateId, completedUnitCode);
+                    System.out.println("\n" + (completion.isSuccess()
+                            ? "Unit '" + completedUnitCode + "' recorded as completed."
+                            : describe(completion, graduateId, completedUnitCode)));
+                    break;
+
+                case 15:
+                    // Enrollment counts, credit loads and popular unit pairs at a single point in time
+                    displayHeader("Admin Menu: Enrollment Reports");
+                    System.out.print(getReports());
+                    System.out.println("\nPress any key or 'B' to return to the Menu.");
+                    SCANNER.nextLine();  // Wait for user input
+                    break;
+
                 case 0:
                     System.out.println("Exiting system.");
                     System.exit(0);
@@ -566,13 +2938,56 @@ public class StudentEnrollmentSystem {
     /**
      * Entry point of the application.
      *
-     * @param args Command-line arguments (not used).
+     * @param args Command-line arguments; {@code --import <file>} bulk imports a file before showing the menu, and
+     *             {@code --server [port]} serves HTTP/JSON (on port 8080 by default) instead of showing the menu,
+     *             and {@code --changes [port]} streams the change log to subscribers (on port 8090 by default).
      */
     public static void main(String[] args) {
         Administrator admin = new Administrator("John");
         StudentEnrollmentSystem system = new StudentEnrollmentSystem(admin);
-        system.addStudent(new FullTimeStudent("123123", "John Lee", "123 Fake Street", "1111111111", "JohnLee@fakestreet.com"));
-        system.addUnit(new Unit("FIT5136", "Software Engineering", 6));
+        if ("columnar".equals(System.getProperty("ses.store"))) { // Keep student details off-heap
+            system.enableColumnStore();
+        }
+        try {
+            system.restore(new File(System.getProperty("ses.data", "data")));
+            Runtime.getRuntime().addShutdownHook(new Thread(system::close));
+        } catch (IOException e) {
+            System.out.println("Error: Unable to open the enrollment journal - " + e.getMessage());
+        }
+        if (system.getStudentCount() == 0 && system.getUnits().isEmpty()) { // Seed demo data on first run
+            system.addStudent(new FullTimeStudent("123123", "John Lee", "123 Fake Street", "1111111111", "JohnLee@fakestreet.com"));
+            system.addUnit(new Unit("FIT5136", "Software Engineering", 6));
+        }
+        int serverPort = -1;
+        int changesPort = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--import") && i + 1 < args.length) {
+                system.importFile(new File(args[++i]));
+            } else if (args[i].equals("--server")) {
+                serverPort = i + 1 < args.length && args[i + 1].matches("\\d+") ? Integer.parseInt(args[++i]) : 8080;
+            } else if (args[i].equals("--changes")) {
+                changesPort = i + 1 < args.length && args[i + 1].matches("\\d+") ? Integer.parseInt(args[++i]) : 8090;
+            }
+        }
+        if (changesPort >= 0 && system.getChangeLog() != null) { // Stream changes alongside the menu or server
+            try {
+                ChangeStreamServer changes = new ChangeStreamServer(system.getChangeLog(), changesPort);
+                changes.start();
+                System.out.println("Streaming changes on port " + changes.getPort() + ".");
+            } catch (IOException e) {
+                System.out.println("Error: Unable to start the change stream - " + e.getMessage());
+            }
+        }
+        if (serverPort >= 0) { // Serve HTTP instead of showing the menu; the server's threads keep the JVM running
+            try {
+                EnrollmentServer server = new EnrollmentServer(system, serverPort);
+                server.start();
+                System.out.println("Serving the enrollment system on http://localhost:" + server.getPort() + "/");
+            } catch (IOException e) {
+                System.out.println("Error: Unable to start the server - " + e.getMessage());
+            }
+            return;
+        }
         system.displayMainMenu();
     }
 }
@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Timetable - The weekly class sessions of a unit, indexed for clash detection.
+ * <p>
+ * Sessions are written as a day and a time range, e.g. {@code MON 09:00-11:00}, several separated by semicolons.
+ * Each is held as an interval of minutes from the start of the week, and the intervals are kept sorted and merged,
+ * so two timetables clash exactly when a single pass over both, in order, finds an overlap. Before that pass, a
+ * 64-bit mask of which 160-minute blocks of the week each timetable touches is compared: units that meet on
+ * different days or at different times of day are told apart with one AND, without looking at their sessions.
+ * Checking a unit against the four units a student can take is therefore a handful of comparisons.
+ * </p>
+ *
+ * <p>
+ * Sessions are half-open, so a class ending at 11:00 does not clash with one starting at 11:00.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class Timetable {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private static final String[] DAYS = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    // 63 blocks cover the week's 10,080 minutes, one bit each
+    private static final int BLOCK_MINUTES = 160;
+    // A unit without sessions, which clashes with nothing
+    public static final Timetable NONE = new Timetable(new int[0], new int[0]);
+    // The sessions as given, sorted, for display
+    private final int[] SESSION_STARTS;
+    private final int[] SESSION_ENDS;
+    // The sessions merged where they overlap or touch, for clash detection
+    private final int[] STARTS;
+    private final int[] ENDS;
+    private final long BLOCKS;
+
+    private Timetable(int[] sessionStarts, int[] sessionEnds) {
+        this.SESSION_STARTS = sessionStarts;
+        this.SESSION_ENDS = sessionEnds;
+        int[] starts = new int[sessionStarts.length];
+        int[] ends = new int[sessionEnds.length];
+        int count = 0;
+        long blocks = 0;
+        for (int i = 0; i < sessionStarts.length; i++) {
+            if (count > 0 && sessionStarts[i] <= ends[count - 1]) {
+                ends[count - 1] = Math.max(ends[count - 1], sessionEnds[i]);
+            } else {
+                starts[count] = sessionStarts[i];
+                ends[count++] = sessionEnds[i];
+            }
+            for (int block = sessionStarts[i] / BLOCK_MINUTES; block <= (sessionEnds[i] - 1) / BLOCK_MINUTES; block++) {
+                blocks |= 1L << block;
+            }
+        }
+        this.STARTS = Arrays.copyOf(starts, count);
+        this.ENDS = Arrays.copyOf(ends, count);
+        this.BLOCKS = blocks;
+    }
+
+    /**
+     * Parses a timetable such as {@code MON 09:00-11:00; WED 14:00-15:00}.
+     *
+     * @param text The sessions, separated by semicolons; null or blank for none.
+     * @return The timetable.
+     * @throws IllegalArgumentException If a session is not a day (MON to SUN) and a time range within that day.
+     */
+    public static Timetable parse(String text) {
+        if (text == null || text.isBlank()) {
+            return NONE;
+        }
+        List<int[]> sessions = new ArrayList<>();
+        for (String session : text.split(";")) {
+            String[] parts = session.trim().toUpperCase().split("\\s+");
+            int day = parts.length == 2 ? Arrays.asList(DAYS).indexOf(parts[0]) : -1;
+            String[] times = parts.length == 2 ? parts[1].split("-") : new String[0];
+            if (day < 0 || times.length != 2) {
+                throw new IllegalArgumentException("Invalid session '" + session.trim()
+                        + "', expected e.g. 'MON 09:00-11:00'.");
+            }
+            int start = minuteOfDay(times[0]);
+            int end = minuteOfDay(times[1]);
+            if (start >= end) {
+                throw new IllegalArgumentException("Session '" + session.trim() + "' must end after it starts.");
+            }
+            sessions.add(new int[] {day * MINUTES_PER_DAY + start, day * MINUTES_PER_DAY + end});
+        }
+        sessions.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+        int[] starts = new int[sessions.size()];
+        int[] ends = new int[sessions.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = sessions.get(i)[0];
+            ends[i] = sessions.get(i)[1];
+        }
+        return new Timetable(starts, ends);
+    }
+
+    /**
+     * Checks if any session of this timetable overlaps a session of another.
+     *
+     * @param other The other timetable.
+     * @return True if the timetables clash.
+     */
+    public boolean clashesWith(Timetable other) {
+        if ((BLOCKS & other.BLOCKS) == 0) {
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < STARTS.length && j < other.STARTS.length) {
+            if (STARTS[i] < other.ENDS[j] && other.STARTS[j] < ENDS[i]) {
+                return true;
+            }
+            if (ENDS[i] <= other.ENDS[j]) { // The interval that ends first cannot overlap anything later
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the timetable has no sessions.
+     *
+     * @return True if there are no sessions.
+     */
+    public boolean isEmpty() {
+        return SESSION_STARTS.length == 0;
+    }
+
+    /**
+     * Returns the sessions in the same form {@link #parse(String)} accepts, in order through the week.
+     *
+     * @return The sessions separated by semicolons, or an empty string if there are none.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < SESSION_STARTS.length; i++) {
+            text.append(i > 0 ? "; " : "").append(DAYS[SESSION_STARTS[i] / MINUTES_PER_DAY]).append(' ')
+                    .append(time(SESSION_STARTS[i] % MINUTES_PER_DAY)).append('-')
+                    .append(time(SESSION_ENDS[i] - SESSION_STARTS[i] / MINUTES_PER_DAY * MINUTES_PER_DAY));
+        }
+        return text.toString();
+    }
+
+    private static int minuteOfDay(String time) {
+        String[] parts = time.split(":");
+        try {
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = parts.length == 2 ? Integer.parseInt(parts[1]) : -1;
+            if (hours < 0 || minutes < 0 || minutes > 59 || hours * 60 + minutes > MINUTES_PER_DAY) {
+                throw new NumberFormatException();
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time '" + time + "', expected e.g. '09:00'.");
+        }
+    }
+
+    private static String time(int minuteOfDay) {
+        return String.format("%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+    }
+}
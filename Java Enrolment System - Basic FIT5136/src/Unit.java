@@ -1,3 +1,5 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Unit - Represents a unit with a name and credit points.
  * <p>
@@ -6,6 +8,27 @@
  * </p>
  *
  * <p>
+ * A unit may also have a seat capacity. Seats are reserved with a lock-free compare-and-set on the unit's own
+ * counter, so when enrollment opens, simultaneous enrollments in a popular unit only contend on that counter
+ * and a seat can never be oversold. Students who find it full can join its {@link Waitlist}.
+ * </p>
+ *
+ * <p>
+ * A unit may also have a {@link Timetable} of weekly class sessions; a student cannot enroll in two units whose
+ * sessions clash.
+ * </p>
+ *
+ * <p>
+ * A unit may also have {@link Requisites}: units to complete before it, alongside it or not at all. These are
+ * checked against the student's completed units by {@link PrerequisiteGraph}.
+ * </p>
+ *
+ * <p>
+ * Units are equal by code. A unit in a catalogue is also given a dense ID by the system's {@link UnitDictionary},
+ * which is how students store their enrollments.
+ * </p>
+ *
+ * <p>
  * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
  * @version: 1.0
  * </p>
@@ -13,20 +36,73 @@
 public class Unit {
     // All final variables are constants and should be upper case.
     // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    // Capacity of a unit with no seat limit
+    public static final int UNLIMITED = Integer.MAX_VALUE;
     private final String CODE;
     private final String TITLE;
     private final int CREDIT_POINTS;
+    private final int CAPACITY;
+    private final AtomicInteger SEATS_TAKEN = new AtomicInteger();
+    private final Waitlist WAITLIST = new Waitlist();
+    private final Timetable TIMETABLE;
+    private final Requisites REQUISITES;
+    // Set while the unit is in a catalogue
+    private volatile UnitDictionary dictionary;
+    private volatile int id = -1;
 
     /**
-     * Constructs a Unit with the specified name and credit points.
+     * Constructs a Unit with the specified name and credit points and no seat limit.
      *
      * @param code The name of the unit.
      * @param creditPoints The credit points of the unit.
      */
     public Unit(String code, String title, int creditPoints) {
+        this(code, title, creditPoints, UNLIMITED);
+    }
+
+    /**
+     * Constructs a Unit with the specified name, credit points and seat capacity.
+     *
+     * @param code The name of the unit.
+     * @param title The title of the unit.
+     * @param creditPoints The credit points of the unit.
+     * @param capacity The maximum number of students who can enroll, or {@link #UNLIMITED}.
+     */
+    public Unit(String code, String title, int creditPoints, int capacity) {
+        this(code, title, creditPoints, capacity, Timetable.NONE);
+    }
+
+    /**
+     * Constructs a Unit with the specified name, credit points, seat capacity and class sessions.
+     *
+     * @param code The name of the unit.
+     * @param title The title of the unit.
+     * @param creditPoints The credit points of the unit.
+     * @param capacity The maximum number of students who can enroll, or {@link #UNLIMITED}.
+     * @param timetable The weekly class sessions of the unit, or {@link Timetable#NONE}.
+     */
+    public Unit(String code, String title, int creditPoints, int capacity, Timetable timetable) {
+        this(code, title, creditPoints, capacity, timetable, Requisites.NONE);
+    }
+
+    /**
+     * Constructs a Unit with the specified name, credit points, seat capacity, class sessions and requisites.
+     *
+     * @param code The name of the unit.
+     * @param title The title of the unit.
+     * @param creditPoints The credit points of the unit.
+     * @param capacity The maximum number of students who can enroll, or {@link #UNLIMITED}.
+     * @param timetable The weekly class sessions of the unit, or {@link Timetable#NONE}.
+     * @param requisites The units required before or alongside this one, or {@link Requisites#NONE}.
+     */
+    public Unit(String code, String title, int creditPoints, int capacity, Timetable timetable,
+                Requisites requisites) {
         this.CODE = code;
         this.CREDIT_POINTS = creditPoints;
         this.TITLE = title;
+        this.CAPACITY = capacity;
+        this.TIMETABLE = timetable;
+        this.REQUISITES = requisites;
     }
 
     /**
@@ -47,6 +123,35 @@ public class Unit {
         return CODE;
     }
 
+    /**
+     * Returns the dense ID the unit is encoded as in students' enrollments.
+     *
+     * @return The ID of the unit, or -1 if it is not in a catalogue.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the dictionary that gave the unit its ID.
+     *
+     * @return The dictionary, or null if the unit is not in a catalogue.
+     */
+    UnitDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Sets the unit's ID. Called by the dictionary as the unit joins or leaves a catalogue.
+     *
+     * @param dictionary The dictionary, or null once the unit has left the catalogue.
+     * @param id The ID, or -1.
+     */
+    void setId(UnitDictionary dictionary, int id) {
+        this.dictionary = dictionary;
+        this.id = id;
+    }
+
     /**
      * Returns the credit points of the unit.
      *
@@ -56,8 +161,148 @@ public class Unit {
         return CREDIT_POINTS;
     }
 
+    /**
+     * Returns the seat capacity of the unit.
+     *
+     * @return The maximum number of students who can enroll, or {@link #UNLIMITED}.
+     */
+    public int getCapacity() {
+        return CAPACITY;
+    }
+
+    /**
+     * Returns the number of seats currently taken.
+     *
+     * @return The number of seats taken.
+     */
+    public int getSeatsTaken() {
+        return SEATS_TAKEN.get();
+    }
+
+    /**
+     * Returns the weekly class sessions of the unit.
+     *
+     * @return The timetable, empty if the unit has no sessions.
+     */
+    public Timetable getTimetable() {
+        return TIMETABLE;
+    }
+
+    /**
+     * Returns the units required before or alongside the unit, or excluded by it.
+     *
+     * @return The requisites, empty if anyone can enroll.
+     */
+    public Requisites getRequisites() {
+        return REQUISITES;
+    }
+
+    /**
+     * Returns the students waiting for a seat in the unit.
+     *
+     * @return The waitlist.
+     */
+    public Waitlist getWaitlist() {
+        return WAITLIST;
+    }
+
+    /**
+     * Reserves a seat if one is available.
+     *
+     * @return True if a seat was reserved, false if the unit is full.
+     */
+    public boolean tryReserveSeat() {
+        if (CAPACITY == UNLIMITED) {
+            SEATS_TAKEN.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int taken = SEATS_TAKEN.get();
+            if (taken >= CAPACITY) {
+                return false;
+            }
+            if (SEATS_TAKEN.compareAndSet(taken, taken + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves several seats at once if that many are available, otherwise none.
+     *
+     * @param count The number of seats.
+     * @return True if the seats were reserved, false if the unit does not have that many left.
+     */
+    public boolean tryReserveSeats(int count) {
+        if (CAPACITY == UNLIMITED) {
+            SEATS_TAKEN.addAndGet(count);
+            return true;
+        }
+        while (true) {
+            int taken = SEATS_TAKEN.get();
+            if (taken > CAPACITY - count) {
+                return false;
+            }
+            if (SEATS_TAKEN.compareAndSet(taken, taken + count)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases seats reserved by {@link #tryReserveSeats(int)}.
+     *
+     * @param count The number of seats.
+     */
+    public void releaseSeats(int count) {
+        SEATS_TAKEN.addAndGet(-count);
+    }
+
+    /**
+     * Releases a previously reserved seat.
+     */
+    public void releaseSeat() {
+        SEATS_TAKEN.decrementAndGet();
+    }
+
+    /**
+     * Takes a seat regardless of capacity, for enrollments that were already accepted before being recovered.
+     */
+    void forceReserveSeat() {
+        SEATS_TAKEN.incrementAndGet();
+    }
+
+    /**
+     * Takes several seats regardless of capacity, used when a class size is recovered from a snapshot. Shards
+     * sharing the unit each add the seats of their own students.
+     *
+     * @param count The number of seats to take.
+     */
+    void forceReserveSeats(int count) {
+        SEATS_TAKEN.addAndGet(count);
+    }
+
+    /**
+     * Units are equal if they have the same code.
+     *
+     * @param other The object to compare with.
+     * @return True if the other object is a unit with the same code.
+     */
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Unit && CODE.equals(((Unit) other).CODE);
+    }
+
+    @Override
+    public int hashCode() {
+        return CODE.hashCode();
+    }
+
     @Override
     public String toString() {
-        return CODE + " - "+ TITLE + " (" + CREDIT_POINTS + " credit points)";
+        String seats = CAPACITY == UNLIMITED ? "" : " [" + getSeatsTaken() + "/" + CAPACITY + " seats]";
+        String sessions = TIMETABLE.isEmpty() ? "" : " {" + TIMETABLE + "}";
+        String requisites = REQUISITES.isEmpty() ? "" : " <" + REQUISITES + ">";
+        return CODE + " - "+ TITLE + " (" + CREDIT_POINTS + " credit points)" + seats + sessions + requisites;
     }
 }
@@ -0,0 +1,98 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * UnitDictionary - Encodes the units of a catalogue as dense int IDs, so that a student's enrollments can be stored
+ * as a few ints.
+ * <p>
+ * Each Student Enrollment System has its own dictionary (the shards of a {@link ShardRouter} share one, as they
+ * share their units). A unit is given an ID when it is added to the catalogue, and the ID decodes back to that unit
+ * with a single array read. IDs identify the unit object rather than its code: if a unit is removed and a new unit
+ * is later created with the same code, the new unit gets its own ID and seat counter. A unit's ID is freed once it
+ * has left the catalogue and no student holds it any more, and may then be given to a later unit, so the dictionary
+ * only holds the units in the catalogue, however many are created and removed over time.
+ * </p>
+ *
+ * <p>
+ * The table is copied on every change (catalogue changes are rare) and never modified once published, so reads
+ * need no lock and a reader holding a table, such as an {@link EnrollmentView}, keeps decoding its IDs to the units
+ * they stood for when it was taken.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class UnitDictionary {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    // The number of catalogues (shards) holding each unit, guarded by this
+    private int[] references = new int[16];
+    private final Deque<Integer> FREE = new ArrayDeque<>();
+    private volatile Unit[] units = new Unit[16];
+    private int size;
+
+    /**
+     * Gives a unit being added to a catalogue its ID, or counts one more catalogue holding it if it already has one.
+     *
+     * @param unit The unit.
+     * @throws IllegalStateException If the unit is in the catalogue of a system with another dictionary.
+     */
+    synchronized void register(Unit unit) {
+        if (unit.getDictionary() == this) {
+            references[unit.getId()]++;
+            return;
+        }
+        if (unit.getDictionary() != null) {
+            throw new IllegalStateException("Unit '" + unit.getCode() + "' is already in another system's catalogue.");
+        }
+        int id = FREE.isEmpty() ? size++ : FREE.pop();
+        Unit[] table = Arrays.copyOf(units, id < units.length ? units.length : units.length * 2);
+        if (id >= references.length) {
+            references = Arrays.copyOf(references, table.length);
+        }
+        table[id] = unit;
+        references[id] = 1;
+        unit.setId(this, id);
+        units = table; // Publishes the entry to readers of the new table
+    }
+
+    /**
+     * Counts one catalogue fewer holding a unit, freeing its ID once none does. The caller makes sure no student
+     * still holds the ID.
+     *
+     * @param unit The unit.
+     */
+    synchronized void release(Unit unit) {
+        if (unit.getDictionary() != this || --references[unit.getId()] > 0) {
+            return;
+        }
+        Unit[] table = units.clone();
+        table[unit.getId()] = null;
+        units = table;
+        FREE.push(unit.getId());
+        unit.setId(null, -1);
+    }
+
+    /**
+     * Decodes an ID back to its unit.
+     *
+     * @param id The ID of the unit.
+     * @return The unit, or null if no unit has that ID now.
+     */
+    Unit get(int id) {
+        Unit[] table = units;
+        return id < table.length ? table[id] : null;
+    }
+
+    /**
+     * Returns the current table, to decode IDs later as they stand now. The table must not be modified.
+     *
+     * @return The units by ID, null for free IDs.
+     */
+    Unit[] table() {
+        return units;
+    }
+}
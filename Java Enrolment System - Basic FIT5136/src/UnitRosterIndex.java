@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UnitRosterIndex - A reverse index from unit code to the IDs of the students enrolled in that unit.
+ * <p>
+ * The index is kept in step with every enrollment change made through the {@link StudentEnrollmentSystem}, so the
+ * class size of a unit is a single lookup and listing or cascading a unit's roster only touches the students
+ * actually enrolled in it, rather than every student in the system.
+ * </p>
+ *
+ * <p>
+ * Each roster is kept sorted by student ID, so it can be listed a page at a time from a cursor. A sorted set counts
+ * its elements by walking them, so every roster also keeps its size in a counter.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class UnitRosterIndex {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final Map<String, Roster> ROSTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Records that a student is enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @param studentId The ID of the student.
+     */
+    public void add(String unitCode, String studentId) {
+        // Empty rosters are kept rather than removed, so adding to an existing roster never locks the unit's entry
+        ROSTERS.computeIfAbsent(unitCode, code -> new Roster()).add(studentId);
+    }
+
+    /**
+     * Records that a student is no longer enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @param studentId The ID of the student.
+     */
+    public void remove(String unitCode, String studentId) {
+        Roster roster = ROSTERS.get(unitCode);
+        if (roster != null) {
+            roster.remove(studentId);
+        }
+    }
+
+    /**
+     * Adds every unit a student is enrolled in to the index.
+     *
+     * @param student The student.
+     */
+    public void addStudent(Student student) {
+        for (Unit unit : student.getUnits()) {
+            add(unit.getCode(), student.getId());
+        }
+    }
+
+    /**
+     * Removes every unit a student is enrolled in from the index.
+     *
+     * @param student The student.
+     */
+    public void removeStudent(Student student) {
+        for (Unit unit : student.getUnits()) {
+            remove(unit.getCode(), student.getId());
+        }
+    }
+
+    /**
+     * Removes a unit's roster from the index.
+     *
+     * @param unitCode The code of the unit.
+     * @return The IDs of the students who were enrolled in the unit.
+     */
+    public Set<String> removeUnit(String unitCode) {
+        Roster roster = ROSTERS.remove(unitCode);
+        return roster == null ? Collections.emptySet() : roster.IDS;
+    }
+
+    /**
+     * Returns the number of students enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @return The class size.
+     */
+    public int size(String unitCode) {
+        Roster roster = ROSTERS.get(unitCode);
+        return roster == null ? 0 : roster.SIZE.get();
+    }
+
+    /**
+     * Returns the IDs of the students enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @return An unmodifiable view of the roster, sorted by student ID.
+     */
+    public Set<String> roster(String unitCode) {
+        Roster roster = ROSTERS.get(unitCode);
+        return roster == null ? Collections.emptySet() : Collections.unmodifiableSet(roster.IDS);
+    }
+
+    /**
+     * Returns one page of the IDs of the students enrolled in a unit.
+     *
+     * @param unitCode The code of the unit.
+     * @param after The student ID to start after, or null to start from the first student.
+     * @param limit The maximum number of IDs to return.
+     * @return Up to {@code limit} IDs, sorted.
+     */
+    public List<String> page(String unitCode, String after, int limit) {
+        List<String> ids = new ArrayList<>();
+        Roster roster = ROSTERS.get(unitCode);
+        if (roster == null) {
+            return ids;
+        }
+        for (String studentId : after == null ? roster.IDS : roster.IDS.tailSet(after, false)) {
+            if (ids.size() == limit) {
+                break;
+            }
+            ids.add(studentId);
+        }
+        return ids;
+    }
+
+    /**
+     * The IDs of the students enrolled in one unit, with their count.
+     */
+    private static class Roster {
+        private final NavigableSet<String> IDS = new ConcurrentSkipListSet<>(EnrollmentSnapshot::compareIds);
+        private final AtomicInteger SIZE = new AtomicInteger();
+
+        private void add(String studentId) {
+            if (IDS.add(studentId)) {
+                SIZE.incrementAndGet();
+            }
+        }
+
+        private void remove(String studentId) {
+            if (IDS.remove(studentId)) {
+                SIZE.decrementAndGet();
+            }
+        }
+    }
+}
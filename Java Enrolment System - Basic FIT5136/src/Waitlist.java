@@ -0,0 +1,157 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waitlist - The students waiting for a seat in a full unit, in the order they will be offered one.
+ * <p>
+ * Students with a higher priority are offered a seat first, and students with the same priority in the order they
+ * joined. The queue is a concurrent skip list sorted in that order, so the next student is always at its head and
+ * joining or leaving costs O(log n) without a global lock, however many students are waiting; a map from student
+ * ID to entry answers whether a student is waiting in O(1). A student joins or leaves the map and the queue in one
+ * atomic step on their own key of the map, so the two never disagree.
+ * </p>
+ *
+ * <p>
+ * A waitlist only keeps the order. The Student Enrollment System offers freed seats to the students at its head,
+ * enrolling each through the normal checks, and removes students once they are enrolled.
+ * </p>
+ *
+ * <p>
+ * @author Antoni Erdeg - antoni.erdeg@monash.edu<br>
+ * @version: 1.0
+ * </p>
+ */
+public class Waitlist {
+    // All final variables are constants and should be upper case.
+    // Refer to PartTimeStudent for non-constant variable example i.e. courseAdvisor
+    private final NavigableSet<Entry> QUEUE = new ConcurrentSkipListSet<>();
+    private final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private final AtomicLong TICKETS = new AtomicLong();
+
+    /**
+     * A student waiting on the list.
+     */
+    public static class Entry implements Comparable<Entry> {
+        private final String STUDENT_ID;
+        private final int PRIORITY;
+        private final long TICKET;
+
+        private Entry(String studentId, int priority, long ticket) {
+            this.STUDENT_ID = studentId;
+            this.PRIORITY = priority;
+            this.TICKET = ticket;
+        }
+
+        /**
+         * Returns the ID of the waiting student.
+         *
+         * @return The student ID.
+         */
+        public String getStudentId() {
+            return STUDENT_ID;
+        }
+
+        /**
+         * Returns the priority the student joined with.
+         *
+         * @return The priority, higher first.
+         */
+        public int getPriority() {
+            return PRIORITY;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (PRIORITY != other.PRIORITY) {
+                return Integer.compare(other.PRIORITY, PRIORITY);
+            }
+            return Long.compare(TICKET, other.TICKET);
+        }
+    }
+
+    /**
+     * Adds a student to the end of those waiting with the same priority.
+     *
+     * @param studentId The ID of the student.
+     * @param priority The priority, higher first; 0 for the default.
+     * @return True if the student was added, false if they were already waiting.
+     */
+    public boolean add(String studentId, int priority) {
+        Entry entry = new Entry(studentId, priority, TICKETS.getAndIncrement());
+        return ENTRIES.computeIfAbsent(studentId, key -> {
+            QUEUE.add(entry); // Under the key's lock, so no removal of the student can come between
+            return entry;
+        }) == entry;
+    }
+
+    /**
+     * Removes a student from the list.
+     *
+     * @param studentId The ID of the student.
+     * @return True if the student was waiting.
+     */
+    public boolean remove(String studentId) {
+        boolean[] removed = new boolean[1];
+        ENTRIES.computeIfPresent(studentId, (key, entry) -> {
+            removed[0] = QUEUE.remove(entry);
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Checks if a student is waiting.
+     *
+     * @param studentId The ID of the student.
+     * @return True if the student is on the list.
+     */
+    public boolean contains(String studentId) {
+        return ENTRIES.containsKey(studentId);
+    }
+
+    /**
+     * Returns whether no students are waiting.
+     *
+     * @return True if the list is empty.
+     */
+    public boolean isEmpty() {
+        return ENTRIES.isEmpty();
+    }
+
+    /**
+     * Returns the number of students waiting.
+     *
+     * @return The number of students.
+     */
+    public int size() {
+        return ENTRIES.size();
+    }
+
+    /**
+     * Returns the students waiting, in the order they will be offered a seat. Iterating sees students joining and
+     * leaving while it is in progress, but never fails or returns a student twice.
+     *
+     * @return The entries, in order.
+     */
+    public Iterable<Entry> entries() {
+        return QUEUE;
+    }
+
+    /**
+     * Returns the IDs of the students waiting, in the order they will be offered a seat.
+     *
+     * @return A copy of the student IDs.
+     */
+    public List<String> getStudentIds() {
+        List<String> studentIds = new ArrayList<>();
+        for (Entry entry : QUEUE) {
+            studentIds.add(entry.getStudentId());
+        }
+        return studentIds;
+    }
+}